@@ -0,0 +1,78 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.benchmark;
+
+import java.io.StringReader;
+import java.sql.Connection;
+
+import org.apache.ibatis.datasource.pooled.PooledDataSource;
+import org.apache.ibatis.jdbc.ScriptRunner;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory;
+
+/**
+ * In-memory HSQLDB database with authors and posts shared by the suites.
+ */
+final class BenchmarkDatabase {
+
+  static final String DRIVER = "org.hsqldb.jdbcDriver";
+  static final int AUTHORS = 500;
+  static final int POSTS_PER_AUTHOR = 4;
+
+  private BenchmarkDatabase() {
+  }
+
+  static String url(String name) {
+    return "jdbc:hsqldb:mem:benchmark_" + name;
+  }
+
+  static SqlSessionFactory createSqlSessionFactory(String name) throws Exception {
+    PooledDataSource dataSource = new PooledDataSource(DRIVER, url(name), "sa", "");
+    createSchema(dataSource.getConnection());
+    Configuration configuration = new Configuration(new Environment("benchmark", new JdbcTransactionFactory(), dataSource));
+    configuration.addMapper(BenchmarkMapper.class);
+    return new SqlSessionFactoryBuilder().build(configuration);
+  }
+
+  static void createSchema(Connection connection) throws Exception {
+    StringBuilder script = new StringBuilder();
+    script.append("drop table post if exists;\n");
+    script.append("drop table author if exists;\n");
+    script.append("create table author (id int primary key, username varchar(50), email varchar(100), bio varchar(200));\n");
+    script.append("create table post (id int primary key, author_id int, subject varchar(100), body varchar(500));\n");
+    for (int i = 1; i <= AUTHORS; i++) {
+      script.append("insert into author values (").append(i).append(", 'user").append(i).append("', 'user").append(i)
+          .append("@example.com', 'bio of user ").append(i).append("');\n");
+      for (int j = 0; j < POSTS_PER_AUTHOR; j++) {
+        int postId = i * POSTS_PER_AUTHOR + j;
+        script.append("insert into post values (").append(postId).append(", ").append(i).append(", 'subject ").append(postId)
+            .append("', 'body of post ").append(postId).append("');\n");
+      }
+    }
+    try {
+      ScriptRunner runner = new ScriptRunner(connection);
+      runner.setLogWriter(null);
+      runner.setErrorLogWriter(null);
+      runner.runScript(new StringReader(script.toString()));
+    } finally {
+      connection.close();
+    }
+  }
+
+}
@@ -0,0 +1,111 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.benchmark;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.cache.decorators.LoggingCache;
+import org.apache.ibatis.cache.decorators.LruCache;
+import org.apache.ibatis.cache.decorators.SynchronizedCache;
+import org.apache.ibatis.cache.impl.PerpetualCache;
+import org.apache.ibatis.mapping.CacheBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * CacheKey construction and second level cache hit/miss paths under contention.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+public class CacheBenchmark {
+
+  private static final int SIZE = 1024;
+
+  /**
+   * <code>default</code> is what a &lt;cache/&gt; element builds, <code>synchronized</code> the decorator stack it used to build.
+   */
+  @Param({ "default", "synchronized" })
+  public String cacheType;
+
+  private Cache cache;
+  private CacheKey[] keys;
+
+  @Setup
+  public void setUp() {
+    if ("synchronized".equals(cacheType)) {
+      cache = new SynchronizedCache(new LoggingCache(new LruCache(new PerpetualCache("benchmark"))));
+    } else {
+      cache = new CacheBuilder("benchmark").implementation(PerpetualCache.class).addDecorator(LruCache.class).size(SIZE).build();
+    }
+    keys = new CacheKey[SIZE * 2];
+    for (int i = 0; i < keys.length; i++) {
+      keys[i] = createCacheKey(i);
+    }
+    for (int i = 0; i < SIZE / 2; i++) {
+      cache.putObject(keys[i], "value" + i);
+    }
+  }
+
+  @Benchmark
+  public CacheKey cacheKey() {
+    return createCacheKey(ThreadLocalRandom.current().nextInt(SIZE));
+  }
+
+  @Benchmark
+  public Object hit() {
+    return cache.getObject(keys[ThreadLocalRandom.current().nextInt(SIZE / 2)]);
+  }
+
+  @Benchmark
+  public Object missAndPut() {
+    CacheKey key = keys[SIZE / 2 + ThreadLocalRandom.current().nextInt(keys.length - SIZE / 2)];
+    Object value = cache.getObject(key);
+    if (value == null) {
+      cache.putObject(key, key);
+    }
+    return value;
+  }
+
+  private static CacheKey createCacheKey(int id) {
+    CacheKey key = new CacheKey(6);
+    key.update("org.apache.ibatis.benchmark.BenchmarkMapper.selectAuthor");
+    key.update(0);
+    key.update(Integer.MAX_VALUE);
+    key.update("select id, username, email, bio from author where id = ?");
+    key.update(id);
+    key.update("benchmark");
+    return key;
+  }
+
+}
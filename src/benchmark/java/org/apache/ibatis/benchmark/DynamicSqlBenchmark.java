@@ -0,0 +1,92 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.benchmark;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ibatis.binding.MapperMethod.ParamMap;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.session.Configuration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Rendering of dynamic SQL (DynamicSqlSource#getBoundSql) for if/choose/where and foreach heavy statements.
+ * No statement is executed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class DynamicSqlBenchmark {
+
+  @Param({ "10", "100", "1000" })
+  public int listSize;
+
+  private MappedStatement conditions;
+  private MappedStatement foreach;
+  private Map<String, Object> criteria;
+  private ParamMap<Object> ids;
+
+  @Setup
+  public void setUp() {
+    Configuration configuration = new Configuration();
+    configuration.addMapper(BenchmarkMapper.class);
+    conditions = configuration.getMappedStatement("org.apache.ibatis.benchmark.BenchmarkMapper.selectAuthorsLike");
+    foreach = configuration.getMappedStatement("org.apache.ibatis.benchmark.BenchmarkMapper.selectAuthorsIn");
+
+    criteria = new HashMap<String, Object>();
+    criteria.put("username", "user%");
+    criteria.put("email", "%@example.com");
+    criteria.put("minId", 10);
+    criteria.put("bio", null);
+
+    List<Integer> values = new ArrayList<Integer>();
+    for (int i = 0; i < listSize; i++) {
+      values.add(i);
+    }
+    ids = new ParamMap<Object>();
+    ids.put("ids", values);
+    ids.put("param1", values);
+  }
+
+  @Benchmark
+  public BoundSql conditions() {
+    return conditions.getBoundSql(criteria);
+  }
+
+  @Benchmark
+  public BoundSql foreach() {
+    return foreach.getBoundSql(ids);
+  }
+
+}
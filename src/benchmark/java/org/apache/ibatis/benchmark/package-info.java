@@ -0,0 +1,28 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+/**
+ * JMH suites for the hot paths of MyBatis.
+ * <p>
+ * They are compiled and run by the <code>benchmark</code> profile against in-memory HSQLDB databases:
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec
+ * mvn -Pbenchmark test-compile exec:exec -Dbenchmark.args="ResultMappingBenchmark"
+ * </pre>
+ * The results are always written to <code>target/jmh-result.json</code>, <code>benchmark.args</code> only adds
+ * JMH options such as the suites to run.
+ * Forks, warmup and measurement iterations are fixed on each suite so that results of two builds can be compared.
+ */
+package org.apache.ibatis.benchmark;
@@ -63,4 +63,12 @@ public @interface Options {
   String keyColumn() default "";
   
   String resultSets() default "";
+
+  /**
+   * Set to true when the rows of a nested result map come grouped by the parent id columns,
+   * so that each parent is handed out as soon as its last row has been read.
+   *
+   * @since 3.4.7
+   */
+  boolean resultOrdered() default false;
 }
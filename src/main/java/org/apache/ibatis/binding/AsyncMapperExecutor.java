@@ -0,0 +1,108 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.binding;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The executor that mapper methods returning a CompletableFuture run on.
+ *
+ * It hands the calls to the executor set with {@link #setExecutor(Executor)} or, unless one was set, to a pool of
+ * {@link #getThreads()} daemon threads that is created on first use. Changing the number of threads resizes the
+ * pool if it already exists.
+ *
+ * @since 3.4.7
+ */
+public final class AsyncMapperExecutor implements Executor {
+
+  private volatile int threads = 10;
+  private volatile Executor executor;
+  private volatile ThreadPoolExecutor pool;
+
+  @Override
+  public void execute(Runnable command) {
+    Executor executor = this.executor;
+    (executor != null ? executor : getPool()).execute(command);
+  }
+
+  public int getThreads() {
+    return threads;
+  }
+
+  public void setThreads(int threads) {
+    synchronized (this) {
+      this.threads = threads;
+      ThreadPoolExecutor pool = this.pool;
+      if (pool != null) {
+        // grow the maximum first, it may never drop below the core size
+        if (threads > pool.getMaximumPoolSize()) {
+          pool.setMaximumPoolSize(threads);
+          pool.setCorePoolSize(threads);
+        } else {
+          pool.setCorePoolSize(threads);
+          pool.setMaximumPoolSize(threads);
+        }
+      }
+    }
+  }
+
+  public Executor getExecutor() {
+    return executor;
+  }
+
+  /**
+   * Runs the calls on the given executor instead of the default pool. Pass null to return to the default pool.
+   */
+  public void setExecutor(Executor executor) {
+    this.executor = executor;
+  }
+
+  private ThreadPoolExecutor getPool() {
+    ThreadPoolExecutor pool = this.pool;
+    if (pool == null) {
+      synchronized (this) {
+        pool = this.pool;
+        if (pool == null) {
+          pool = newPool(threads);
+          this.pool = pool;
+        }
+      }
+    }
+    return pool;
+  }
+
+  private static ThreadPoolExecutor newPool(int threads) {
+    final AtomicInteger threadNumber = new AtomicInteger();
+    ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+          @Override
+          public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "mybatis-async-mapper-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+          }
+        });
+    // idle threads do not keep running between bursts of calls
+    pool.allowCoreThreadTimeOut(true);
+    return pool;
+  }
+
+}
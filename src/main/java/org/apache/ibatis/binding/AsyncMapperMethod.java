@@ -0,0 +1,58 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.binding;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+import org.apache.ibatis.lang.UsesJava8;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.defaults.DefaultSqlSessionFactory;
+
+/**
+ * Runs a mapper method returning a CompletableFuture on the executor of the configuration.
+ *
+ * Each call opens its own session, so it does not see uncommitted changes of the session the mapper was obtained
+ * from. The session is committed when the statement succeeds and closed (rolling back any changes) when it fails.
+ */
+@UsesJava8
+final class AsyncMapperMethod {
+
+  private AsyncMapperMethod() {
+    super();
+  }
+
+  static CompletableFuture<Object> execute(final MapperMethod mapperMethod, Configuration configuration,
+      final Object[] args) {
+    final SqlSessionFactory sqlSessionFactory = new DefaultSqlSessionFactory(configuration);
+    return CompletableFuture.supplyAsync(new Supplier<Object>() {
+      @Override
+      public Object get() {
+        SqlSession sqlSession = sqlSessionFactory.openSession();
+        try {
+          Object result = mapperMethod.executeNow(sqlSession, args);
+          sqlSession.commit();
+          return result;
+        } finally {
+          sqlSession.close();
+        }
+      }
+    }, configuration.getAsyncMapperExecutor());
+  }
+
+}
@@ -47,4 +47,12 @@ public class StaticSqlSource implements SqlSource {
     return new BoundSql(configuration, sql, parameterMappings, parameterObject);
   }
 
+  /**
+   * @return true if the mappings are the ones this source binds every statement with
+   * @since 3.4.7
+   */
+  public boolean ownsParameterMappings(List<ParameterMapping> parameterMappings) {
+    return this.parameterMappings == parameterMappings;
+  }
+
 }
@@ -15,9 +15,20 @@
  */
 package org.apache.ibatis.builder.xml;
 
+import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.sql.DataSource;
 
 import org.apache.ibatis.builder.BaseBuilder;
@@ -28,6 +39,7 @@ import org.apache.ibatis.executor.loader.ProxyFactory;
 import org.apache.ibatis.io.Resources;
 import org.apache.ibatis.io.VFS;
 import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
 import org.apache.ibatis.mapping.DatabaseIdProvider;
 import org.apache.ibatis.mapping.Environment;
 import org.apache.ibatis.parsing.XNode;
@@ -46,6 +58,7 @@ import org.apache.ibatis.session.LocalCacheScope;
 import org.apache.ibatis.transaction.TransactionFactory;
 import org.apache.ibatis.type.JdbcType;
 import org.apache.ibatis.type.TypeHandler;
+import org.w3c.dom.Document;
 
 /**
  * @author Clinton Begin
@@ -339,6 +352,19 @@ public class XMLConfigBuilder extends BaseBuilder {
     configuration.setCallSettersOnNulls(booleanValueOf(props.getProperty("callSettersOnNulls"), false));
     configuration.setUseActualParamName(booleanValueOf(props.getProperty("useActualParamName"), true));
     configuration.setReturnInstanceForEmptyRow(booleanValueOf(props.getProperty("returnInstanceForEmptyRow"), false));
+    configuration.setCompiledRowMappersEnabled(booleanValueOf(props.getProperty("compiledRowMappersEnabled"), false));
+    configuration.setForEachBulkBindingEnabled(booleanValueOf(props.getProperty("forEachBulkBindingEnabled"), false));
+    configuration.setDynamicContextReuseEnabled(booleanValueOf(props.getProperty("dynamicContextReuseEnabled"), false));
+    configuration.setCompiledParameterBindersEnabled(booleanValueOf(props.getProperty("compiledParameterBindersEnabled"), false));
+    configuration.setParallelMapperParsingEnabled(booleanValueOf(props.getProperty("parallelMapperParsingEnabled"), false));
+    configuration.setMapperSnapshotFile(props.getProperty("mapperSnapshotFile"));
+    configuration.setBatchStatementGroupingEnabled(booleanValueOf(props.getProperty("batchStatementGroupingEnabled"), false));
+    configuration.setBatchAutoFlushStatementRows(integerValueOf(props.getProperty("batchAutoFlushStatementRows"), 0));
+    configuration.setBatchAutoFlushPendingRows(integerValueOf(props.getProperty("batchAutoFlushPendingRows"), 0));
+    configuration.setBatchAutoFlushPendingBytes(longValueOf(props.getProperty("batchAutoFlushPendingBytes"), 0L));
+    configuration.setBatchAutoFlushDropParameters(booleanValueOf(props.getProperty("batchAutoFlushDropParameters"), false));
+    configuration.setBatchInsertRewriteRows(integerValueOf(props.getProperty("batchInsertRewriteRows"), 0));
+    configuration.setAsyncMapperThreads(integerValueOf(props.getProperty("asyncMapperThreads"), 10));
     configuration.setLogPrefix(props.getProperty("logPrefix"));
     @SuppressWarnings("unchecked")
     Class<? extends Log> logImpl = (Class<? extends Log>)resolveClass(props.getProperty("logImpl"));
@@ -488,33 +514,145 @@ public class XMLConfigBuilder extends BaseBuilder {
    */
   private void mapperElement(XNode parent) throws Exception {
     if (parent != null) {
-      for (XNode child : parent.getChildren()) {
-        if ("package".equals(child.getName())) {
-          String mapperPackage = child.getStringAttribute("name");
-          configuration.addMappers(mapperPackage);
-        } else {
-          String resource = child.getStringAttribute("resource");
-          String url = child.getStringAttribute("url");
-          String mapperClass = child.getStringAttribute("class");
-          if (resource != null && url == null && mapperClass == null) {
-            ErrorContext.instance().resource(resource);
-            InputStream inputStream = Resources.getResourceAsStream(resource);
-            XMLMapperBuilder mapperParser = new XMLMapperBuilder(inputStream, configuration, resource, configuration.getSqlFragments());
-            mapperParser.parse();
-          } else if (resource == null && url != null && mapperClass == null) {
-            ErrorContext.instance().resource(url);
-            InputStream inputStream = Resources.getUrlAsStream(url);
-            XMLMapperBuilder mapperParser = new XMLMapperBuilder(inputStream, configuration, url, configuration.getSqlFragments());
-            mapperParser.parse();
-          } else if (resource == null && url == null && mapperClass != null) {
-            Class<?> mapperInterface = Resources.classForName(mapperClass);
-            configuration.addMapper(mapperInterface);
-          } else {
-            throw new BuilderException("A mapper element may only specify a url, resource or class, but not more than one.");
-          }
+      List<XNode> children = parent.getChildren();
+      XMLMapperSnapshot snapshot = null;
+      if (configuration.getMapperSnapshotFile() != null) {
+        snapshot = XMLMapperSnapshot.open(new File(configuration.getMapperSnapshotFile()));
+      }
+      ExecutorService executor = null;
+      List<Future<XPathParser>> documents = null;
+      if (configuration.isParallelMapperParsingEnabled()) {
+        executor = newMapperParsingExecutor();
+        documents = parseMapperDocuments(children, snapshot, executor);
+      }
+      try {
+        for (int i = 0; i < children.size(); i++) {
+          XNode child = children.get(i);
+          Future<XPathParser> document = documents == null ? null : documents.get(i);
+          mapperElement(child, document, snapshot);
+        }
+        if (snapshot != null) {
+          saveSnapshot(snapshot);
+        }
+      } finally {
+        if (executor != null) {
+          executor.shutdownNow();
+        }
+      }
+    }
+  }
+
+  /**
+   * Mappers are always registered one by one in document order, only reading and validating their XML documents
+   * may have happened in parallel or been skipped for documents taken from the snapshot.
+   */
+  private void mapperElement(XNode child, Future<XPathParser> document, XMLMapperSnapshot snapshot) throws Exception {
+    if ("package".equals(child.getName())) {
+      String mapperPackage = child.getStringAttribute("name");
+      configuration.addMappers(mapperPackage);
+    } else {
+      String resource = child.getStringAttribute("resource");
+      String url = child.getStringAttribute("url");
+      String mapperClass = child.getStringAttribute("class");
+      if (resource != null && url == null && mapperClass == null) {
+        ErrorContext.instance().resource(resource);
+        XPathParser parser = getMapperDocument(resource, false, document, snapshot);
+        XMLMapperBuilder mapperParser = new XMLMapperBuilder(parser, configuration, resource, configuration.getSqlFragments());
+        mapperParser.parse();
+      } else if (resource == null && url != null && mapperClass == null) {
+        ErrorContext.instance().resource(url);
+        XPathParser parser = getMapperDocument(url, true, document, snapshot);
+        XMLMapperBuilder mapperParser = new XMLMapperBuilder(parser, configuration, url, configuration.getSqlFragments());
+        mapperParser.parse();
+      } else if (resource == null && url == null && mapperClass != null) {
+        Class<?> mapperInterface = Resources.classForName(mapperClass);
+        configuration.addMapper(mapperInterface);
+      } else {
+        throw new BuilderException("A mapper element may only specify a url, resource or class, but not more than one.");
+      }
+    }
+  }
+
+  /**
+   * Starts reading and validating the XML document of every resource or url mapper.
+   *
+   * @return the documents by position of their mapper element, null for elements that are not XML mappers
+   */
+  private List<Future<XPathParser>> parseMapperDocuments(List<XNode> children, XMLMapperSnapshot snapshot,
+      ExecutorService executor) {
+    List<Future<XPathParser>> documents = new ArrayList<Future<XPathParser>>(children.size());
+    for (XNode child : children) {
+      final String resource = child.getStringAttribute("resource");
+      final String url = child.getStringAttribute("url");
+      final String mapperClass = child.getStringAttribute("class");
+      if ("package".equals(child.getName()) || mapperClass != null || (resource == null) == (url == null)
+          || (snapshot != null && snapshot.contains(resource != null ? resource : url, url != null))) {
+        documents.add(null);
+        continue;
+      }
+      documents.add(executor.submit(new Callable<XPathParser>() {
+        @Override
+        public XPathParser call() throws Exception {
+          return readMapperDocument(resource != null ? resource : url, url != null);
         }
+      }));
+    }
+    return documents;
+  }
+
+  private XPathParser getMapperDocument(String location, boolean url, Future<XPathParser> document,
+      XMLMapperSnapshot snapshot) throws Exception {
+    if (snapshot != null) {
+      Document snapshotDocument = snapshot.getDocument(location, url);
+      if (snapshotDocument != null) {
+        return new XPathParser(snapshotDocument, true, configuration.getVariables(), new XMLMapperEntityResolver());
       }
     }
+    XPathParser parser = document != null ? getDocument(document) : readMapperDocument(location, url);
+    if (snapshot != null) {
+      // record it before the mapper builder resolves its includes in place
+      snapshot.record(location, url, parser.evalNode("/*").getNode().getOwnerDocument());
+    }
+    return parser;
+  }
+
+  private XPathParser readMapperDocument(String location, boolean url) throws IOException {
+    InputStream inputStream = url ? Resources.getUrlAsStream(location) : Resources.getResourceAsStream(location);
+    return new XPathParser(inputStream, true, configuration.getVariables(), new XMLMapperEntityResolver());
+  }
+
+  private static void saveSnapshot(XMLMapperSnapshot snapshot) {
+    try {
+      snapshot.save();
+    } catch (IOException e) {
+      // the configuration is complete, the next start just parses the mapper files again
+      LogFactory.getLog(XMLConfigBuilder.class).warn("Could not save the mapper snapshot. Cause: " + e);
+    }
+  }
+
+  private static XPathParser getDocument(Future<XPathParser> document) throws Exception {
+    try {
+      return document.get();
+    } catch (ExecutionException e) {
+      // fail the same way reading the document on this thread would have
+      Throwable cause = e.getCause();
+      if (cause instanceof Exception) {
+        throw (Exception) cause;
+      }
+      throw (Error) cause;
+    }
+  }
+
+  private static ExecutorService newMapperParsingExecutor() {
+    final AtomicInteger threadNumber = new AtomicInteger();
+    return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "mybatis-mapper-parser-" + threadNumber.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
   }
 
   private boolean isSpecifiedEnvironment(String id) {
@@ -0,0 +1,338 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.builder.xml;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.apache.ibatis.builder.BuilderException;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/**
+ * A binary copy of the mapper XML documents that were read and validated while building a configuration.
+ *
+ * The documents are stored as they were parsed, before includes are resolved or properties are substituted, so
+ * a snapshot can be used with other properties. Loading a document from the snapshot only recreates its DOM tree,
+ * without parsing XML or validating it against the DTD. A document is read again from its mapper file when that
+ * file was modified after the snapshot was taken.
+ *
+ * @see org.apache.ibatis.session.Configuration#getMapperSnapshotFile()
+ * @since 3.4.7
+ */
+public class XMLMapperSnapshot {
+
+  private static final int MAGIC = 0x4d425853;
+  private static final int VERSION = 1;
+
+  private static final byte ELEMENT = 1;
+  private static final byte TEXT = 2;
+  private static final byte CDATA = 3;
+  private static final byte END = 0;
+
+  private final File file;
+  private final Map<String, Entry> entries = new LinkedHashMap<String, Entry>();
+  private DocumentBuilder documentBuilder;
+  private boolean modified;
+
+  private XMLMapperSnapshot(File file) {
+    this.file = file;
+  }
+
+  /**
+   * @return the snapshot stored in this file, or an empty snapshot if the file does not exist or cannot be read
+   */
+  public static XMLMapperSnapshot open(File file) {
+    XMLMapperSnapshot snapshot = new XMLMapperSnapshot(file);
+    if (file.isFile()) {
+      try {
+        snapshot.read();
+      } catch (IOException e) {
+        // looked up here so the log implementation chosen in the settings is used
+        Log log = LogFactory.getLog(XMLMapperSnapshot.class);
+        if (log.isDebugEnabled()) {
+          log.debug("Ignoring unreadable mapper snapshot " + file + ". Cause: " + e);
+        }
+        snapshot.entries.clear();
+        snapshot.modified = true;
+      }
+    } else {
+      snapshot.modified = true;
+    }
+    return snapshot;
+  }
+
+  /**
+   * @return whether the snapshot holds a current copy of the mapper document at this resource or url
+   */
+  public boolean contains(String location, boolean url) {
+    Entry entry = entries.get(key(location, url));
+    if (entry == null) {
+      return false;
+    }
+    if (entry.current == null) {
+      long lastModified = lastModified(location, url);
+      // a source that does not report its modification time is trusted to be unchanged
+      entry.current = lastModified == 0L || lastModified == entry.lastModified;
+    }
+    return entry.current;
+  }
+
+  /**
+   * @return the mapper document at this resource or url, or null if the snapshot holds no current copy of it
+   */
+  public Document getDocument(String location, boolean url) {
+    if (!contains(location, url)) {
+      return null;
+    }
+    Entry entry = entries.get(key(location, url));
+    entry.used = true;
+    try {
+      return decode(entry.bytes);
+    } catch (IOException e) {
+      throw new BuilderException("Error reading " + location + " from mapper snapshot " + file + ". Cause: " + e, e);
+    }
+  }
+
+  /**
+   * Adds the document just read from this resource or url, it must not have been modified by a mapper builder yet.
+   */
+  public void record(String location, boolean url, Document document) {
+    Entry entry = new Entry(lastModified(location, url), encode(document));
+    entry.current = true;
+    entry.used = true;
+    entries.put(key(location, url), entry);
+    modified = true;
+  }
+
+  /**
+   * Writes the snapshot if documents were added, leaving out the documents that were not used since it was opened.
+   */
+  public void save() throws IOException {
+    for (Iterator<Entry> iterator = entries.values().iterator(); iterator.hasNext();) {
+      if (!iterator.next().used) {
+        iterator.remove();
+        modified = true;
+      }
+    }
+    if (!modified) {
+      return;
+    }
+    File parent = file.getAbsoluteFile().getParentFile();
+    if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+      throw new IOException("Could not create directory " + parent);
+    }
+    // replace the file in one step so concurrent readers never see a partial snapshot
+    File temporary = File.createTempFile(file.getName(), ".tmp", parent);
+    try {
+      DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)));
+      try {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(entries.size());
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+          out.writeUTF(entry.getKey());
+          out.writeLong(entry.getValue().lastModified);
+          out.writeInt(entry.getValue().bytes.length);
+          out.write(entry.getValue().bytes);
+        }
+      } finally {
+        out.close();
+      }
+      if (!temporary.renameTo(file) && !(file.delete() && temporary.renameTo(file))) {
+        throw new IOException("Could not replace " + file);
+      }
+      modified = false;
+    } finally {
+      if (temporary.exists() && !temporary.delete()) {
+        temporary.deleteOnExit();
+      }
+    }
+  }
+
+  private void read() throws IOException {
+    DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+    try {
+      if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+        throw new IOException("Not a mapper snapshot of version " + VERSION);
+      }
+      int count = in.readInt();
+      for (int i = 0; i < count; i++) {
+        String key = in.readUTF();
+        long lastModified = in.readLong();
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        entries.put(key, new Entry(lastModified, bytes));
+      }
+    } finally {
+      in.close();
+    }
+  }
+
+  private static String key(String location, boolean url) {
+    return (url ? "url:" : "resource:") + location;
+  }
+
+  private static long lastModified(String location, boolean url) {
+    try {
+      URLConnection connection = (url ? new URL(location) : Resources.getResourceURL(location)).openConnection();
+      // do not keep jar files open through the connection cache
+      connection.setUseCaches(false);
+      long lastModified = connection.getLastModified();
+      connection.getInputStream().close();
+      return lastModified;
+    } catch (IOException e) {
+      return 0L;
+    }
+  }
+
+  private static byte[] encode(Document document) {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(4096);
+    DataOutputStream out = new DataOutputStream(bytes);
+    try {
+      encodeChildren(document, out);
+      out.close();
+    } catch (IOException e) {
+      // cannot happen when writing to memory
+      throw new BuilderException("Error encoding mapper document. Cause: " + e, e);
+    }
+    return bytes.toByteArray();
+  }
+
+  private static void encodeChildren(Node parent, DataOutputStream out) throws IOException {
+    NodeList children = parent.getChildNodes();
+    for (int i = 0; i < children.getLength(); i++) {
+      Node child = children.item(i);
+      switch (child.getNodeType()) {
+        case Node.ELEMENT_NODE:
+          out.writeByte(ELEMENT);
+          out.writeUTF(child.getNodeName());
+          NamedNodeMap attributes = child.getAttributes();
+          out.writeShort(attributes.getLength());
+          for (int j = 0; j < attributes.getLength(); j++) {
+            Attr attribute = (Attr) attributes.item(j);
+            out.writeUTF(attribute.getName());
+            writeString(out, attribute.getValue());
+          }
+          encodeChildren(child, out);
+          break;
+        case Node.TEXT_NODE:
+          out.writeByte(TEXT);
+          writeString(out, child.getNodeValue());
+          break;
+        case Node.CDATA_SECTION_NODE:
+          out.writeByte(CDATA);
+          writeString(out, child.getNodeValue());
+          break;
+        default:
+          // comments are ignored by the parser, the doctype was only needed for validation
+          break;
+      }
+    }
+    out.writeByte(END);
+  }
+
+  private Document decode(byte[] bytes) throws IOException {
+    Document document = getDocumentBuilder().newDocument();
+    decodeChildren(document, document, new DataInputStream(new ByteArrayInputStream(bytes)));
+    return document;
+  }
+
+  private static void decodeChildren(Document document, Node parent, DataInputStream in) throws IOException {
+    for (byte type = in.readByte(); type != END; type = in.readByte()) {
+      switch (type) {
+        case ELEMENT:
+          Element element = document.createElement(in.readUTF());
+          int attributes = in.readShort();
+          for (int i = 0; i < attributes; i++) {
+            element.setAttribute(in.readUTF(), readString(in));
+          }
+          decodeChildren(document, element, in);
+          parent.appendChild(element);
+          break;
+        case TEXT:
+          parent.appendChild(document.createTextNode(readString(in)));
+          break;
+        case CDATA:
+          parent.appendChild(document.createCDATASection(readString(in)));
+          break;
+        default:
+          throw new IOException("Unknown node type " + type);
+      }
+    }
+  }
+
+  private static void writeString(DataOutputStream out, String value) throws IOException {
+    // writeUTF is limited to 64K, statement bodies are not
+    byte[] bytes = value.getBytes("UTF-8");
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private static String readString(DataInputStream in) throws IOException {
+    byte[] bytes = new byte[in.readInt()];
+    in.readFully(bytes);
+    return new String(bytes, "UTF-8");
+  }
+
+  private DocumentBuilder getDocumentBuilder() {
+    if (documentBuilder == null) {
+      try {
+        documentBuilder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+      } catch (ParserConfigurationException e) {
+        throw new BuilderException("Error creating document builder. Cause: " + e, e);
+      }
+    }
+    return documentBuilder;
+  }
+
+  private static final class Entry {
+    private final long lastModified;
+    private final byte[] bytes;
+    private Boolean current;
+    private boolean used;
+
+    private Entry(long lastModified, byte[] bytes) {
+      this.lastModified = lastModified;
+      this.bytes = bytes;
+    }
+  }
+
+}
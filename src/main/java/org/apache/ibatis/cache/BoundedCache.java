@@ -0,0 +1,84 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Thread safe map for what MyBatis compiles for a statement or result map at runtime, e.g. SQL shapes, parameter
+ * binders and row mappers, with a fixed capacity.
+ *
+ * Nothing is evicted. Once the cache is full, callers should not compile a key that is missing but take their
+ * uncompiled path for it, so that a statement with more variants than the cache holds never compiles one on every
+ * execution.
+ *
+ * @since 3.4.7
+ */
+public final class BoundedCache<K, V> {
+
+  private final int capacity;
+  private final ConcurrentMap<K, V> entries = new ConcurrentHashMap<K, V>();
+
+  public BoundedCache(int capacity) {
+    this.capacity = capacity;
+  }
+
+  public V get(K key) {
+    return entries.get(key);
+  }
+
+  public boolean containsKey(K key) {
+    return entries.containsKey(key);
+  }
+
+  /**
+   * @return false once the cache holds as many entries as it may, keys that are missing then stay missing
+   */
+  public boolean hasRoom() {
+    return entries.size() < capacity;
+  }
+
+  /**
+   * Caches the value unless the key is cached already or the cache is full.
+   *
+   * @return the value cached for the key, which another thread may have put first, or <code>value</code> if it
+   *         could not be cached
+   */
+  public V putIfAbsent(K key, V value) {
+    if (!hasRoom()) {
+      V existing = entries.get(key);
+      return existing != null ? existing : value;
+    }
+    V existing = entries.putIfAbsent(key, value);
+    return existing != null ? existing : value;
+  }
+
+  /**
+   * Caches the value in place of the one cached for the key, or like {@link #putIfAbsent(Object, Object)} if none is.
+   */
+  public void put(K key, V value) {
+    if (entries.replace(key, value) == null && hasRoom()) {
+      entries.put(key, value);
+    }
+  }
+
+  public Collection<V> values() {
+    return entries.values();
+  }
+
+}
@@ -0,0 +1,133 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.decorators;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReadWriteLock;
+
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
+
+/**
+ * A {@link LoggingCache} for caches that are thread safe on their own and are not wrapped in a {@link SynchronizedCache}.
+ *
+ * Requests and hits are counted on counters striped by thread, so that concurrent readers of the cache do not all
+ * update the same field.
+ *
+ * @since 3.4.7
+ */
+public class ConcurrentLoggingCache implements Cache {
+
+  private static final int STRIPES = stripes();
+  // the counters of two stripes are 8 longs apart so that they do not share a cache line
+  private static final int PADDING = 8;
+
+  private final Log log;
+  private final Cache delegate;
+  private final AtomicLongArray requests = new AtomicLongArray(STRIPES * PADDING);
+  private final AtomicLongArray hits = new AtomicLongArray(STRIPES * PADDING);
+
+  public ConcurrentLoggingCache(Cache delegate) {
+    this.delegate = delegate;
+    this.log = LogFactory.getLog(getId());
+  }
+
+  @Override
+  public String getId() {
+    return delegate.getId();
+  }
+
+  @Override
+  public int getSize() {
+    return delegate.getSize();
+  }
+
+  @Override
+  public void putObject(Object key, Object object) {
+    delegate.putObject(key, object);
+  }
+
+  @Override
+  public Object getObject(Object key) {
+    final int stripe = ((int) Thread.currentThread().getId() & (STRIPES - 1)) * PADDING;
+    requests.incrementAndGet(stripe);
+    final Object value = delegate.getObject(key);
+    if (value != null) {
+      hits.incrementAndGet(stripe);
+    }
+    if (log.isDebugEnabled()) {
+      log.debug("Cache Hit Ratio [" + getId() + "]: " + getHitRatio());
+    }
+    return value;
+  }
+
+  @Override
+  public Object removeObject(Object key) {
+    return delegate.removeObject(key);
+  }
+
+  @Override
+  public void clear() {
+    delegate.clear();
+  }
+
+  @Override
+  public ReadWriteLock getReadWriteLock() {
+    return null;
+  }
+
+  @Override
+  public int hashCode() {
+    return delegate.hashCode();
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    return delegate.equals(obj);
+  }
+
+  public long getRequests() {
+    return sum(requests);
+  }
+
+  public long getHits() {
+    return sum(hits);
+  }
+
+  public double getHitRatio() {
+    // hits first, a request counted in between can only lower the ratio
+    final long hitCount = getHits();
+    return (double) hitCount / (double) getRequests();
+  }
+
+  private static long sum(AtomicLongArray counters) {
+    long sum = 0;
+    for (int i = 0; i < counters.length(); i += PADDING) {
+      sum += counters.get(i);
+    }
+    return sum;
+  }
+
+  private static int stripes() {
+    int stripes = 1;
+    while (stripes < Runtime.getRuntime().availableProcessors() && stripes < 64) {
+      stripes <<= 1;
+    }
+    return stripes;
+  }
+
+}
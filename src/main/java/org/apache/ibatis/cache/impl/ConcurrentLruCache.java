@@ -0,0 +1,178 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.impl;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheException;
+
+/**
+ * Bounded, thread safe cache with an approximate LRU eviction policy.
+ *
+ * Reads never block: entries are looked up in a {@link ConcurrentHashMap} and only flag themselves as recently used.
+ * Writes are serialized on a single lock and evict with the CLOCK (second chance) algorithm, so entries that
+ * were read since the last sweep survive it. It replaces the PerpetualCache + LruCache + SynchronizedCache
+ * stack as the default cache of a namespace and therefore does not need to be synchronized externally.
+ */
+public class ConcurrentLruCache implements Cache {
+
+  private final String id;
+  private final ConcurrentMap<Object, Entry> cache = new ConcurrentHashMap<Object, Entry>();
+  private final Deque<Entry> clock = new ArrayDeque<Entry>();
+  private final ReentrantLock writeLock = new ReentrantLock();
+  private volatile int size;
+
+  public ConcurrentLruCache(String id) {
+    this.id = id;
+    this.size = 1024;
+  }
+
+  @Override
+  public String getId() {
+    return id;
+  }
+
+  @Override
+  public int getSize() {
+    return cache.size();
+  }
+
+  public void setSize(int size) {
+    writeLock.lock();
+    try {
+      this.size = size;
+      evictOverflow();
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  @Override
+  public void putObject(Object key, Object value) {
+    writeLock.lock();
+    try {
+      Entry entry = cache.get(key);
+      if (entry != null) {
+        entry.value = value;
+        return;
+      }
+      entry = new Entry(key, value);
+      cache.put(key, entry);
+      clock.addLast(entry);
+      evictOverflow();
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  @Override
+  public Object getObject(Object key) {
+    Entry entry = cache.get(key);
+    if (entry == null) {
+      return null;
+    }
+    if (!entry.visited) {
+      // avoid dirtying the cache line of hot entries on every read
+      entry.visited = true;
+    }
+    return entry.value;
+  }
+
+  @Override
+  public Object removeObject(Object key) {
+    writeLock.lock();
+    try {
+      Entry entry = cache.remove(key);
+      if (entry == null) {
+        return null;
+      }
+      clock.removeFirstOccurrence(entry);
+      return entry.value;
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  @Override
+  public void clear() {
+    writeLock.lock();
+    try {
+      cache.clear();
+      clock.clear();
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  @Override
+  public ReadWriteLock getReadWriteLock() {
+    return null;
+  }
+
+  private void evictOverflow() {
+    while (clock.size() > size) {
+      Entry entry = clock.pollFirst();
+      if (entry.visited) {
+        entry.visited = false;
+        clock.addLast(entry);
+      } else {
+        cache.remove(entry.key);
+      }
+    }
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (getId() == null) {
+      throw new CacheException("Cache instances require an ID.");
+    }
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof Cache)) {
+      return false;
+    }
+
+    Cache otherCache = (Cache) o;
+    return getId().equals(otherCache.getId());
+  }
+
+  @Override
+  public int hashCode() {
+    if (getId() == null) {
+      throw new CacheException("Cache instances require an ID.");
+    }
+    return getId().hashCode();
+  }
+
+  private static final class Entry {
+    private final Object key;
+    private volatile Object value;
+    private volatile boolean visited;
+
+    private Entry(Object key, Object value) {
+      this.key = key;
+      this.value = value;
+    }
+  }
+
+}
@@ -20,7 +20,8 @@ import java.io.Closeable;
 /**
  * Cursor contract to handle fetching items lazily using an Iterator.
  * Cursors are a perfect fit to handle millions of items queries that would not normally fits in memory.
- * Cursor SQL queries must be ordered (resultOrdered="true") using the id columns of the resultMap.
+ * Cursor SQL queries must be ordered (resultOrdered="true" or {@code @Options(resultOrdered = true)})
+ * using the id columns of the resultMap.
  *
  * @author Guillaume Darmont / guillaume@dropinocean.com
  */
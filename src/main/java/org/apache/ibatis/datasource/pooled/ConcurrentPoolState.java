@@ -0,0 +1,109 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.pooled;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool statistics of a {@link ConcurrentPooledDataSource}, kept in atomic counters instead of under the pool lock.
+ */
+public class ConcurrentPoolState extends PoolState {
+
+  protected final AtomicLong requests = new AtomicLong();
+  protected final AtomicLong requestTime = new AtomicLong();
+  protected final AtomicLong checkoutTime = new AtomicLong();
+  protected final AtomicLong claimedOverdue = new AtomicLong();
+  protected final AtomicLong overdueCheckoutTime = new AtomicLong();
+  protected final AtomicLong waitTime = new AtomicLong();
+  protected final AtomicLong waits = new AtomicLong();
+  protected final AtomicLong badConnections = new AtomicLong();
+  protected final AtomicLong createdConnections = new AtomicLong();
+  protected final AtomicLong timedOutWaits = new AtomicLong();
+
+  public ConcurrentPoolState(ConcurrentPooledDataSource dataSource) {
+    super(dataSource);
+  }
+
+  @Override
+  public long getRequestCount() {
+    return requests.get();
+  }
+
+  @Override
+  public long getAverageRequestTime() {
+    long count = requests.get();
+    return count == 0 ? 0 : requestTime.get() / count;
+  }
+
+  @Override
+  public long getAverageWaitTime() {
+    long count = waits.get();
+    return count == 0 ? 0 : waitTime.get() / count;
+  }
+
+  @Override
+  public long getHadToWaitCount() {
+    return waits.get();
+  }
+
+  @Override
+  public long getBadConnectionCount() {
+    return badConnections.get();
+  }
+
+  @Override
+  public long getCreatedConnectionCount() {
+    return createdConnections.get();
+  }
+
+  @Override
+  public long getTimedOutWaitCount() {
+    return timedOutWaits.get();
+  }
+
+  @Override
+  public int getPendingRequestCount() {
+    return ((ConcurrentPooledDataSource) dataSource).getPendingRequestCount();
+  }
+
+  @Override
+  public long getClaimedOverdueConnectionCount() {
+    return claimedOverdue.get();
+  }
+
+  @Override
+  public long getAverageOverdueCheckoutTime() {
+    long count = claimedOverdue.get();
+    return count == 0 ? 0 : overdueCheckoutTime.get() / count;
+  }
+
+  @Override
+  public long getAverageCheckoutTime() {
+    long count = requests.get();
+    return count == 0 ? 0 : checkoutTime.get() / count;
+  }
+
+  @Override
+  public int getIdleConnectionCount() {
+    return ((ConcurrentPooledDataSource) dataSource).getIdleConnectionCount();
+  }
+
+  @Override
+  public int getActiveConnectionCount() {
+    return ((ConcurrentPooledDataSource) dataSource).getActiveConnectionCount();
+  }
+
+}
@@ -0,0 +1,511 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.pooled;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.ibatis.datasource.unpooled.UnpooledDataSource;
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
+
+/**
+ * A connection pool for highly concurrent applications.
+ *
+ * It accepts the same configuration as {@link PooledDataSource} but keeps the pool monitor off the hot path:
+ * idle connections live in a lock free bag, each thread first tries the connection it returned last,
+ * and returned connections are handed directly to the longest waiting thread instead of waking every waiter.
+ */
+public class ConcurrentPooledDataSource extends PooledDataSource {
+
+  private static final Log log = LogFactory.getLog(ConcurrentPooledDataSource.class);
+
+  // attempts to hand a returned connection to a waiter that has not started polling yet
+  private static final int MAX_HANDOFF_SPINS = 64;
+  // waiters look into the bag at this interval for connections returned while no one was polling
+  private static final long BAG_CHECK_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+  private final ConcurrentPoolState concurrentState = new ConcurrentPoolState(this);
+
+  private final CopyOnWriteArrayList<PoolEntry> entries = new CopyOnWriteArrayList<PoolEntry>();
+  private final ThreadLocal<PoolEntry> lastReturned = new ThreadLocal<PoolEntry>();
+  // fair, so waiting threads are served in FIFO order
+  private final SynchronousQueue<PoolEntry> handoffQueue = new SynchronousQueue<PoolEntry>(true);
+  private final AtomicInteger waiters = new AtomicInteger();
+  private final AtomicInteger totalConnections = new AtomicInteger();
+  private final AtomicInteger idleConnections = new AtomicInteger();
+
+  public ConcurrentPooledDataSource() {
+    super();
+  }
+
+  public ConcurrentPooledDataSource(UnpooledDataSource dataSource) {
+    super(dataSource);
+  }
+
+  public ConcurrentPooledDataSource(String driver, String url, String username, String password) {
+    super(driver, url, username, password);
+  }
+
+  public ConcurrentPooledDataSource(String driver, String url, Properties driverProperties) {
+    super(driver, url, driverProperties);
+  }
+
+  public ConcurrentPooledDataSource(ClassLoader driverClassLoader, String driver, String url, String username, String password) {
+    super(driverClassLoader, driver, url, username, password);
+  }
+
+  public ConcurrentPooledDataSource(ClassLoader driverClassLoader, String driver, String url, Properties driverProperties) {
+    super(driverClassLoader, driver, url, driverProperties);
+  }
+
+  @Override
+  public Connection getConnection() throws SQLException {
+    return popConnection(dataSource.getUsername(), dataSource.getPassword()).getProxyConnection();
+  }
+
+  @Override
+  public Connection getConnection(String username, String password) throws SQLException {
+    return popConnection(username, password).getProxyConnection();
+  }
+
+  @Override
+  public PoolState getPoolState() {
+    return concurrentState;
+  }
+
+  int getIdleConnectionCount() {
+    return idleConnections.get();
+  }
+
+  int getActiveConnectionCount() {
+    return totalConnections.get() - idleConnections.get();
+  }
+
+  int getPendingRequestCount() {
+    return waiters.get();
+  }
+
+  /*
+   * Closes all active and idle connections in the pool
+   */
+  @Override
+  public void forceCloseAll() {
+    super.forceCloseAll();
+    for (PoolEntry entry : entries) {
+      if (entry.markRemoved() == PoolEntry.IDLE) {
+        idleConnections.decrementAndGet();
+      }
+      PooledConnection conn = entry.current.getAndSet(null);
+      if (conn != null) {
+        conn.invalidate();
+      }
+      closeEntry(entry);
+    }
+  }
+
+  @Override
+  protected void pushConnection(PooledConnection conn) throws SQLException {
+    PoolEntry entry = findEntry(conn);
+    if (entry == null || !entry.current.compareAndSet(conn, null)) {
+      // the connection was claimed as overdue or force closed in the meantime
+      if (log.isDebugEnabled()) {
+        log.debug("A bad connection (" + conn.getRealHashCode() + ") attempted to return to the pool, discarding connection.");
+      }
+      concurrentState.badConnections.incrementAndGet();
+      return;
+    }
+    if (conn.isValid()) {
+      // like PooledDataSource, only the usage of valid connections is recorded
+      long checkoutTime = conn.getCheckoutTime();
+      concurrentState.checkoutTime.addAndGet(checkoutTime);
+      fireConnectionReturned(TimeUnit.MILLISECONDS.toNanos(checkoutTime));
+      if (!rollback(conn)) {
+        concurrentState.badConnections.incrementAndGet();
+        conn.invalidate();
+        discard(entry);
+        return;
+      }
+      entry.lastUsedTimestamp = conn.getLastUsedTimestamp();
+      entry.lastValidatedTimestamp = conn.getLastValidatedTimestamp();
+      conn.invalidate();
+      if (conn.getConnectionTypeCode() == getExpectedConnectionTypeCode()
+          && !isPastMaximumLifetime(entry.createdTimestamp, System.currentTimeMillis()) && release(entry)) {
+        if (log.isDebugEnabled()) {
+          log.debug("Returned connection " + conn.getRealHashCode() + " to pool.");
+        }
+      } else {
+        discard(entry);
+        if (log.isDebugEnabled()) {
+          log.debug("Closed connection " + conn.getRealHashCode() + ".");
+        }
+      }
+    } else {
+      if (log.isDebugEnabled()) {
+        log.debug("A bad connection (" + conn.getRealHashCode() + ") attempted to return to the pool, discarding connection.");
+      }
+      concurrentState.badConnections.incrementAndGet();
+      conn.invalidate();
+      discard(entry);
+    }
+  }
+
+  private PooledConnection popConnection(String username, String password) throws SQLException {
+    long t = System.currentTimeMillis();
+    long startNanos = System.nanoTime();
+    boolean countedWait = false;
+    int localBadConnectionCount = 0;
+
+    while (true) {
+      PoolEntry entry = borrow();
+      if (entry == null) {
+        entry = create();
+      }
+      if (entry == null) {
+        if (!countedWait) {
+          concurrentState.waits.incrementAndGet();
+          countedWait = true;
+        }
+        long wt = System.currentTimeMillis();
+        entry = await();
+        concurrentState.waitTime.addAndGet(System.currentTimeMillis() - wt);
+      }
+      if (entry == null) {
+        continue;
+      }
+
+      PooledConnection conn = newPooledConnection(entry);
+      entry.current.set(conn);
+      if (conn.isValid() && rollback(conn)) {
+        conn.setConnectionTypeCode(assembleConnectionTypeCode(dataSource.getUrl(), username, password));
+        conn.setCheckoutTimestamp(System.currentTimeMillis());
+        conn.setLastUsedTimestamp(System.currentTimeMillis());
+        concurrentState.requests.incrementAndGet();
+        concurrentState.requestTime.addAndGet(System.currentTimeMillis() - t);
+        fireConnectionCheckedOut(System.nanoTime() - startNanos);
+        return conn;
+      }
+      if (log.isDebugEnabled()) {
+        log.debug("A bad connection (" + conn.getRealHashCode() + ") was returned from the pool, getting another connection.");
+      }
+      concurrentState.badConnections.incrementAndGet();
+      localBadConnectionCount++;
+      entry.current.set(null);
+      conn.invalidate();
+      discard(entry);
+      if (localBadConnectionCount > (poolMaximumIdleConnections + poolMaximumLocalBadConnectionTolerance)) {
+        if (log.isDebugEnabled()) {
+          log.debug("ConcurrentPooledDataSource: Could not get a good connection to the database.");
+        }
+        throw new SQLException("ConcurrentPooledDataSource: Could not get a good connection to the database.");
+      }
+    }
+  }
+
+  /*
+   * Rolls back the work left uncommitted on the connection
+   *
+   * @return false if the connection is broken, the caller must discard its entry or the pool slot is lost
+   */
+  private boolean rollback(PooledConnection conn) {
+    try {
+      if (!conn.getRealConnection().getAutoCommit()) {
+        conn.getRealConnection().rollback();
+      }
+      return true;
+    } catch (SQLException e) {
+      if (log.isDebugEnabled()) {
+        log.debug("Could not roll back connection " + conn.getRealHashCode() + ", discarding connection. Cause: " + e);
+      }
+      return false;
+    }
+  }
+
+  /*
+   * Evicts expired idle connections, validates the remaining ones if the ping query is enabled
+   * and opens connections until poolMinimumIdleConnections are idle.
+   */
+  @Override
+  protected void housekeep() throws SQLException {
+    long now = System.currentTimeMillis();
+    for (PoolEntry entry : entries) {
+      if (!entry.reserve()) {
+        continue;
+      }
+      int othersIdle = idleConnections.decrementAndGet();
+      if (isPastMaximumLifetime(entry.createdTimestamp, now)
+          || (isPastMaximumIdleTime(entry.lastUsedTimestamp, now) && othersIdle >= poolMinimumIdleConnections)) {
+        if (log.isDebugEnabled()) {
+          log.debug("Closed expired connection " + entry.realConnection.hashCode() + ".");
+        }
+        discard(entry);
+        continue;
+      }
+      if (poolPingEnabled) {
+        PooledConnection probe = newPooledConnection(entry);
+        if (!pingConnection(probe)) {
+          concurrentState.badConnections.incrementAndGet();
+          discard(entry);
+          continue;
+        }
+        entry.lastValidatedTimestamp = probe.getLastValidatedTimestamp();
+        probe.invalidate();
+      }
+      if (!release(entry)) {
+        discard(entry);
+      }
+    }
+    while (idleConnections.get() < poolMinimumIdleConnections) {
+      PoolEntry entry = create();
+      if (entry == null) {
+        return;
+      }
+      if (!release(entry)) {
+        discard(entry);
+        return;
+      }
+    }
+  }
+
+  private PooledConnection newPooledConnection(PoolEntry entry) {
+    PooledConnection conn = new PooledConnection(entry.realConnection, this);
+    conn.setStatementCache(entry.statementCache);
+    conn.setCreatedTimestamp(entry.createdTimestamp);
+    conn.setLastUsedTimestamp(entry.lastUsedTimestamp);
+    conn.setLastValidatedTimestamp(entry.lastValidatedTimestamp);
+    return conn;
+  }
+
+  private PoolEntry borrow() {
+    PoolEntry entry = lastReturned.get();
+    if (entry != null && entry.reserve()) {
+      idleConnections.decrementAndGet();
+      return entry;
+    }
+    for (PoolEntry candidate : entries) {
+      if (candidate.reserve()) {
+        idleConnections.decrementAndGet();
+        return candidate;
+      }
+    }
+    return null;
+  }
+
+  private PoolEntry create() throws SQLException {
+    while (true) {
+      int total = totalConnections.get();
+      if (total >= poolMaximumActiveConnections) {
+        return null;
+      }
+      if (totalConnections.compareAndSet(total, total + 1)) {
+        break;
+      }
+    }
+    try {
+      long creationStart = System.nanoTime();
+      PoolEntry entry = new PoolEntry(dataSource.getConnection(), newStatementCache());
+      entries.add(entry);
+      concurrentState.createdConnections.incrementAndGet();
+      fireConnectionCreated(System.nanoTime() - creationStart);
+      if (log.isDebugEnabled()) {
+        log.debug("Created connection " + entry.realConnection.hashCode() + ".");
+      }
+      return entry;
+    } catch (SQLException e) {
+      totalConnections.decrementAndGet();
+      throw e;
+    } catch (RuntimeException e) {
+      totalConnections.decrementAndGet();
+      throw e;
+    }
+  }
+
+  private PoolEntry await() throws SQLException {
+    waiters.incrementAndGet();
+    try {
+      // a connection may have been released before this thread was registered as a waiter
+      PoolEntry entry = borrow();
+      if (entry != null) {
+        return entry;
+      }
+      if (log.isDebugEnabled()) {
+        log.debug("Waiting as long as " + poolTimeToWait + " milliseconds for connection.");
+      }
+      long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(poolTimeToWait);
+      for (long remaining = deadline - System.nanoTime(); entry == null && remaining > 0;
+          remaining = deadline - System.nanoTime()) {
+        entry = handoffQueue.poll(Math.min(remaining, BAG_CHECK_INTERVAL_NANOS), TimeUnit.NANOSECONDS);
+        if (entry == null) {
+          entry = borrow();
+        }
+      }
+      if (entry == null) {
+        concurrentState.timedOutWaits.incrementAndGet();
+        fireConnectionWaitTimedOut();
+        entry = claimOverdue();
+      }
+      return entry;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new SQLException("ConcurrentPooledDataSource: Interrupted while waiting for a connection.");
+    } finally {
+      waiters.decrementAndGet();
+    }
+  }
+
+  private PoolEntry claimOverdue() {
+    for (PoolEntry entry : entries) {
+      PooledConnection overdue = entry.current.get();
+      if (overdue == null) {
+        continue;
+      }
+      long checkoutTime = overdue.getCheckoutTime();
+      if (checkoutTime > poolMaximumCheckoutTime && entry.current.compareAndSet(overdue, null)) {
+        concurrentState.claimedOverdue.incrementAndGet();
+        concurrentState.overdueCheckoutTime.addAndGet(checkoutTime);
+        concurrentState.checkoutTime.addAndGet(checkoutTime);
+        overdue.invalidate();
+        try {
+          if (!entry.realConnection.getAutoCommit()) {
+            entry.realConnection.rollback();
+          }
+        } catch (SQLException e) {
+          // the connection will be validated before it is handed out again
+          log.debug("Bad connection. Could not roll back");
+        }
+        entry.lastUsedTimestamp = overdue.getLastUsedTimestamp();
+        if (log.isDebugEnabled()) {
+          log.debug("Claimed overdue connection " + entry.realConnection.hashCode() + ".");
+        }
+        return entry;
+      }
+    }
+    return null;
+  }
+
+  /*
+   * Hands the connection to a waiting thread or puts it back in the bag
+   *
+   * @return false if the connection should be closed because the pool has enough idle connections
+   */
+  private boolean release(PoolEntry entry) {
+    for (int spins = 0; waiters.get() > 0 && spins < MAX_HANDOFF_SPINS; spins++) {
+      if (handoffQueue.offer(entry)) {
+        return true;
+      }
+      Thread.yield();
+    }
+    // a waiter that was not polling yet finds the connection in the bag
+    if (waiters.get() == 0 && idleConnections.get() >= poolMaximumIdleConnections) {
+      return false;
+    }
+    idleConnections.incrementAndGet();
+    if (!entry.release()) {
+      // force closed in the meantime
+      idleConnections.decrementAndGet();
+      return false;
+    }
+    lastReturned.set(entry);
+    return true;
+  }
+
+  private void discard(PoolEntry entry) {
+    entry.markRemoved();
+    closeEntry(entry);
+    if (waiters.get() > 0) {
+      // waiting threads would not notice the free slot before their wait times out
+      try {
+        PoolEntry replacement = create();
+        if (replacement != null && !release(replacement)) {
+          discard(replacement);
+        }
+      } catch (SQLException e) {
+        log.debug("Could not replace a discarded connection: " + e.getMessage());
+      }
+    }
+  }
+
+  private void closeEntry(PoolEntry entry) {
+    if (entries.remove(entry)) {
+      totalConnections.decrementAndGet();
+    }
+    try {
+      Connection realConn = entry.realConnection;
+      if (!realConn.isClosed()) {
+        if (!realConn.getAutoCommit()) {
+          realConn.rollback();
+        }
+        realConn.close();
+      }
+    } catch (Exception e) {
+      // ignore
+    }
+  }
+
+  private PoolEntry findEntry(PooledConnection conn) {
+    Connection realConnection = conn.getRealConnection();
+    for (PoolEntry entry : entries) {
+      if (entry.realConnection == realConnection) {
+        return entry;
+      }
+    }
+    return null;
+  }
+
+  /*
+   * A physical connection owned by the pool. Each checkout wraps it in a new PooledConnection,
+   * so that handles of previous borrowers stay invalid.
+   */
+  private static final class PoolEntry {
+    static final int IDLE = 0;
+    static final int IN_USE = 1;
+    static final int REMOVED = -1;
+
+    final Connection realConnection;
+    final PreparedStatementCache statementCache;
+    final long createdTimestamp;
+    volatile long lastUsedTimestamp;
+    volatile long lastValidatedTimestamp;
+    final AtomicInteger state = new AtomicInteger(IN_USE);
+    final AtomicReference<PooledConnection> current = new AtomicReference<PooledConnection>();
+
+    PoolEntry(Connection realConnection, PreparedStatementCache statementCache) {
+      this.realConnection = realConnection;
+      this.statementCache = statementCache;
+      this.createdTimestamp = System.currentTimeMillis();
+      this.lastUsedTimestamp = createdTimestamp;
+    }
+
+    boolean reserve() {
+      return state.compareAndSet(IDLE, IN_USE);
+    }
+
+    boolean release() {
+      return state.compareAndSet(IN_USE, IDLE);
+    }
+
+    int markRemoved() {
+      return state.getAndSet(REMOVED);
+    }
+  }
+
+}
@@ -0,0 +1,122 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.pooled;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Built-in {@link PoolMetricsListener} that keeps checkout wait time and usage time histograms
+ * next to the gauges and counters of the {@link PoolState}.
+ * Enabled with the {@code poolMetricsEnabled} property of the pooled data sources.
+ */
+public class PoolMetrics implements PoolMetricsListener {
+
+  private final PoolState state;
+  private final LatencyHistogram waitTime = new LatencyHistogram();
+  private final LatencyHistogram usageTime = new LatencyHistogram();
+  private final LatencyHistogram creationTime = new LatencyHistogram();
+
+  public PoolMetrics(PoolState state) {
+    this.state = state;
+  }
+
+  @Override
+  public void connectionCreated(long creationNanos) {
+    creationTime.record(creationNanos);
+  }
+
+  @Override
+  public void connectionCheckedOut(long waitNanos) {
+    waitTime.record(waitNanos);
+  }
+
+  @Override
+  public void connectionReturned(long usageNanos) {
+    usageTime.record(usageNanos);
+  }
+
+  @Override
+  public void connectionWaitTimedOut() {
+    // counted by the pool state
+  }
+
+  public LatencyHistogram getWaitTime() {
+    return waitTime;
+  }
+
+  public LatencyHistogram getUsageTime() {
+    return usageTime;
+  }
+
+  public LatencyHistogram getCreationTime() {
+    return creationTime;
+  }
+
+  public int getActiveConnectionCount() {
+    return state.getActiveConnectionCount();
+  }
+
+  public int getIdleConnectionCount() {
+    return state.getIdleConnectionCount();
+  }
+
+  public int getPendingRequestCount() {
+    return state.getPendingRequestCount();
+  }
+
+  public long getCreatedConnectionCount() {
+    return state.getCreatedConnectionCount();
+  }
+
+  public long getTimedOutWaitCount() {
+    return state.getTimedOutWaitCount();
+  }
+
+  public long getBadConnectionCount() {
+    return state.getBadConnectionCount();
+  }
+
+  public void reset() {
+    waitTime.reset();
+    usageTime.reset();
+    creationTime.reset();
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder builder = new StringBuilder();
+    builder.append("\n===METRICS=====================================================");
+    builder.append("\n activeConnections              ").append(getActiveConnectionCount());
+    builder.append("\n idleConnections                ").append(getIdleConnectionCount());
+    builder.append("\n pendingRequests                ").append(getPendingRequestCount());
+    builder.append("\n createdConnections             ").append(getCreatedConnectionCount());
+    builder.append("\n timedOutWaits                  ").append(getTimedOutWaitCount());
+    appendHistogram(builder, "waitTime", waitTime);
+    appendHistogram(builder, "usageTime", usageTime);
+    appendHistogram(builder, "creationTime", creationTime);
+    builder.append("\n===============================================================");
+    return builder.toString();
+  }
+
+  private static void appendHistogram(StringBuilder builder, String name, LatencyHistogram histogram) {
+    builder.append("\n ").append(name).append(" (us) count=").append(histogram.getCount())
+        .append(" p50=").append(TimeUnit.NANOSECONDS.toMicros(histogram.getPercentile(0.5)))
+        .append(" p99=").append(TimeUnit.NANOSECONDS.toMicros(histogram.getPercentile(0.99)))
+        .append(" p999=").append(TimeUnit.NANOSECONDS.toMicros(histogram.getPercentile(0.999)))
+        .append(" max=").append(TimeUnit.NANOSECONDS.toMicros(histogram.getMax()));
+  }
+
+}
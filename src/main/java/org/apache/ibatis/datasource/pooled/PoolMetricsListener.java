@@ -0,0 +1,46 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.pooled;
+
+/**
+ * Receives timing events from a pooled data source, so pool behaviour can be published to any metrics registry.
+ * Callbacks run on the thread that triggered the event, outside the pool lock, and must not block.
+ *
+ * @see PooledDataSource#addPoolMetricsListener(PoolMetricsListener)
+ */
+public interface PoolMetricsListener {
+
+  /**
+   * @param creationNanos time spent opening the physical connection
+   */
+  void connectionCreated(long creationNanos);
+
+  /**
+   * @param waitNanos time between the request for a connection and its checkout, validation included
+   */
+  void connectionCheckedOut(long waitNanos);
+
+  /**
+   * @param usageNanos time the connection was checked out
+   */
+  void connectionReturned(long usageNanos);
+
+  /**
+   * Called each time a thread waited poolTimeToWait without getting a connection.
+   */
+  void connectionWaitTimedOut();
+
+}
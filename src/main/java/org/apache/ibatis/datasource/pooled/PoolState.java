@@ -35,6 +35,9 @@ public class PoolState {
   protected long accumulatedWaitTime = 0;
   protected long hadToWaitCount = 0;
   protected long badConnectionCount = 0;
+  protected long createdConnectionCount = 0;
+  protected long timedOutWaitCount = 0;
+  protected int pendingRequestCount = 0;
 
   public PoolState(PooledDataSource dataSource) {
     this.dataSource = dataSource;
@@ -61,6 +64,18 @@ public class PoolState {
     return badConnectionCount;
   }
 
+  public synchronized long getCreatedConnectionCount() {
+    return createdConnectionCount;
+  }
+
+  public synchronized long getTimedOutWaitCount() {
+    return timedOutWaitCount;
+  }
+
+  public synchronized int getPendingRequestCount() {
+    return pendingRequestCount;
+  }
+
   public synchronized long getClaimedOverdueConnectionCount() {
     return claimedOverdueConnectionCount;
   }
@@ -97,6 +112,10 @@ public class PoolState {
     builder.append("\n poolPingEnabled                ").append(dataSource.poolPingEnabled);
     builder.append("\n poolPingQuery                  ").append(dataSource.poolPingQuery);
     builder.append("\n poolPingConnectionsNotUsedFor  ").append(dataSource.poolPingConnectionsNotUsedFor);
+    builder.append("\n poolMinIdleConnections         ").append(dataSource.poolMinimumIdleConnections);
+    builder.append("\n poolMaxConnectionLifetime      ").append(dataSource.poolMaximumConnectionLifetime);
+    builder.append("\n poolMaxIdleTime                ").append(dataSource.poolMaximumIdleTime);
+    builder.append("\n poolHousekeepingInterval       ").append(dataSource.poolHousekeepingInterval);
     builder.append("\n ---STATUS-----------------------------------------------------");
     builder.append("\n activeConnections              ").append(getActiveConnectionCount());
     builder.append("\n idleConnections                ").append(getIdleConnectionCount());
@@ -108,6 +127,9 @@ public class PoolState {
     builder.append("\n hadToWait                      ").append(getHadToWaitCount());
     builder.append("\n averageWaitTime                ").append(getAverageWaitTime());
     builder.append("\n badConnectionCount             ").append(getBadConnectionCount());
+    builder.append("\n createdConnectionCount         ").append(getCreatedConnectionCount());
+    builder.append("\n timedOutWaitCount              ").append(getTimedOutWaitCount());
+    builder.append("\n pendingRequestCount            ").append(getPendingRequestCount());
     builder.append("\n===============================================================");
     return builder.toString();
   }
@@ -23,7 +23,15 @@ import java.sql.DriverManager;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 
 import javax.sql.DataSource;
@@ -43,7 +51,7 @@ public class PooledDataSource implements DataSource {
 
   private final PoolState state = new PoolState(this);
 
-  private final UnpooledDataSource dataSource;
+  protected final UnpooledDataSource dataSource;
 
   // OPTIONAL CONFIGURATION FIELDS
   protected int poolMaximumActiveConnections = 10;
@@ -54,8 +62,18 @@ public class PooledDataSource implements DataSource {
   protected String poolPingQuery = "NO PING QUERY SET";
   protected boolean poolPingEnabled;
   protected int poolPingConnectionsNotUsedFor;
-
-  private int expectedConnectionTypeCode;
+  protected int poolMinimumIdleConnections;
+  protected int poolMaximumConnectionLifetime;
+  protected int poolMaximumIdleTime;
+  protected int poolHousekeepingInterval;
+  protected int poolPreparedStatementCacheSize;
+
+  private volatile int expectedConnectionTypeCode;
+  private PoolHousekeeper housekeeper;
+  // the idle connection the housekeeping task is pinging, guarded by state
+  private PooledConnection validatingConnection;
+  private PoolMetrics poolMetrics;
+  private volatile PoolMetricsListener[] metricsListeners = new PoolMetricsListener[0];
 
   public PooledDataSource() {
     dataSource = new UnpooledDataSource();
@@ -236,6 +254,103 @@ public class PooledDataSource implements DataSource {
     forceCloseAll();
   }
 
+  /*
+   * The number of idle connections the housekeeping task keeps open ahead of demand
+   *
+   * @param poolMinimumIdleConnections The minimum number of idle connections
+   * @since 3.4.7
+   */
+  public void setPoolMinimumIdleConnections(int poolMinimumIdleConnections) {
+    this.poolMinimumIdleConnections = poolMinimumIdleConnections;
+  }
+
+  /*
+   * The maximum time a connection may stay open before it is closed on return or by the housekeeping task.
+   * Zero means connections are never retired because of their age.
+   *
+   * @param milliseconds The maximum lifetime of a connection
+   * @since 3.4.7
+   */
+  public void setPoolMaximumConnectionLifetime(int milliseconds) {
+    this.poolMaximumConnectionLifetime = milliseconds;
+  }
+
+  /*
+   * The time after which the housekeeping task closes a connection that has not been used,
+   * as long as more than poolMinimumIdleConnections connections are idle. Zero disables idle eviction.
+   *
+   * @param milliseconds The maximum idle time of a connection
+   * @since 3.4.7
+   */
+  public void setPoolMaximumIdleTime(int milliseconds) {
+    this.poolMaximumIdleTime = milliseconds;
+  }
+
+  /*
+   * How often the background housekeeping task evicts expired connections, validates idle ones
+   * and opens new ones up to poolMinimumIdleConnections. Zero (the default) disables the task.
+   *
+   * @param milliseconds The interval between two runs of the housekeeping task
+   * @since 3.4.7
+   */
+  public synchronized void setPoolHousekeepingInterval(int milliseconds) {
+    this.poolHousekeepingInterval = milliseconds;
+    if (housekeeper != null) {
+      housekeeper.cancel();
+      housekeeper = null;
+    }
+    if (milliseconds > 0) {
+      housekeeper = PoolHousekeeper.schedule(this, milliseconds);
+    }
+  }
+
+  /*
+   * The number of idle prepared statements kept open on each connection, so that statements are prepared once
+   * per connection instead of once per use. Zero (the default) disables the cache.
+   *
+   * @param poolPreparedStatementCacheSize The maximum number of cached statements per connection
+   * @since 3.4.7
+   */
+  public void setPoolPreparedStatementCacheSize(int poolPreparedStatementCacheSize) {
+    this.poolPreparedStatementCacheSize = poolPreparedStatementCacheSize;
+    forceCloseAll();
+  }
+
+  /*
+   * Records checkout wait time, usage time and connection creation time histograms,
+   * available through {@link #getPoolMetrics()}
+   *
+   * @param poolMetricsEnabled True to collect the built-in metrics
+   * @since 3.4.7
+   */
+  public synchronized void setPoolMetricsEnabled(boolean poolMetricsEnabled) {
+    if (poolMetricsEnabled && poolMetrics == null) {
+      poolMetrics = new PoolMetrics(getPoolState());
+      addPoolMetricsListener(poolMetrics);
+    } else if (!poolMetricsEnabled && poolMetrics != null) {
+      removePoolMetricsListener(poolMetrics);
+      poolMetrics = null;
+    }
+  }
+
+  /*
+   * Registers a listener that is notified of connection creation, checkout, return and wait timeouts
+   *
+   * @param listener The listener
+   * @since 3.4.7
+   */
+  public synchronized void addPoolMetricsListener(PoolMetricsListener listener) {
+    PoolMetricsListener[] listeners = Arrays.copyOf(metricsListeners, metricsListeners.length + 1);
+    listeners[metricsListeners.length] = listener;
+    metricsListeners = listeners;
+  }
+
+  public synchronized void removePoolMetricsListener(PoolMetricsListener listener) {
+    List<PoolMetricsListener> listeners = new ArrayList<PoolMetricsListener>(Arrays.asList(metricsListeners));
+    listeners.remove(listener);
+    metricsListeners = listeners.toArray(new PoolMetricsListener[listeners.size()]);
+  }
+
   public String getDriver() {
     return dataSource.getDriver();
   }
@@ -296,6 +411,37 @@ public class PooledDataSource implements DataSource {
     return poolPingConnectionsNotUsedFor;
   }
 
+  public int getPoolMinimumIdleConnections() {
+    return poolMinimumIdleConnections;
+  }
+
+  public int getPoolMaximumConnectionLifetime() {
+    return poolMaximumConnectionLifetime;
+  }
+
+  public int getPoolMaximumIdleTime() {
+    return poolMaximumIdleTime;
+  }
+
+  public int getPoolHousekeepingInterval() {
+    return poolHousekeepingInterval;
+  }
+
+  public int getPoolPreparedStatementCacheSize() {
+    return poolPreparedStatementCacheSize;
+  }
+
+  public synchronized boolean isPoolMetricsEnabled() {
+    return poolMetrics != null;
+  }
+
+  /*
+   * @return The built-in metrics, or null unless poolMetricsEnabled is set
+   */
+  public synchronized PoolMetrics getPoolMetrics() {
+    return poolMetrics;
+  }
+
   /*
    * Closes all active and idle connections in the pool
    */
@@ -316,6 +462,11 @@ public class PooledDataSource implements DataSource {
           // ignore
         }
       }
+      if (validatingConnection != null) {
+        // closed by the housekeeping task once its ping returns
+        validatingConnection.invalidate();
+        validatingConnection = null;
+      }
       for (int i = state.idleConnections.size(); i > 0; i--) {
         try {
           PooledConnection conn = state.idleConnections.remove(i - 1);
@@ -336,28 +487,49 @@ public class PooledDataSource implements DataSource {
     }
   }
 
+  /*
+   * Stops the housekeeping task and closes all active and idle connections in the pool
+   *
+   * @since 3.4.7
+   */
+  public synchronized void close() {
+    if (housekeeper != null) {
+      housekeeper.cancel();
+      housekeeper = null;
+    }
+    forceCloseAll();
+  }
+
   public PoolState getPoolState() {
     return state;
   }
 
-  private int assembleConnectionTypeCode(String url, String username, String password) {
+  protected int getExpectedConnectionTypeCode() {
+    return expectedConnectionTypeCode;
+  }
+
+  protected int assembleConnectionTypeCode(String url, String username, String password) {
     return ("" + url + username + password).hashCode();
   }
 
   protected void pushConnection(PooledConnection conn) throws SQLException {
-
+    long checkoutTime = -1;
     synchronized (state) {
       state.activeConnections.remove(conn);
       if (conn.isValid()) {
-        if (state.idleConnections.size() < poolMaximumIdleConnections && conn.getConnectionTypeCode() == expectedConnectionTypeCode) {
+        checkoutTime = conn.getCheckoutTime();
+        if (state.idleConnections.size() < poolMaximumIdleConnections && conn.getConnectionTypeCode() == expectedConnectionTypeCode
+            && !isPastMaximumLifetime(conn.getCreatedTimestamp(), System.currentTimeMillis())) {
           state.accumulatedCheckoutTime += conn.getCheckoutTime();
           if (!conn.getRealConnection().getAutoCommit()) {
             conn.getRealConnection().rollback();
           }
           PooledConnection newConn = new PooledConnection(conn.getRealConnection(), this);
+          newConn.setStatementCache(conn.getStatementCache());
           state.idleConnections.add(newConn);
           newConn.setCreatedTimestamp(conn.getCreatedTimestamp());
           newConn.setLastUsedTimestamp(conn.getLastUsedTimestamp());
+          newConn.setLastValidatedTimestamp(conn.getLastValidatedTimestamp());
           conn.invalidate();
           if (log.isDebugEnabled()) {
             log.debug("Returned connection " + newConn.getRealHashCode() + " to pool.");
@@ -381,12 +553,18 @@ public class PooledDataSource implements DataSource {
         state.badConnectionCount++;
       }
     }
+    if (checkoutTime >= 0) {
+      fireConnectionReturned(TimeUnit.MILLISECONDS.toNanos(checkoutTime));
+    }
   }
 
   private PooledConnection popConnection(String username, String password) throws SQLException {
     boolean countedWait = false;
     PooledConnection conn = null;
     long t = System.currentTimeMillis();
+    long startNanos = System.nanoTime();
+    long creationNanos = -1;
+    int timedOutWaits = 0;
     int localBadConnectionCount = 0;
 
     while (conn == null) {
@@ -401,7 +579,11 @@ public class PooledDataSource implements DataSource {
           // Pool does not have available connection
           if (state.activeConnections.size() < poolMaximumActiveConnections) {
             // Can create new connection
+            long creationStart = System.nanoTime();
             conn = new PooledConnection(dataSource.getConnection(), this);
+            conn.setStatementCache(newStatementCache());
+            creationNanos = System.nanoTime() - creationStart;
+            state.createdConnectionCount++;
             if (log.isDebugEnabled()) {
               log.debug("Created connection " + conn.getRealHashCode() + ".");
             }
@@ -431,8 +613,10 @@ public class PooledDataSource implements DataSource {
                 }  
               }
               conn = new PooledConnection(oldestActiveConnection.getRealConnection(), this);
+              conn.setStatementCache(oldestActiveConnection.getStatementCache());
               conn.setCreatedTimestamp(oldestActiveConnection.getCreatedTimestamp());
               conn.setLastUsedTimestamp(oldestActiveConnection.getLastUsedTimestamp());
+              conn.setLastValidatedTimestamp(oldestActiveConnection.getLastValidatedTimestamp());
               oldestActiveConnection.invalidate();
               if (log.isDebugEnabled()) {
                 log.debug("Claimed overdue connection " + conn.getRealHashCode() + ".");
@@ -448,8 +632,18 @@ public class PooledDataSource implements DataSource {
                   log.debug("Waiting as long as " + poolTimeToWait + " milliseconds for connection.");
                 }
                 long wt = System.currentTimeMillis();
-                state.wait(poolTimeToWait);
-                state.accumulatedWaitTime += System.currentTimeMillis() - wt;
+                state.pendingRequestCount++;
+                try {
+                  state.wait(poolTimeToWait);
+                } finally {
+                  state.pendingRequestCount--;
+                }
+                long waited = System.currentTimeMillis() - wt;
+                state.accumulatedWaitTime += waited;
+                if (waited >= poolTimeToWait) {
+                  state.timedOutWaitCount++;
+                  timedOutWaits++;
+                }
               } catch (InterruptedException e) {
                 break;
               }
@@ -494,9 +688,42 @@ public class PooledDataSource implements DataSource {
       throw new SQLException("PooledDataSource: Unknown severe error condition.  The connection pool returned a null connection.");
     }
 
+    if (metricsListeners.length > 0) {
+      if (creationNanos >= 0) {
+        fireConnectionCreated(creationNanos);
+      }
+      for (int i = 0; i < timedOutWaits; i++) {
+        fireConnectionWaitTimedOut();
+      }
+      fireConnectionCheckedOut(System.nanoTime() - startNanos);
+    }
     return conn;
   }
 
+  protected void fireConnectionCreated(long creationNanos) {
+    for (PoolMetricsListener listener : metricsListeners) {
+      listener.connectionCreated(creationNanos);
+    }
+  }
+
+  protected void fireConnectionCheckedOut(long waitNanos) {
+    for (PoolMetricsListener listener : metricsListeners) {
+      listener.connectionCheckedOut(waitNanos);
+    }
+  }
+
+  protected void fireConnectionReturned(long usageNanos) {
+    for (PoolMetricsListener listener : metricsListeners) {
+      listener.connectionReturned(usageNanos);
+    }
+  }
+
+  protected void fireConnectionWaitTimedOut() {
+    for (PoolMetricsListener listener : metricsListeners) {
+      listener.connectionWaitTimedOut();
+    }
+  }
+
   /*
    * Method to check to see if a connection is still usable
    *
@@ -517,7 +744,9 @@ public class PooledDataSource implements DataSource {
 
     if (result) {
       if (poolPingEnabled) {
-        if (poolPingConnectionsNotUsedFor >= 0 && conn.getTimeElapsedSinceLastUse() > poolPingConnectionsNotUsedFor) {
+        // with housekeeping on, a connection validated by the housekeeping task is not pinged again on checkout
+        long timeUnchecked = poolHousekeepingInterval > 0 ? conn.getTimeElapsedSinceLastCheck() : conn.getTimeElapsedSinceLastUse();
+        if (poolPingConnectionsNotUsedFor >= 0 && timeUnchecked > poolPingConnectionsNotUsedFor) {
           try {
             if (log.isDebugEnabled()) {
               log.debug("Testing connection " + conn.getRealHashCode() + " ...");
@@ -531,6 +760,7 @@ public class PooledDataSource implements DataSource {
               realConn.rollback();
             }
             result = true;
+            conn.setLastValidatedTimestamp(System.currentTimeMillis());
             if (log.isDebugEnabled()) {
               log.debug("Connection " + conn.getRealHashCode() + " is GOOD!");
             }
@@ -552,6 +782,135 @@ public class PooledDataSource implements DataSource {
     return result;
   }
 
+  /*
+   * Evicts expired idle connections, validates the remaining ones if the ping query is enabled
+   * and opens connections until poolMinimumIdleConnections are idle.
+   * Called by the housekeeping task, never on the request path.
+   */
+  protected void housekeep() throws SQLException {
+    long now = System.currentTimeMillis();
+    List<PooledConnection> expired = new ArrayList<PooledConnection>();
+    synchronized (state) {
+      int idle = state.idleConnections.size();
+      for (Iterator<PooledConnection> it = state.idleConnections.iterator(); it.hasNext();) {
+        PooledConnection conn = it.next();
+        if (isPastMaximumLifetime(conn.getCreatedTimestamp(), now)
+            || (isPastMaximumIdleTime(conn.getLastUsedTimestamp(), now) && idle - expired.size() > poolMinimumIdleConnections)) {
+          it.remove();
+          expired.add(conn);
+        }
+      }
+    }
+    for (PooledConnection conn : expired) {
+      conn.invalidate();
+      closeQuietly(conn.getRealConnection());
+      if (log.isDebugEnabled()) {
+        log.debug("Closed expired connection " + conn.getRealHashCode() + ".");
+      }
+    }
+    if (poolPingEnabled) {
+      validateIdleConnections();
+    }
+    while (true) {
+      int typeCode = expectedConnectionTypeCode;
+      synchronized (state) {
+        int idle = state.idleConnections.size();
+        if (idle >= poolMinimumIdleConnections || idle >= poolMaximumIdleConnections
+            || idle + state.activeConnections.size() >= poolMaximumActiveConnections) {
+          return;
+        }
+      }
+      long creationStart = System.nanoTime();
+      PooledConnection conn = new PooledConnection(dataSource.getConnection(), this);
+      conn.setStatementCache(newStatementCache());
+      fireConnectionCreated(System.nanoTime() - creationStart);
+      conn.setConnectionTypeCode(typeCode);
+      synchronized (state) {
+        state.createdConnectionCount++;
+        if (state.idleConnections.size() < poolMaximumIdleConnections && typeCode == expectedConnectionTypeCode) {
+          state.idleConnections.add(conn);
+          state.notifyAll();
+          if (log.isDebugEnabled()) {
+            log.debug("Created idle connection " + conn.getRealHashCode() + ".");
+          }
+          continue;
+        }
+      }
+      conn.invalidate();
+      closeQuietly(conn.getRealConnection());
+      return;
+    }
+  }
+
+  /*
+   * Creates the prepared statement cache of a newly opened connection
+   *
+   * @return the cache, or null if prepared statements are not cached
+   */
+  PreparedStatementCache newStatementCache() {
+    return poolPreparedStatementCacheSize > 0 ? new PreparedStatementCache(poolPreparedStatementCacheSize) : null;
+  }
+
+  /*
+   * Pings the idle connections one at a time, so that the others stay available while a connection is validated
+   */
+  private void validateIdleConnections() {
+    Set<PooledConnection> checked = Collections.newSetFromMap(new IdentityHashMap<PooledConnection, Boolean>());
+    while (true) {
+      PooledConnection conn = null;
+      synchronized (state) {
+        for (Iterator<PooledConnection> it = state.idleConnections.iterator(); it.hasNext();) {
+          PooledConnection candidate = it.next();
+          if (!checked.contains(candidate)) {
+            it.remove();
+            conn = candidate;
+            validatingConnection = conn;
+            break;
+          }
+        }
+      }
+      if (conn == null) {
+        return;
+      }
+      checked.add(conn);
+      boolean good = pingConnection(conn);
+      synchronized (state) {
+        // forceCloseAll() clears validatingConnection when it invalidates the connection
+        boolean closed = validatingConnection != conn;
+        validatingConnection = null;
+        if (!good) {
+          state.badConnectionCount++;
+        } else if (!closed && state.idleConnections.size() < poolMaximumIdleConnections
+            && conn.getConnectionTypeCode() == expectedConnectionTypeCode) {
+          state.idleConnections.add(conn);
+          state.notifyAll();
+          continue;
+        }
+      }
+      conn.invalidate();
+      closeQuietly(conn.getRealConnection());
+    }
+  }
+
+  protected boolean isPastMaximumLifetime(long createdTimestamp, long now) {
+    return poolMaximumConnectionLifetime > 0 && now - createdTimestamp > poolMaximumConnectionLifetime;
+  }
+
+  protected boolean isPastMaximumIdleTime(long lastUsedTimestamp, long now) {
+    return poolMaximumIdleTime > 0 && now - lastUsedTimestamp > poolMaximumIdleTime;
+  }
+
+  protected static void closeQuietly(Connection realConn) {
+    try {
+      if (!realConn.getAutoCommit()) {
+        realConn.rollback();
+      }
+      realConn.close();
+    } catch (Exception e) {
+      // ignore
+    }
+  }
+
   /*
    * Unwraps a pooled connection to get to the 'real' connection
    *
@@ -569,7 +928,7 @@ public class PooledDataSource implements DataSource {
   }
 
   protected void finalize() throws Throwable {
-    forceCloseAll();
+    close();
     super.finalize();
   }
 
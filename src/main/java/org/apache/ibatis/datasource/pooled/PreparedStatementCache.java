@@ -0,0 +1,241 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.pooled;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.ibatis.reflection.ExceptionUtil;
+
+/**
+ * The idle prepared statements of a physical connection, kept across checkouts of that connection.
+ *
+ * A statement prepared through a pooled connection is taken from the cache when one with the same SQL, result set
+ * type and concurrency is idle. Closing the statement resets it and puts it back instead of closing it. The least
+ * recently used statement is closed when more statements are idle than the cache may hold.
+ */
+final class PreparedStatementCache {
+
+  private static final Class<?>[] IFACES = new Class<?>[] { PreparedStatement.class };
+
+  private final int maximumSize;
+  // access ordered, the eldest entry is the least recently used statement
+  private final Map<Key, PreparedStatement> statements = new LinkedHashMap<Key, PreparedStatement>(16, 0.75f, true);
+
+  PreparedStatementCache(int maximumSize) {
+    this.maximumSize = maximumSize;
+  }
+
+  /*
+   * Prepares a statement through the cache if the arguments are those of prepareStatement(String) or
+   * prepareStatement(String, int, int)
+   *
+   * @return the statement, or null if statements prepared with these arguments are not cached
+   */
+  PreparedStatement prepareStatement(PooledConnection conn, Object[] args) throws SQLException {
+    final Key key;
+    if (args.length == 1) {
+      key = new Key((String) args[0], ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+    } else if (args.length == 3 && args[1] instanceof Integer && args[2] instanceof Integer) {
+      key = new Key((String) args[0], (Integer) args[1], (Integer) args[2]);
+    } else {
+      return null;
+    }
+    PreparedStatement statement;
+    synchronized (this) {
+      statement = statements.remove(key);
+    }
+    if (statement == null) {
+      statement = conn.getRealConnection().prepareStatement(key.sql, key.resultSetType, key.resultSetConcurrency);
+    }
+    CachedStatement handler = new CachedStatement(key, statement, conn.getProxyConnection());
+    return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(), IFACES, handler);
+  }
+
+  private void release(CachedStatement handler) {
+    PreparedStatement statement = handler.statement;
+    if (!handler.reset()) {
+      closeQuietly(statement);
+      return;
+    }
+    PreparedStatement evicted;
+    synchronized (this) {
+      // the same statement may have been prepared twice while the first one was in use
+      evicted = statements.put(handler.key, statement);
+      if (evicted == null && statements.size() > maximumSize) {
+        Iterator<PreparedStatement> eldest = statements.values().iterator();
+        evicted = eldest.next();
+        eldest.remove();
+      }
+    }
+    if (evicted != null) {
+      closeQuietly(evicted);
+    }
+  }
+
+  private static void closeQuietly(Statement statement) {
+    try {
+      statement.close();
+    } catch (SQLException e) {
+      // ignore
+    }
+  }
+
+  private static final class Key {
+    private final String sql;
+    private final int resultSetType;
+    private final int resultSetConcurrency;
+    private final int hashCode;
+
+    private Key(String sql, int resultSetType, int resultSetConcurrency) {
+      this.sql = sql;
+      this.resultSetType = resultSetType;
+      this.resultSetConcurrency = resultSetConcurrency;
+      this.hashCode = (sql.hashCode() * 31 + resultSetType) * 31 + resultSetConcurrency;
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) obj;
+      return resultSetType == other.resultSetType && resultSetConcurrency == other.resultSetConcurrency
+          && sql.equals(other.sql);
+    }
+  }
+
+  /*
+   * The statement handed out for one use. Settings changed through the statement are restored when it is
+   * returned to the cache, a statement with settings that cannot be restored is closed instead.
+   */
+  private final class CachedStatement implements InvocationHandler {
+
+    private final Key key;
+    private final PreparedStatement statement;
+    private final Object connection;
+    private boolean closed;
+    private boolean batched;
+    private boolean reusable = true;
+    private int[] settings;
+
+    private CachedStatement(Key key, PreparedStatement statement, Object connection) {
+      this.key = key;
+      this.statement = statement;
+      this.connection = connection;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+      String methodName = method.getName();
+      if (Object.class.equals(method.getDeclaringClass())) {
+        if ("equals".equals(methodName)) {
+          return proxy == args[0];
+        } else if ("hashCode".equals(methodName)) {
+          return System.identityHashCode(proxy);
+        }
+        return statement.toString();
+      }
+      if ("close".equals(methodName)) {
+        if (!closed) {
+          closed = true;
+          release(this);
+        }
+        return null;
+      } else if ("isClosed".equals(methodName)) {
+        return closed || statement.isClosed();
+      }
+      if (closed) {
+        throw new SQLException("Statement is closed.");
+      }
+      if ("getConnection".equals(methodName)) {
+        return connection;
+      } else if ("addBatch".equals(methodName)) {
+        batched = true;
+      } else if (Statement.class.equals(method.getDeclaringClass())
+          && (methodName.startsWith("set") || "closeOnCompletion".equals(methodName))) {
+        changeSetting(methodName);
+      }
+      try {
+        return method.invoke(statement, args);
+      } catch (Throwable t) {
+        throw ExceptionUtil.unwrapThrowable(t);
+      }
+    }
+
+    private void changeSetting(String methodName) throws SQLException {
+      if ("setQueryTimeout".equals(methodName) || "setFetchSize".equals(methodName)
+          || "setFetchDirection".equals(methodName) || "setMaxRows".equals(methodName)
+          || "setMaxFieldSize".equals(methodName)) {
+        if (settings == null) {
+          settings = new int[] { statement.getQueryTimeout(), statement.getFetchSize(), statement.getFetchDirection(),
+              statement.getMaxRows(), statement.getMaxFieldSize() };
+        }
+      } else {
+        reusable = false;
+      }
+    }
+
+    /*
+     * Makes the statement ready for its next use
+     *
+     * @return false if the statement cannot be reused
+     */
+    private boolean reset() {
+      if (!reusable) {
+        return false;
+      }
+      try {
+        if (statement.isClosed()) {
+          return false;
+        }
+        ResultSet resultSet = statement.getResultSet();
+        if (resultSet != null) {
+          resultSet.close();
+        }
+        statement.clearParameters();
+        if (batched) {
+          statement.clearBatch();
+        }
+        if (settings != null) {
+          statement.setQueryTimeout(settings[0]);
+          statement.setFetchSize(settings[1]);
+          statement.setFetchDirection(settings[2]);
+          statement.setMaxRows(settings[3]);
+          statement.setMaxFieldSize(settings[4]);
+        }
+        statement.clearWarnings();
+        return true;
+      } catch (SQLException e) {
+        return false;
+      }
+    }
+  }
+
+}
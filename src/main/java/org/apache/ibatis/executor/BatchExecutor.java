@@ -17,11 +17,15 @@ package org.apache.ibatis.executor;
 
 import java.sql.BatchUpdateException;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.ibatis.cursor.Cursor;
 import org.apache.ibatis.executor.keygen.Jdbc3KeyGenerator;
@@ -30,6 +34,10 @@ import org.apache.ibatis.executor.keygen.NoKeyGenerator;
 import org.apache.ibatis.executor.statement.StatementHandler;
 import org.apache.ibatis.mapping.BoundSql;
 import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.mapping.StatementType;
+import org.apache.ibatis.reflection.MetaObject;
 import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.session.ResultHandler;
 import org.apache.ibatis.session.RowBounds;
@@ -44,6 +52,14 @@ public class BatchExecutor extends BaseExecutor {
 
   private final List<Statement> statementList = new ArrayList<Statement>();
   private final List<BatchResult> batchResultList = new ArrayList<BatchResult>();
+  // the rows of inserts to be rewritten into multi row inserts, null for statements batched by the driver
+  private final List<MultiRowInsert> multiRowInsertList = new ArrayList<MultiRowInsert>();
+  // positions in statementList of the statements still open for more rows, only used when grouping
+  private final Map<StatementKey, Integer> openStatements = new HashMap<StatementKey, Integer>();
+  // results of the batches flushed automatically since the last flushStatements()
+  private final List<BatchResult> flushedResults = new ArrayList<BatchResult>();
+  private int pendingRows;
+  private long pendingBytes;
   private String currentSql;
   private MappedStatement currentStatement;
 
@@ -58,27 +74,135 @@ public class BatchExecutor extends BaseExecutor {
     final BoundSql boundSql = handler.getBoundSql();
     final String sql = boundSql.getSql();
     final Statement stmt;
-    if (sql.equals(currentSql) && ms.equals(currentStatement)) {
-      int last = statementList.size() - 1;
-      stmt = statementList.get(last);
+    final int open = findOpenStatement(ms, sql);
+    final MultiRowInsert multiRowInsert = open >= 0 ? multiRowInsertList.get(open) : newMultiRowInsert(ms, boundSql);
+    if (multiRowInsert != null) {
+      // executed on flush, when it is known how many rows the statements take
+      multiRowInsert.addRow(handler, getConnection(ms.getStatementLog()));
+      if (open >= 0) {
+        batchResultList.get(open).addParameterObject(parameterObject);
+      } else {
+        addStatement(ms, sql, null, multiRowInsert, parameterObject);
+      }
+    } else if (open >= 0) {
+      stmt = statementList.get(open);
       applyTransactionTimeout(stmt);
      handler.parameterize(stmt);//fix Issues 322
-      BatchResult batchResult = batchResultList.get(last);
+      BatchResult batchResult = batchResultList.get(open);
       batchResult.addParameterObject(parameterObject);
+      handler.batch(stmt);
     } else {
       Connection connection = getConnection(ms.getStatementLog());
       stmt = handler.prepare(connection, transaction.getTimeout());
       handler.parameterize(stmt);    //fix Issues 322
-      currentSql = sql;
-      currentStatement = ms;
-      statementList.add(stmt);
-      batchResultList.add(new BatchResult(ms, sql, parameterObject));
+      addStatement(ms, sql, stmt, null, parameterObject);
+      handler.batch(stmt);
+    }
+    if (isAutoFlushNeeded(open >= 0 ? open : statementList.size() - 1, boundSql, parameterObject)) {
+      autoFlush();
     }
-  // handler.parameterize(stmt);
-    handler.batch(stmt);
     return BATCH_UPDATE_RETURN_VALUE;
   }
 
+  private void addStatement(MappedStatement ms, String sql, Statement stmt, MultiRowInsert multiRowInsert,
+      Object parameterObject) {
+    currentSql = sql;
+    currentStatement = ms;
+    if (configuration.isBatchStatementGroupingEnabled()) {
+      openStatements.put(new StatementKey(ms, sql), statementList.size());
+    }
+    statementList.add(stmt);
+    multiRowInsertList.add(multiRowInsert);
+    batchResultList.add(new BatchResult(ms, sql, parameterObject));
+  }
+
+  private MultiRowInsert newMultiRowInsert(MappedStatement ms, BoundSql boundSql) {
+    if (configuration.getBatchInsertRewriteRows() < 2 || ms.getSqlCommandType() != SqlCommandType.INSERT
+        || ms.getStatementType() != StatementType.PREPARED) {
+      return null;
+    }
+    return MultiRowInsert.forStatement(ms, boundSql.getSql(), boundSql.getParameterMappings().size());
+  }
+
+  private boolean isAutoFlushNeeded(int index, BoundSql boundSql, Object parameterObject) {
+    pendingRows++;
+    final int statementRows = configuration.getBatchAutoFlushStatementRows();
+    if (statementRows > 0 && batchResultList.get(index).getParameterObjects().size() >= statementRows) {
+      return true;
+    }
+    final int maxPendingRows = configuration.getBatchAutoFlushPendingRows();
+    if (maxPendingRows > 0 && pendingRows >= maxPendingRows) {
+      return true;
+    }
+    final long maxPendingBytes = configuration.getBatchAutoFlushPendingBytes();
+    if (maxPendingBytes > 0) {
+      pendingBytes += estimateSize(boundSql, parameterObject);
+      return pendingBytes >= maxPendingBytes;
+    }
+    return false;
+  }
+
+  /**
+   * Executes all statements of the batch in order, as flushStatements() would, and keeps their results for the
+   * next flushStatements().
+   */
+  private void autoFlush() throws SQLException {
+    List<BatchResult> results = doFlushStatements(false);
+    if (configuration.isBatchAutoFlushDropParameters()) {
+      for (BatchResult result : results) {
+        result.getParameterObjects().clear();
+      }
+    }
+    flushedResults.addAll(results);
+  }
+
+  /**
+   * A rough size of the values bound for one row: strings and byte arrays by their length, anything else as a
+   * fixed amount. Only evaluated when a byte limit is set.
+   */
+  private long estimateSize(BoundSql boundSql, Object parameterObject) {
+    long size = 16;
+    MetaObject metaObject = null;
+    for (ParameterMapping parameterMapping : boundSql.getParameterMappings()) {
+      final String property = parameterMapping.getProperty();
+      final Object value;
+      if (boundSql.hasAdditionalParameter(property)) {
+        value = boundSql.getAdditionalParameter(property);
+      } else if (parameterObject == null) {
+        value = null;
+      } else if (configuration.getTypeHandlerRegistry().hasTypeHandler(parameterObject.getClass())) {
+        value = parameterObject;
+      } else {
+        if (metaObject == null) {
+          metaObject = configuration.newMetaObject(parameterObject);
+        }
+        value = metaObject.getValue(property);
+      }
+      if (value instanceof String) {
+        size += 40 + 2L * ((String) value).length();
+      } else if (value instanceof byte[]) {
+        size += 16 + ((byte[]) value).length;
+      } else {
+        size += 16;
+      }
+    }
+    return size;
+  }
+
+  /**
+   * Without grouping only the last statement takes more rows, so the statements run in the order they were
+   * called. With grouping every statement of the batch does, and each runs where it was first called.
+   *
+   * @return the position of the statement to add this row to, or -1 if a new statement is needed
+   */
+  private int findOpenStatement(MappedStatement ms, String sql) {
+    if (configuration.isBatchStatementGroupingEnabled()) {
+      Integer open = openStatements.get(new StatementKey(ms, sql));
+      return open != null ? open : -1;
+    }
+    return sql.equals(currentSql) && ms.equals(currentStatement) ? statementList.size() - 1 : -1;
+  }
+
   @Override
   public <E> List<E> doQuery(MappedStatement ms, Object parameterObject, RowBounds rowBounds, ResultHandler resultHandler, BoundSql boundSql)
       throws SQLException {
@@ -110,27 +234,23 @@ public class BatchExecutor extends BaseExecutor {
   @Override
   public List<BatchResult> doFlushStatements(boolean isRollback) throws SQLException {
     try {
-      List<BatchResult> results = new ArrayList<BatchResult>();
+      List<BatchResult> results = new ArrayList<BatchResult>(flushedResults);
+      flushedResults.clear();
       if (isRollback) {
         return Collections.emptyList();
       }
       for (int i = 0, n = statementList.size(); i < n; i++) {
         Statement stmt = statementList.get(i);
-        applyTransactionTimeout(stmt);
         BatchResult batchResult = batchResultList.get(i);
         try {
-          batchResult.setUpdateCounts(stmt.executeBatch());
-          MappedStatement ms = batchResult.getMappedStatement();
-          List<Object> parameterObjects = batchResult.getParameterObjects();
-          KeyGenerator keyGenerator = ms.getKeyGenerator();
-          if (Jdbc3KeyGenerator.class.equals(keyGenerator.getClass())) {
-            Jdbc3KeyGenerator jdbc3KeyGenerator = (Jdbc3KeyGenerator) keyGenerator;
-            jdbc3KeyGenerator.processBatch(ms, stmt, parameterObjects);
-          } else if (!NoKeyGenerator.class.equals(keyGenerator.getClass())) { //issue #141
-            for (Object parameter : parameterObjects) {
-              keyGenerator.processAfter(this, ms, stmt, parameter);
-            }
+          if (multiRowInsertList.get(i) != null) {
+            batchResult.setUpdateCounts(executeMultiRowInsert(multiRowInsertList.get(i), batchResult.getParameterObjects()));
+            results.add(batchResult);
+            continue;
           }
+          applyTransactionTimeout(stmt);
+          batchResult.setUpdateCounts(stmt.executeBatch());
+          processGeneratedKeys(batchResult.getMappedStatement(), stmt, batchResult.getParameterObjects());
           // Close statement to close cursor #1109
           closeStatement(stmt);
         } catch (BatchUpdateException e) {
@@ -140,9 +260,9 @@ public class BatchExecutor extends BaseExecutor {
               .append(i + 1)
               .append(")")
               .append(" failed.");
-          if (i > 0) {
+          if (!results.isEmpty()) {
             message.append(" ")
-                .append(i)
+                .append(results.size())
                 .append(" prior sub executor(s) completed successfully, but will be rolled back.");
           }
           throw new BatchExecutorException(message.toString(), e, results, batchResult);
@@ -156,7 +276,94 @@ public class BatchExecutor extends BaseExecutor {
       }
       currentSql = null;
       statementList.clear();
+      multiRowInsertList.clear();
       batchResultList.clear();
+      openStatements.clear();
+      pendingRows = 0;
+      pendingBytes = 0;
+    }
+  }
+
+  private void processGeneratedKeys(MappedStatement ms, Statement stmt, List<Object> parameterObjects) throws SQLException {
+    KeyGenerator keyGenerator = ms.getKeyGenerator();
+    if (Jdbc3KeyGenerator.class.equals(keyGenerator.getClass())) {
+      Jdbc3KeyGenerator jdbc3KeyGenerator = (Jdbc3KeyGenerator) keyGenerator;
+      jdbc3KeyGenerator.processBatch(ms, stmt, parameterObjects);
+    } else if (!NoKeyGenerator.class.equals(keyGenerator.getClass())) { //issue #141
+      for (Object parameter : parameterObjects) {
+        keyGenerator.processAfter(this, ms, stmt, parameter);
+      }
+    }
+  }
+
+  /**
+   * Runs the rows as batches of one statement taking the maximum number of rows, followed by one statement taking
+   * the rest.
+   *
+   * @return an update count per row, the count of each statement is spread over its rows
+   */
+  private int[] executeMultiRowInsert(MultiRowInsert multiRowInsert, List<Object> parameterObjects) throws SQLException {
+    final int rows = parameterObjects.size();
+    final int rowsPerStatement = Math.min(configuration.getBatchInsertRewriteRows(), rows);
+    final int fullStatements = rows / rowsPerStatement;
+    final int[] updateCounts = new int[rows];
+    executeMultiRowInsert(multiRowInsert, parameterObjects, 0, fullStatements, rowsPerStatement, updateCounts);
+    final int from = fullStatements * rowsPerStatement;
+    if (from < rows) {
+      executeMultiRowInsert(multiRowInsert, parameterObjects, from, 1, rows - from, updateCounts);
+    }
+    return updateCounts;
+  }
+
+  private void executeMultiRowInsert(MultiRowInsert multiRowInsert, List<Object> parameterObjects, int from,
+      int statements, int rowsPerStatement, int[] updateCounts) throws SQLException {
+    final MappedStatement ms = multiRowInsert.getMappedStatement();
+    final List<Object> rows = parameterObjects.subList(from, from + statements * rowsPerStatement);
+    // keys were generated before the rows were collected, the handler must not generate them again
+    final BoundSql boundSql = new BoundSql(configuration, multiRowInsert.getSql(rowsPerStatement),
+        Collections.<ParameterMapping>emptyList(), rows.get(0));
+    final StatementHandler handler = configuration.newStatementHandler(this, ms, rows.get(0), RowBounds.DEFAULT, null, boundSql);
+    Statement stmt = null;
+    try {
+      stmt = handler.prepare(getConnection(ms.getStatementLog()), transaction.getTimeout());
+      for (int i = 0; i < statements; i++) {
+        multiRowInsert.setParameters((PreparedStatement) stmt, from + i * rowsPerStatement, rowsPerStatement);
+        handler.batch(stmt);
+      }
+      int[] statementCounts = stmt.executeBatch();
+      for (int i = 0; i < statements; i++) {
+        // an insert reports the rows of all its tuples together
+        int count = i < statementCounts.length ? statementCounts[i] : Statement.SUCCESS_NO_INFO;
+        Arrays.fill(updateCounts, from + i * rowsPerStatement, from + (i + 1) * rowsPerStatement,
+            count == rowsPerStatement ? 1 : Statement.SUCCESS_NO_INFO);
+      }
+      processGeneratedKeys(ms, stmt, rows);
+    } finally {
+      closeStatement(stmt);
+    }
+  }
+
+  private static final class StatementKey {
+    private final MappedStatement mappedStatement;
+    private final String sql;
+
+    private StatementKey(MappedStatement mappedStatement, String sql) {
+      this.mappedStatement = mappedStatement;
+      this.sql = sql;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof StatementKey)) {
+        return false;
+      }
+      StatementKey other = (StatementKey) o;
+      return mappedStatement.equals(other.mappedStatement) && sql.equals(other.sql);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * mappedStatement.hashCode() + sql.hashCode();
     }
   }
 
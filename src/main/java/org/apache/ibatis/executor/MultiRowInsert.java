@@ -0,0 +1,249 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.reflection.ExceptionUtil;
+
+/**
+ * The rows of a single row <code>INSERT ... VALUES (...)</code> statement collected by the {@link BatchExecutor},
+ * to be executed as <code>INSERT ... VALUES (...), (...), ...</code> statements.
+ *
+ * The parameters of a row are set when the row is added, on a statement view that records them, because the
+ * parameter object may be changed or reused for the next row before the rows are executed. The recorded parameters
+ * are set on their tuple of the multi row statement by shifting their indexes, so parameter handlers and type
+ * handlers set indexes starting at 1 as usual.
+ */
+final class MultiRowInsert {
+
+  private final MappedStatement mappedStatement;
+  private final String prefix;
+  private final String values;
+  private final int parameterCount;
+  private final List<RecordedParameters> rows = new ArrayList<RecordedParameters>();
+
+  private MultiRowInsert(MappedStatement mappedStatement, String prefix, String values, int parameterCount) {
+    this.mappedStatement = mappedStatement;
+    this.prefix = prefix;
+    this.values = values;
+    this.parameterCount = parameterCount;
+  }
+
+  /**
+   * @return the rows of this statement, or null when its SQL is not a single row insert whose parameters are all
+   *         in the values list
+   */
+  static MultiRowInsert forStatement(MappedStatement mappedStatement, String sql, int parameterCount) {
+    final int valuesEnd = findValuesKeyword(sql);
+    if (valuesEnd < 0) {
+      return null;
+    }
+    int start = valuesEnd;
+    while (start < sql.length() && Character.isWhitespace(sql.charAt(start))) {
+      start++;
+    }
+    if (start == sql.length() || sql.charAt(start) != '(') {
+      return null;
+    }
+    final int end = findClosingParenthesis(sql, start);
+    if (end < 0 || sql.substring(end + 1).trim().length() > 0) {
+      // e.g. a second row or ON DUPLICATE KEY UPDATE
+      return null;
+    }
+    final String values = sql.substring(start, end + 1);
+    if (countPlaceholders(values) != parameterCount || countPlaceholders(sql) != parameterCount) {
+      return null;
+    }
+    return new MultiRowInsert(mappedStatement, sql.substring(0, start), values, parameterCount);
+  }
+
+  MappedStatement getMappedStatement() {
+    return mappedStatement;
+  }
+
+  /**
+   * Sets the parameters of the statement handler as the next row.
+   *
+   * @param connection the connection the rows will be executed on, for type handlers that create values with it
+   */
+  void addRow(StatementHandler handler, Connection connection) throws SQLException {
+    RecordedParameters row = new RecordedParameters(connection);
+    handler.parameterize((PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+        new Class<?>[] { PreparedStatement.class }, row));
+    rows.add(row);
+  }
+
+  String getSql(int rowCount) {
+    StringBuilder sql = new StringBuilder(prefix.length() + rowCount * (values.length() + 2));
+    sql.append(prefix).append(values);
+    for (int i = 1; i < rowCount; i++) {
+      sql.append(", ").append(values);
+    }
+    return sql.toString();
+  }
+
+  /**
+   * Binds rows <code>from</code> to <code>from + rowCount</code> to the tuples of a statement prepared with
+   * {@link #getSql(int)} for <code>rowCount</code> rows.
+   */
+  void setParameters(PreparedStatement statement, int from, int rowCount) throws SQLException {
+    for (int i = 0; i < rowCount; i++) {
+      rows.get(from + i).setParameters(statement, i * parameterCount);
+    }
+  }
+
+  /**
+   * @return the index just after the last <code>VALUES</code> keyword outside of quotes and parentheses, or -1
+   */
+  private static int findValuesKeyword(String sql) {
+    int found = -1;
+    int depth = 0;
+    char quote = 0;
+    for (int i = 0; i < sql.length(); i++) {
+      char c = sql.charAt(i);
+      if (quote != 0) {
+        if (c == quote) {
+          quote = 0;
+        }
+      } else if (c == '\'' || c == '"' || c == '`') {
+        quote = c;
+      } else if (c == '(') {
+        depth++;
+      } else if (c == ')') {
+        depth--;
+      } else if (depth == 0 && sql.regionMatches(true, i, "values", 0, 6) && isWordBoundary(sql, i - 1)
+          && isWordBoundary(sql, i + 6)) {
+        found = i + 6;
+      }
+    }
+    return found;
+  }
+
+  private static int findClosingParenthesis(String sql, int open) {
+    int depth = 0;
+    char quote = 0;
+    for (int i = open; i < sql.length(); i++) {
+      char c = sql.charAt(i);
+      if (quote != 0) {
+        if (c == quote) {
+          quote = 0;
+        }
+      } else if (c == '\'' || c == '"' || c == '`') {
+        quote = c;
+      } else if (c == '(') {
+        depth++;
+      } else if (c == ')' && --depth == 0) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private static int countPlaceholders(String sql) {
+    int count = 0;
+    char quote = 0;
+    for (int i = 0; i < sql.length(); i++) {
+      char c = sql.charAt(i);
+      if (quote != 0) {
+        if (c == quote) {
+          quote = 0;
+        }
+      } else if (c == '\'' || c == '"' || c == '`') {
+        quote = c;
+      } else if (c == '?') {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  private static boolean isWordBoundary(String sql, int index) {
+    if (index < 0 || index >= sql.length()) {
+      return true;
+    }
+    char c = sql.charAt(index);
+    return !Character.isLetterOrDigit(c) && c != '_';
+  }
+
+  /**
+   * The parameters set on a statement, to be set again on another statement.
+   */
+  private static final class RecordedParameters implements InvocationHandler {
+
+    private final Connection connection;
+    private final List<Method> setters = new ArrayList<Method>();
+    private final List<Object[]> arguments = new ArrayList<Object[]>();
+
+    private RecordedParameters(Connection connection) {
+      this.connection = connection;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] params) throws Throwable {
+      final String methodName = method.getName();
+      // every PreparedStatement setter takes the parameter index first, the Statement ones do not
+      if (method.getDeclaringClass() == PreparedStatement.class && methodName.startsWith("set")
+          && params != null && params.length > 1 && params[0] instanceof Integer) {
+        setters.add(method);
+        arguments.add(params.clone());
+        return null;
+      } else if ("clearParameters".equals(methodName)) {
+        setters.clear();
+        arguments.clear();
+        return null;
+      } else if ("getConnection".equals(methodName)) {
+        return connection;
+      } else if (Object.class.equals(method.getDeclaringClass())) {
+        if ("equals".equals(methodName)) {
+          return proxy == params[0];
+        } else if ("hashCode".equals(methodName)) {
+          return System.identityHashCode(proxy);
+        }
+        return "rows of a multi row insert";
+      }
+      throw new SQLException("Method " + methodName + " is not supported while setting the parameters of a row of a multi row insert.");
+    }
+
+    private void setParameters(PreparedStatement statement, int offset) throws SQLException {
+      for (int i = 0; i < setters.size(); i++) {
+        Object[] params = arguments.get(i).clone();
+        params[0] = (Integer) params[0] + offset;
+        try {
+          setters.get(i).invoke(statement, params);
+        } catch (Exception e) {
+          Throwable cause = ExceptionUtil.unwrapThrowable(e);
+          if (cause instanceof SQLException) {
+            throw (SQLException) cause;
+          } else if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+          }
+          throw new SQLException("Could not set a parameter of a multi row insert. Cause: " + cause, cause);
+        }
+      }
+    }
+  }
+
+}
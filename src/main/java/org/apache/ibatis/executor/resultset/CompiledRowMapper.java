@@ -0,0 +1,98 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor.resultset;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import org.apache.ibatis.reflection.ExceptionUtil;
+import org.apache.ibatis.reflection.ReflectionException;
+import org.apache.ibatis.reflection.factory.ObjectFactory;
+import org.apache.ibatis.reflection.invoker.Invoker;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.type.TypeHandler;
+
+/**
+ * Row mapper specialized for one simple result map and one set of result set columns.
+ *
+ * Column indexes, type handlers and setter invokers are resolved once, when the first row of a
+ * result set is mapped, so mapping a row is a plain loop over arrays without any
+ * column name matching, property name parsing or {@link org.apache.ibatis.reflection.MetaObject} allocation.
+ * Instances are immutable and cached in the {@link CompiledRowMapperCache} of the configuration.
+ *
+ * @see Configuration#isCompiledRowMappersEnabled()
+ */
+public class CompiledRowMapper {
+
+  private final Class<?> type;
+  private final ObjectFactory objectFactory;
+  private final String[] columns;
+  private final int[] columnIndexes;
+  private final TypeHandler<?>[] typeHandlers;
+  private final String[] properties;
+  private final Invoker[] setters;
+  private final boolean[] primitives;
+  private final Configuration configuration;
+
+  CompiledRowMapper(Configuration configuration, Class<?> type, String[] columns, int[] columnIndexes, TypeHandler<?>[] typeHandlers,
+      String[] properties, Invoker[] setters, boolean[] primitives) {
+    this.configuration = configuration;
+    this.type = type;
+    this.objectFactory = configuration.getObjectFactory();
+    this.columns = columns;
+    this.columnIndexes = columnIndexes;
+    this.typeHandlers = typeHandlers;
+    this.properties = properties;
+    this.setters = setters;
+    this.primitives = primitives;
+  }
+
+  public Object mapRow(ResultSet rs) throws SQLException {
+    final Object rowValue = objectFactory.create(type);
+    final boolean callSettersOnNulls = configuration.isCallSettersOnNulls();
+    boolean foundValues = false;
+    for (int i = 0; i < columns.length; i++) {
+      final Object value = columnIndexes[i] > 0
+          ? typeHandlers[i].getResult(rs, columnIndexes[i]) : typeHandlers[i].getResult(rs, columns[i]);
+      if (value != null) {
+        foundValues = true;
+      }
+      if (value != null || (callSettersOnNulls && !primitives[i])) {
+        // gcode issue #377, call setter on nulls (value is not 'found')
+        setValue(rowValue, i, value);
+      }
+    }
+    return foundValues || configuration.isReturnInstanceForEmptyRow() ? rowValue : null;
+  }
+
+  public int getColumnCount() {
+    return columns.length;
+  }
+
+  private void setValue(Object rowValue, int index, Object value) {
+    try {
+      try {
+        setters[index].invoke(rowValue, new Object[] { value });
+      } catch (Throwable t) {
+        throw ExceptionUtil.unwrapThrowable(t);
+      }
+    } catch (Throwable t) {
+      throw new ReflectionException("Could not set property '" + properties[index] + "' of '" + rowValue.getClass()
+          + "' with value '" + value + "' Cause: " + t.toString(), t);
+    }
+  }
+
+}
@@ -0,0 +1,106 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor.resultset;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.ibatis.cache.BoundedCache;
+import org.apache.ibatis.mapping.ResultMap;
+
+/**
+ * The row mappers compiled for the result maps of a configuration, one per set of result set columns.
+ *
+ * Column sets that cannot be mapped by a compiled row mapper are remembered as well, so that they are not compiled
+ * again on every query. Once a result map has as many column sets as the cache holds, its other column sets are
+ * mapped without compiling a row mapper.
+ *
+ * @see org.apache.ibatis.session.Configuration#isCompiledRowMappersEnabled()
+ * @since 3.4.7
+ */
+public class CompiledRowMapperCache {
+
+  private static final int MAX_COLUMN_SETS = 64;
+  private static final Object NOT_COMPILABLE = new Object();
+
+  private final ConcurrentMap<ResultMap, BoundedCache<String, Object>> rowMappers = new ConcurrentHashMap<ResultMap, BoundedCache<String, Object>>();
+
+  /**
+   * @param columnSetKey identifies the columns (and their types) of the result set being mapped
+   * @return whether a row mapper was compiled for those columns, or they were found not to be compilable
+   */
+  public boolean contains(ResultMap resultMap, String columnSetKey) {
+    BoundedCache<String, Object> columnSets = rowMappers.get(resultMap);
+    return columnSets != null && columnSets.containsKey(columnSetKey);
+  }
+
+  /**
+   * @return whether no more column sets of the result map can be cached, the columns of a result set that is not
+   *         {@link #contains(ResultMap, String) contained} should then be mapped without compiling a row mapper
+   */
+  public boolean isFull(ResultMap resultMap) {
+    BoundedCache<String, Object> columnSets = rowMappers.get(resultMap);
+    return columnSets != null && !columnSets.hasRoom();
+  }
+
+  /**
+   * @return the row mapper compiled for those columns, or null if none was compiled
+   */
+  public CompiledRowMapper get(ResultMap resultMap, String columnSetKey) {
+    BoundedCache<String, Object> columnSets = rowMappers.get(resultMap);
+    Object rowMapper = columnSets == null ? null : columnSets.get(columnSetKey);
+    return rowMapper == NOT_COMPILABLE ? null : (CompiledRowMapper) rowMapper;
+  }
+
+  /**
+   * @param rowMapper the row mapper compiled for those columns, or null if they cannot be mapped by one
+   * @return the cached row mapper, which another thread may have compiled first
+   */
+  public CompiledRowMapper put(ResultMap resultMap, String columnSetKey, CompiledRowMapper rowMapper) {
+    BoundedCache<String, Object> columnSets = rowMappers.get(resultMap);
+    if (columnSets == null) {
+      columnSets = new BoundedCache<String, Object>(MAX_COLUMN_SETS);
+      BoundedCache<String, Object> existing = rowMappers.putIfAbsent(resultMap, columnSets);
+      if (existing != null) {
+        columnSets = existing;
+      }
+    }
+    Object cached = columnSets.putIfAbsent(columnSetKey, rowMapper == null ? NOT_COMPILABLE : rowMapper);
+    return cached == NOT_COMPILABLE ? null : (CompiledRowMapper) cached;
+  }
+
+  /**
+   * @return the row mappers compiled for this result map
+   */
+  public Collection<CompiledRowMapper> getRowMappers(ResultMap resultMap) {
+    BoundedCache<String, Object> columnSets = rowMappers.get(resultMap);
+    if (columnSets == null) {
+      return Collections.emptyList();
+    }
+    List<CompiledRowMapper> compiled = new ArrayList<CompiledRowMapper>();
+    for (Object rowMapper : columnSets.values()) {
+      if (rowMapper != NOT_COMPILABLE) {
+        compiled.add((CompiledRowMapper) rowMapper);
+      }
+    }
+    return compiled;
+  }
+
+}
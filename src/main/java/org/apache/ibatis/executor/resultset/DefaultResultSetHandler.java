@@ -23,6 +23,7 @@ import org.apache.ibatis.cursor.defaults.DefaultCursor;
 import org.apache.ibatis.executor.ErrorContext;
 import org.apache.ibatis.executor.Executor;
 import org.apache.ibatis.executor.ExecutorException;
+import org.apache.ibatis.executor.ResultExtractor;
 import org.apache.ibatis.executor.loader.ResultLoader;
 import org.apache.ibatis.executor.loader.ResultLoaderMap;
 import org.apache.ibatis.executor.parameter.ParameterHandler;
@@ -38,8 +39,11 @@ import org.apache.ibatis.mapping.ResultMap;
 import org.apache.ibatis.mapping.ResultMapping;
 import org.apache.ibatis.reflection.MetaClass;
 import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.reflection.Reflector;
 import org.apache.ibatis.reflection.ReflectorFactory;
 import org.apache.ibatis.reflection.factory.ObjectFactory;
+import org.apache.ibatis.reflection.invoker.Invoker;
+import org.apache.ibatis.reflection.wrapper.BeanWrapper;
 import org.apache.ibatis.session.AutoMappingBehavior;
 import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.session.ResultContext;
@@ -49,13 +53,19 @@ import org.apache.ibatis.type.TypeHandler;
 import org.apache.ibatis.type.TypeHandlerRegistry;
 
 import java.lang.reflect.Constructor;
+import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.sql.CallableStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -86,11 +96,16 @@ public class DefaultResultSetHandler implements ResultSetHandler {
   private final Map<CacheKey, Object> nestedResultObjects = new HashMap<CacheKey, Object>();
   private final Map<String, Object> ancestorObjects = new HashMap<String, Object>();
   private Object previousRowValue;
+  private CacheKey previousRowKey;
 
   // multiple resultsets
   private final Map<String, ResultMapping> nextResultMaps = new HashMap<String, ResultMapping>();
   private final Map<CacheKey, List<PendingRelation>> pendingRelations = new HashMap<CacheKey, List<PendingRelation>>();
 
+  // batched nested selects
+  private final Map<ResultMapping, PendingBatchLoad> pendingBatchLoads = new IdentityHashMap<ResultMapping, PendingBatchLoad>();
+  private boolean batchLoadingEnabled;
+
   // Cached Automappings
   private final Map<String, List<UnMappedColumnAutoMapping>> autoMappingsCache = new HashMap<String, List<UnMappedColumnAutoMapping>>();
 
@@ -104,6 +119,18 @@ public class DefaultResultSetHandler implements ResultSetHandler {
     public ResultMapping propertyMapping;
   }
 
+  private static class PendingBatchLoad {
+    private final MappedStatement nestedQuery;
+    private final ResultMapping propertyMapping;
+    private final List<Object> keys = new ArrayList<Object>();
+    private final Map<Object, List<MetaObject>> parentsByKey = new HashMap<Object, List<MetaObject>>();
+
+    private PendingBatchLoad(MappedStatement nestedQuery, ResultMapping propertyMapping) {
+      this.nestedQuery = nestedQuery;
+      this.propertyMapping = propertyMapping;
+    }
+  }
+
   private static class UnMappedColumnAutoMapping {
     private final String column;
     private final String property;
@@ -142,6 +169,8 @@ public class DefaultResultSetHandler implements ResultSetHandler {
     final Object parameterObject = parameterHandler.getParameterObject();
     final MetaObject metaParam = configuration.newMetaObject(parameterObject);
     final List<ParameterMapping> parameterMappings = boundSql.getParameterMappings();
+    // rows of ref cursors are batched like the rows of result sets
+    batchLoadingEnabled = resultHandler == null;
     for (int i = 0; i < parameterMappings.size(); i++) {
       final ParameterMapping parameterMapping = parameterMappings.get(i);
       if (parameterMapping.getMode() == ParameterMode.OUT || parameterMapping.getMode() == ParameterMode.INOUT) {
@@ -153,6 +182,7 @@ public class DefaultResultSetHandler implements ResultSetHandler {
         }
       }
     }
+    loadPendingBatches();
   }
 
   private void handleRefCursorOutputParameter(ResultSet rs, ParameterMapping parameterMapping, MetaObject metaParam) throws SQLException {
@@ -185,6 +215,8 @@ public class DefaultResultSetHandler implements ResultSetHandler {
     ErrorContext.instance().activity("handling results").object(mappedStatement.getId());
 
     final List<Object> multipleResults = new ArrayList<Object>();
+    // children can only be filled in later when no one sees the parents before the result sets are done
+    batchLoadingEnabled = resultHandler == null;
 
     int resultSetCount = 0;
     ResultSetWrapper rsw = getFirstResultSet(stmt);
@@ -217,6 +249,7 @@ public class DefaultResultSetHandler implements ResultSetHandler {
       }
     }
 
+    loadPendingBatches();
     return collapseSingleResultList(multipleResults);
   }
 
@@ -353,9 +386,20 @@ public class DefaultResultSetHandler implements ResultSetHandler {
       throws SQLException {
     DefaultResultContext<Object> resultContext = new DefaultResultContext<Object>();
     skipRows(rsw.getResultSet(), rowBounds);
+    boolean compilable = configuration.isCompiledRowMappersEnabled() && isCompilable(rsw, resultMap);
+    CompiledRowMapper rowMapper = null;
     while (shouldProcessMoreRows(resultContext, rowBounds) && rsw.getResultSet().next()) {
-      ResultMap discriminatedResultMap = resolveDiscriminatedResultMap(rsw.getResultSet(), resultMap, null);
-      Object rowValue = getRowValue(rsw, discriminatedResultMap);
+      if (compilable && rowMapper == null) {
+        rowMapper = getCompiledRowMapper(rsw, resultMap);
+        compilable = rowMapper != null;
+      }
+      Object rowValue;
+      if (rowMapper != null) {
+        rowValue = rowMapper.mapRow(rsw.getResultSet());
+      } else {
+        ResultMap discriminatedResultMap = resolveDiscriminatedResultMap(rsw.getResultSet(), resultMap, null);
+        rowValue = getRowValue(rsw, discriminatedResultMap);
+      }
       storeObject(resultHandler, resultContext, rowValue, parentMapping, rsw.getResultSet());
     }
   }
@@ -417,6 +461,96 @@ public class DefaultResultSetHandler implements ResultSetHandler {
     return rowValue;
   }
 
+  //
+  // COMPILED ROW MAPPERS
+  //
+
+  private boolean isCompilable(ResultSetWrapper rsw, ResultMap resultMap) {
+    final Class<?> resultType = resultMap.getType();
+    if (resultMap.getDiscriminator() != null
+        || resultMap.hasNestedResultMaps()
+        || resultMap.hasNestedQueries()
+        || !resultMap.getConstructorResultMappings().isEmpty()
+        || resultType.isInterface()
+        || Map.class.isAssignableFrom(resultType)
+        || Collection.class.isAssignableFrom(resultType)
+        || !reflectorFactory.findForClass(resultType).hasDefaultConstructor()
+        || hasTypeHandlerForResultObject(rsw, resultType)) {
+      return false;
+    }
+    for (ResultMapping propertyMapping : resultMap.getPropertyResultMappings()) {
+      if (propertyMapping.isCompositeResult() || propertyMapping.getResultSet() != null) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private CompiledRowMapper getCompiledRowMapper(ResultSetWrapper rsw, ResultMap resultMap) throws SQLException {
+    final boolean autoMapping = shouldApplyAutomaticMappings(resultMap, false);
+    final StringBuilder columnSetKey = new StringBuilder();
+    columnSetKey.append(autoMapping).append(':').append(configuration.isMapUnderscoreToCamelCase());
+    for (int i = 0; i < rsw.getColumnNames().size(); i++) {
+      final String columnName = rsw.getColumnNames().get(i);
+      columnSetKey.append(':').append(columnName).append('/').append(rsw.getJdbcType(columnName))
+          .append('/').append(rsw.getClassNames().get(i));
+    }
+    final String key = columnSetKey.toString();
+    final CompiledRowMapperCache cache = configuration.getCompiledRowMapperCache();
+    CompiledRowMapper rowMapper = cache.get(resultMap, key);
+    if (rowMapper == null && !cache.contains(resultMap, key) && !cache.isFull(resultMap)) {
+      rowMapper = cache.put(resultMap, key, compileRowMapper(rsw, resultMap, autoMapping));
+    }
+    return rowMapper;
+  }
+
+  private CompiledRowMapper compileRowMapper(ResultSetWrapper rsw, ResultMap resultMap, boolean autoMapping) throws SQLException {
+    final Class<?> resultType = resultMap.getType();
+    final MetaObject metaObject = configuration.newMetaObject(objectFactory.create(resultType));
+    if (metaObject.getObjectWrapper().getClass() != BeanWrapper.class) {
+      return null;
+    }
+    final Reflector reflector = reflectorFactory.findForClass(resultType);
+    final List<String> columns = new ArrayList<String>();
+    final List<TypeHandler<?>> typeHandlers = new ArrayList<TypeHandler<?>>();
+    final List<String> properties = new ArrayList<String>();
+    if (autoMapping) {
+      for (UnMappedColumnAutoMapping mapping : createAutomaticMappings(rsw, resultMap, metaObject, null)) {
+        columns.add(mapping.column);
+        typeHandlers.add(mapping.typeHandler);
+        properties.add(mapping.property);
+      }
+    }
+    final List<String> mappedColumnNames = rsw.getMappedColumnNames(resultMap, null);
+    for (ResultMapping propertyMapping : resultMap.getPropertyResultMappings()) {
+      final String column = propertyMapping.getColumn();
+      if (propertyMapping.getProperty() != null && column != null
+          && mappedColumnNames.contains(column.toUpperCase(Locale.ENGLISH))) {
+        columns.add(column);
+        typeHandlers.add(propertyMapping.getTypeHandler());
+        properties.add(propertyMapping.getProperty());
+      }
+    }
+    final int size = columns.size();
+    final int[] columnIndexes = new int[size];
+    final Invoker[] setters = new Invoker[size];
+    final boolean[] primitives = new boolean[size];
+    for (int i = 0; i < size; i++) {
+      if (ResultSetWrapper.supportsColumnIndex(typeHandlers.get(i))) {
+        columnIndexes[i] = rsw.getColumnIndex(columns.get(i));
+      }
+      final String property = properties.get(i);
+      if (!reflector.hasSetter(property)) {
+        // nested or unknown property, leave it to the MetaObject based mapping
+        return null;
+      }
+      setters[i] = reflector.getSetInvoker(property);
+      primitives[i] = reflector.getSetterType(property).isPrimitive();
+    }
+    return new CompiledRowMapper(configuration, resultType, columns.toArray(new String[size]), columnIndexes,
+        typeHandlers.toArray(new TypeHandler<?>[size]), properties.toArray(new String[size]), setters, primitives);
+  }
+
   private boolean shouldApplyAutomaticMappings(ResultMap resultMap, boolean isNested) {
     if (resultMap.getAutoMapping() != null) {
       return resultMap.getAutoMapping();
@@ -447,7 +581,7 @@ public class DefaultResultSetHandler implements ResultSetHandler {
       if (propertyMapping.isCompositeResult()
           || (column != null && mappedColumnNames.contains(column.toUpperCase(Locale.ENGLISH)))
           || propertyMapping.getResultSet() != null) {
-        Object value = getPropertyMappingValue(rsw.getResultSet(), metaObject, propertyMapping, lazyLoader, columnPrefix);
+        Object value = getPropertyMappingValue(rsw, metaObject, propertyMapping, lazyLoader, columnPrefix);
         // issue #541 make property optional
         final String property = propertyMapping.getProperty();
         if (property == null) {
@@ -468,8 +602,9 @@ public class DefaultResultSetHandler implements ResultSetHandler {
     return foundValues;
   }
 
-  private Object getPropertyMappingValue(ResultSet rs, MetaObject metaResultObject, ResultMapping propertyMapping, ResultLoaderMap lazyLoader, String columnPrefix)
+  private Object getPropertyMappingValue(ResultSetWrapper rsw, MetaObject metaResultObject, ResultMapping propertyMapping, ResultLoaderMap lazyLoader, String columnPrefix)
       throws SQLException {
+    final ResultSet rs = rsw.getResultSet();
     if (propertyMapping.getNestedQueryId() != null) {
       return getNestedQueryMappingValue(rs, metaResultObject, propertyMapping, lazyLoader, columnPrefix);
     } else if (propertyMapping.getResultSet() != null) {
@@ -478,7 +613,7 @@ public class DefaultResultSetHandler implements ResultSetHandler {
     } else {
       final TypeHandler<?> typeHandler = propertyMapping.getTypeHandler();
       final String column = prependPrefix(propertyMapping.getColumn(), columnPrefix);
-      return typeHandler.getResult(rs, column);
+      return rsw.getResult(typeHandler, column);
     }
   }
 
@@ -527,7 +662,7 @@ public class DefaultResultSetHandler implements ResultSetHandler {
     boolean foundValues = false;
     if (!autoMapping.isEmpty()) {
       for (UnMappedColumnAutoMapping mapping : autoMapping) {
-        final Object value = mapping.typeHandler.getResult(rsw.getResultSet(), mapping.column);
+        final Object value = rsw.getResult(mapping.typeHandler, mapping.column);
         if (value != null) {
           foundValues = true;
         }
@@ -648,7 +783,7 @@ public class DefaultResultSetHandler implements ResultSetHandler {
           value = getRowValue(rsw, resultMap);
         } else {
           final TypeHandler<?> typeHandler = constructorMapping.getTypeHandler();
-          value = typeHandler.getResult(rsw.getResultSet(), prependPrefix(column, columnPrefix));
+          value = rsw.getResult(typeHandler, prependPrefix(column, columnPrefix));
         }
       } catch (ResultMapException e) {
         throw new ExecutorException("Could not process result for mapping: " + constructorMapping, e);
@@ -684,7 +819,7 @@ public class DefaultResultSetHandler implements ResultSetHandler {
       Class<?> parameterType = constructor.getParameterTypes()[i];
       String columnName = rsw.getColumnNames().get(i);
       TypeHandler<?> typeHandler = rsw.getTypeHandler(parameterType, columnName);
-      Object value = typeHandler.getResult(rsw.getResultSet(), prependPrefix(columnName, columnPrefix));
+      Object value = rsw.getResult(typeHandler, prependPrefix(columnName, columnPrefix));
       constructorArgTypes.add(parameterType);
       constructorArgs.add(value);
       foundValues = value != null || foundValues;
@@ -735,7 +870,7 @@ public class DefaultResultSetHandler implements ResultSetHandler {
       columnName = rsw.getColumnNames().get(0);
     }
     final TypeHandler<?> typeHandler = rsw.getTypeHandler(resultType, columnName);
-    return typeHandler.getResult(rsw.getResultSet(), columnName);
+    return rsw.getResult(typeHandler, columnName);
   }
 
   //
@@ -764,8 +899,16 @@ public class DefaultResultSetHandler implements ResultSetHandler {
     final String property = propertyMapping.getProperty();
     final MappedStatement nestedQuery = configuration.getMappedStatement(nestedQueryId);
     final Class<?> nestedQueryParameterType = nestedQuery.getParameterMap().getType();
-    final Object nestedQueryParameterObject = prepareParameterForNestedQuery(rs, propertyMapping, nestedQueryParameterType, columnPrefix);
+    Object nestedQueryParameterObject = prepareParameterForNestedQuery(rs, propertyMapping, nestedQueryParameterType, columnPrefix);
     Object value = null;
+    if (nestedQueryParameterObject != null && propertyMapping.getBatchSize() > 0) {
+      if (batchLoadingEnabled && !propertyMapping.isLazy()) {
+        addPendingBatchLoad(nestedQuery, propertyMapping, metaResultObject, nestedQueryParameterObject);
+        return DEFERED;
+      }
+      // the nested select expects a list of keys, so it gets a batch of one
+      nestedQueryParameterObject = wrapBatchKeys(Collections.singletonList(nestedQueryParameterObject));
+    }
     if (nestedQueryParameterObject != null) {
       final BoundSql nestedBoundSql = nestedQuery.getBoundSql(nestedQueryParameterObject);
       final CacheKey key = executor.createCacheKey(nestedQuery, nestedQueryParameterObject, RowBounds.DEFAULT, nestedBoundSql);
@@ -786,6 +929,132 @@ public class DefaultResultSetHandler implements ResultSetHandler {
     return value;
   }
 
+  //
+  // BATCHED NESTED QUERY
+  //
+
+  private void addPendingBatchLoad(MappedStatement nestedQuery, ResultMapping propertyMapping, MetaObject metaResultObject, Object key) throws SQLException {
+    PendingBatchLoad batch = pendingBatchLoads.get(propertyMapping);
+    if (batch == null) {
+      batch = new PendingBatchLoad(nestedQuery, propertyMapping);
+      pendingBatchLoads.put(propertyMapping, batch);
+    }
+    final Object keyValue = normalizeBatchKey(key);
+    List<MetaObject> parents = batch.parentsByKey.get(keyValue);
+    if (parents == null) {
+      parents = new ArrayList<MetaObject>();
+      batch.parentsByKey.put(keyValue, parents);
+      batch.keys.add(key);
+    }
+    parents.add(metaResultObject);
+    if (batch.keys.size() >= propertyMapping.getBatchSize()) {
+      pendingBatchLoads.remove(propertyMapping);
+      loadBatch(batch);
+    }
+  }
+
+  private void loadPendingBatches() throws SQLException {
+    while (!pendingBatchLoads.isEmpty()) {
+      final PendingBatchLoad batch = pendingBatchLoads.values().iterator().next();
+      pendingBatchLoads.remove(batch.propertyMapping);
+      loadBatch(batch);
+    }
+  }
+
+  private void loadBatch(PendingBatchLoad batch) throws SQLException {
+    final ResultMapping propertyMapping = batch.propertyMapping;
+    final List<Object> children = executor.query(batch.nestedQuery, wrapBatchKeys(batch.keys), RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER);
+    final String foreignProperty = resolveForeignProperty(batch.nestedQuery, propertyMapping);
+    final Map<Object, List<Object>> childrenByKey = new HashMap<Object, List<Object>>();
+    for (Object child : children) {
+      if (child == null) {
+        continue;
+      }
+      final Object keyValue = normalizeBatchKey(configuration.newMetaObject(child).getValue(foreignProperty));
+      List<Object> siblings = childrenByKey.get(keyValue);
+      if (siblings == null) {
+        siblings = new ArrayList<Object>();
+        childrenByKey.put(keyValue, siblings);
+      }
+      siblings.add(child);
+    }
+    final ResultExtractor resultExtractor = new ResultExtractor(configuration, objectFactory);
+    for (Map.Entry<Object, List<MetaObject>> entry : batch.parentsByKey.entrySet()) {
+      List<Object> siblings = childrenByKey.get(entry.getKey());
+      if (siblings == null) {
+        siblings = new ArrayList<Object>();
+      }
+      final Object value = resultExtractor.extractObjectFromList(siblings, propertyMapping.getJavaType());
+      if (value != null || configuration.isCallSettersOnNulls()) {
+        for (MetaObject parent : entry.getValue()) {
+          parent.setValue(propertyMapping.getProperty(), value);
+        }
+      }
+    }
+  }
+
+  /*
+   * The parent key and the foreign property of the child are read through different type handlers, so the same key
+   * may arrive as different types: numbers are compared by value, dates by time and strings without CHAR padding.
+   */
+  private static Object normalizeBatchKey(Object key) {
+    if (key instanceof Number) {
+      final BigDecimal value;
+      if (key instanceof BigDecimal) {
+        value = (BigDecimal) key;
+      } else if (key instanceof Double || key instanceof Float) {
+        final double doubleValue = ((Number) key).doubleValue();
+        if (Double.isNaN(doubleValue) || Double.isInfinite(doubleValue)) {
+          return key;
+        }
+        value = BigDecimal.valueOf(doubleValue);
+      } else if (key instanceof Integer || key instanceof Long || key instanceof Short || key instanceof Byte
+          || key instanceof BigInteger) {
+        value = new BigDecimal(key.toString());
+      } else {
+        return key;
+      }
+      // stripTrailingZeros does not strip a zero before Java 8
+      return value.signum() == 0 ? BigDecimal.ZERO : value.stripTrailingZeros();
+    } else if (key instanceof Date) {
+      return ((Date) key).getTime();
+    } else if (key instanceof String) {
+      final String value = (String) key;
+      int end = value.length();
+      while (end > 0 && value.charAt(end - 1) == ' ') {
+        end--;
+      }
+      return value.substring(0, end);
+    }
+    return key;
+  }
+
+  private Object wrapBatchKeys(List<Object> keys) {
+    final ParamMap<Object> parameterObject = new ParamMap<Object>();
+    parameterObject.put("collection", keys);
+    parameterObject.put("list", keys);
+    return parameterObject;
+  }
+
+  private String resolveForeignProperty(MappedStatement nestedQuery, ResultMapping propertyMapping) {
+    final String foreignColumn = propertyMapping.getForeignColumn();
+    final ResultMap resultMap = nestedQuery.getResultMaps().get(0);
+    for (ResultMapping resultMapping : resultMap.getResultMappings()) {
+      if (foreignColumn.equalsIgnoreCase(resultMapping.getColumn()) && resultMapping.getProperty() != null) {
+        return resultMapping.getProperty();
+      }
+    }
+    if (Map.class.isAssignableFrom(resultMap.getType())) {
+      return foreignColumn;
+    }
+    final String property = MetaClass.forClass(resultMap.getType(), reflectorFactory).findProperty(foreignColumn, configuration.isMapUnderscoreToCamelCase());
+    if (property == null) {
+      throw new ExecutorException("Cannot batch load property '" + propertyMapping.getProperty() + "' because the foreignColumn '"
+          + foreignColumn + "' is not mapped to a property by '" + nestedQuery.getId() + "'.");
+    }
+    return property;
+  }
+
   private Object prepareParameterForNestedQuery(ResultSet rs, ResultMapping resultMapping, Class<?> parameterType, String columnPrefix) throws SQLException {
     if (resultMapping.isCompositeResult()) {
       return prepareCompositeKeyParameter(rs, resultMapping, parameterType, columnPrefix);
@@ -879,15 +1148,23 @@ public class DefaultResultSetHandler implements ResultSetHandler {
     while (shouldProcessMoreRows(resultContext, rowBounds) && rsw.getResultSet().next()) {
       final ResultMap discriminatedResultMap = resolveDiscriminatedResultMap(rsw.getResultSet(), resultMap, null);
       final CacheKey rowKey = createRowKey(discriminatedResultMap, rsw, null);
-      Object partialObject = nestedResultObjects.get(rowKey);
       // issue #577 && #542
       if (mappedStatement.isResultOrdered()) {
-        if (partialObject == null && rowValue != null) {
+        // rows of a parent are contiguous: the parent is complete as soon as the key changes,
+        // so it is emitted right away and the row keys of its graph are released
+        Object partialObject = null;
+        if (rowKey != CacheKey.NULL_CACHE_KEY && rowKey.equals(previousRowKey)) {
+          partialObject = rowValue;
+        } else {
           nestedResultObjects.clear();
-          storeObject(resultHandler, resultContext, rowValue, parentMapping, rsw.getResultSet());
+          if (rowValue != null) {
+            storeObject(resultHandler, resultContext, rowValue, parentMapping, rsw.getResultSet());
+          }
         }
+        previousRowKey = rowKey;
         rowValue = getRowValue(rsw, discriminatedResultMap, rowKey, null, partialObject);
       } else {
+        Object partialObject = nestedResultObjects.get(rowKey);
         rowValue = getRowValue(rsw, discriminatedResultMap, rowKey, null, partialObject);
         if (partialObject == null) {
           storeObject(resultHandler, resultContext, rowValue, parentMapping, rsw.getResultSet());
@@ -897,6 +1174,7 @@ public class DefaultResultSetHandler implements ResultSetHandler {
     if (rowValue != null && mappedStatement.isResultOrdered() && shouldProcessMoreRows(resultContext, rowBounds)) {
       storeObject(resultHandler, resultContext, rowValue, parentMapping, rsw.getResultSet());
       previousRowValue = null;
+      previousRowKey = null;
     } else if (rowValue != null) {
       previousRowValue = rowValue;
     }
@@ -1080,7 +1358,7 @@ public class DefaultResultSetHandler implements ResultSetHandler {
         List<String> mappedColumnNames = rsw.getMappedColumnNames(resultMap, columnPrefix);
         // Issue #114
         if (column != null && mappedColumnNames.contains(column.toUpperCase(Locale.ENGLISH))) {
-          final Object value = th.getResult(rsw.getResultSet(), column);
+          final Object value = rsw.getResult(th, column);
           if (value != null || configuration.isReturnInstanceForEmptyRow()) {
             cacheKey.update(column);
             cacheKey.update(value);
@@ -1104,7 +1382,7 @@ public class DefaultResultSetHandler implements ResultSetHandler {
         }
       }
       if (metaType.findProperty(property, configuration.isMapUnderscoreToCamelCase()) != null) {
-        String value = rsw.getResultSet().getString(column);
+        String value = rsw.getResultSet().getString(rsw.getColumnIndex(column));
         if (value != null) {
           cacheKey.update(column);
           cacheKey.update(value);
@@ -1116,7 +1394,7 @@ public class DefaultResultSetHandler implements ResultSetHandler {
   private void createRowKeyForMap(ResultSetWrapper rsw, CacheKey cacheKey) throws SQLException {
     List<String> columnNames = rsw.getColumnNames();
     for (String columnName : columnNames) {
-      final String value = rsw.getResultSet().getString(columnName);
+      final String value = rsw.getResultSet().getString(rsw.getColumnIndex(columnName));
       if (value != null) {
         cacheKey.update(columnName);
         cacheKey.update(value);
@@ -42,11 +42,14 @@ import org.apache.ibatis.type.UnknownTypeHandler;
  */
 public class ResultSetWrapper {
 
+  private static final String BUILT_IN_TYPE_HANDLER_PREFIX = TypeHandler.class.getName().substring(0, TypeHandler.class.getName().lastIndexOf('.') + 1);
+
   private final ResultSet resultSet;
   private final TypeHandlerRegistry typeHandlerRegistry;
   private final List<String> columnNames = new ArrayList<String>();
   private final List<String> classNames = new ArrayList<String>();
   private final List<JdbcType> jdbcTypes = new ArrayList<JdbcType>();
+  private final Map<String, Integer> columnIndexes = new HashMap<String, Integer>();
   private final Map<String, Map<Class<?>, TypeHandler<?>>> typeHandlerMap = new HashMap<String, Map<Class<?>, TypeHandler<?>>>();
   private final Map<String, List<String>> mappedColumnNamesMap = new HashMap<String, List<String>>();
   private final Map<String, List<String>> unMappedColumnNamesMap = new HashMap<String, List<String>>();
@@ -62,6 +65,20 @@ public class ResultSetWrapper {
       jdbcTypes.add(JdbcType.forCode(metaData.getColumnType(i)));
       classNames.add(metaData.getColumnClassName(i));
     }
+    // exact names first so that the common case needs no case conversion, then the upper case
+    // forms; the first occurrence wins, as with ResultSet#findColumn
+    for (int i = 0; i < columnCount; i++) {
+      putColumnIndex(columnNames.get(i), i + 1);
+    }
+    for (int i = 0; i < columnCount; i++) {
+      putColumnIndex(columnNames.get(i).toUpperCase(Locale.ENGLISH), i + 1);
+    }
+  }
+
+  private void putColumnIndex(String columnName, int columnIndex) {
+    if (!columnIndexes.containsKey(columnName)) {
+      columnIndexes.put(columnName, columnIndex);
+    }
   }
 
   public ResultSet getResultSet() {
@@ -76,6 +93,39 @@ public class ResultSetWrapper {
     return Collections.unmodifiableList(classNames);
   }
 
+  /**
+   * Resolves the column index once so that type handlers do not make the driver look up the label on every row.
+   *
+   * @param columnName the column name or label, matched case insensitively
+   * @return the 1-based index of the column, or 0 if the result set has no such column
+   */
+  public int getColumnIndex(String columnName) {
+    if (columnName == null) {
+      return 0;
+    }
+    Integer columnIndex = columnIndexes.get(columnName);
+    if (columnIndex == null) {
+      columnIndex = columnIndexes.get(columnName.toUpperCase(Locale.ENGLISH));
+    }
+    return columnIndex == null ? 0 : columnIndex;
+  }
+
+  /**
+   * Reads a column through the index based {@link TypeHandler#getResult(ResultSet, int)} when it is safe to do so.
+   * Custom type handlers often implement only the label based method, so they keep being called by label.
+   */
+  public Object getResult(TypeHandler<?> typeHandler, String columnName) throws SQLException {
+    final int columnIndex = supportsColumnIndex(typeHandler) ? getColumnIndex(columnName) : 0;
+    if (columnIndex > 0) {
+      return typeHandler.getResult(resultSet, columnIndex);
+    }
+    return typeHandler.getResult(resultSet, columnName);
+  }
+
+  static boolean supportsColumnIndex(TypeHandler<?> typeHandler) {
+    return typeHandler.getClass().getName().startsWith(BUILT_IN_TYPE_HANDLER_PREFIX);
+  }
+
   public JdbcType getJdbcType(String columnName) {
     for (int i = 0 ; i < columnNames.size(); i++) {
       if (columnNames.get(i).equalsIgnoreCase(columnName)) {
@@ -25,11 +25,13 @@ import org.apache.ibatis.cache.Cache;
 import org.apache.ibatis.cache.CacheException;
 import org.apache.ibatis.builder.InitializingObject;
 import org.apache.ibatis.cache.decorators.BlockingCache;
+import org.apache.ibatis.cache.decorators.ConcurrentLoggingCache;
 import org.apache.ibatis.cache.decorators.LoggingCache;
 import org.apache.ibatis.cache.decorators.LruCache;
 import org.apache.ibatis.cache.decorators.ScheduledCache;
 import org.apache.ibatis.cache.decorators.SerializedCache;
 import org.apache.ibatis.cache.decorators.SynchronizedCache;
+import org.apache.ibatis.cache.impl.ConcurrentLruCache;
 import org.apache.ibatis.cache.impl.PerpetualCache;
 import org.apache.ibatis.reflection.MetaObject;
 import org.apache.ibatis.reflection.SystemMetaObject;
@@ -91,6 +93,11 @@ public class CacheBuilder {
 
   public Cache build() {
     setDefaultImplementations();
+    if (isDefaultLruCache()) {
+      Cache cache = new ConcurrentLruCache(id);
+      setCacheProperties(cache);
+      return setStandardDecorators(cache);
+    }
     Cache cache = newBaseCacheInstance(implementation, id);
     setCacheProperties(cache);
     // issue #352, do not apply decorators to custom caches
@@ -115,8 +122,15 @@ public class CacheBuilder {
     }
   }
 
+  private boolean isDefaultLruCache() {
+    return PerpetualCache.class.equals(implementation)
+        && decorators.size() == 1
+        && LruCache.class.equals(decorators.get(0));
+  }
+
   private Cache setStandardDecorators(Cache cache) {
     try {
+      boolean threadSafe = cache instanceof ConcurrentLruCache;
       MetaObject metaCache = SystemMetaObject.forObject(cache);
       if (size != null && metaCache.hasSetter("size")) {
         metaCache.setValue("size", size);
@@ -128,8 +142,12 @@ public class CacheBuilder {
       if (readWrite) {
         cache = new SerializedCache(cache);
       }
-      cache = new LoggingCache(cache);
-      cache = new SynchronizedCache(cache);
+      // a ConcurrentLruCache is thread safe on its own, but ScheduledCache is not
+      if (!threadSafe || clearInterval != null) {
+        cache = new SynchronizedCache(new LoggingCache(cache));
+      } else {
+        cache = new ConcurrentLoggingCache(cache);
+      }
       if (blocking) {
         cache = new BlockingCache(cache);
       }
@@ -45,6 +45,7 @@ public class ResultMapping {
   private String resultSet;
   private String foreignColumn;
   private boolean lazy;
+  private int batchSize;
 
   ResultMapping() {
   }
@@ -131,6 +132,14 @@ public class ResultMapping {
       resultMapping.lazy = lazy;
       return this;
     }
+
+    /**
+     * @since 3.4.7
+     */
+    public Builder batchSize(int batchSize) {
+      resultMapping.batchSize = batchSize;
+      return this;
+    }
     
     public ResultMapping build() {
       // lock down collections
@@ -167,6 +176,11 @@ public class ResultMapping {
           throw new IllegalStateException("There should be the same number of columns and foreignColumns in property " + resultMapping.property);
         }
       }
+      if (resultMapping.batchSize > 0) {
+        if (resultMapping.nestedQueryId == null || resultMapping.foreignColumn == null || !resultMapping.composites.isEmpty()) {
+          throw new IllegalStateException("Batch loading requires a nested select, a single column and a foreignColumn in property " + resultMapping.property);
+        }
+      }
     }
     
     private void resolveTypeHandler() {
@@ -250,6 +264,14 @@ public class ResultMapping {
   public void setLazy(boolean lazy) {
     this.lazy = lazy;
   }
+
+  /**
+   * @return the maximum number of keys loaded by one execution of the nested select, 0 if it is not batch loaded
+   * @since 3.4.7
+   */
+  public int getBatchSize() {
+    return batchSize;
+  }
   
   @Override
   public boolean equals(Object o) {
@@ -298,6 +320,7 @@ public class ResultMapping {
     sb.append(", resultSet='").append(resultSet).append('\'');
     sb.append(", foreignColumn='").append(foreignColumn).append('\'');
     sb.append(", lazy=").append(lazy);
+    sb.append(", batchSize=").append(batchSize);
     sb.append('}');
     return sb.toString();
   }
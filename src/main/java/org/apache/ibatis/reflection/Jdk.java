@@ -52,6 +52,24 @@ public class Jdk {
     dateAndTimeApiExists = available;
   }
 
+  /**
+   * <code>true</code> if <code>java.util.concurrent.CompletableFuture</code> is available.
+   *
+   * @since 3.4.7
+   */
+  public static final boolean completableFutureExists;
+
+  static {
+    boolean available = false;
+    try {
+      Resources.classForName("java.util.concurrent.CompletableFuture");
+      available = true;
+    } catch (ClassNotFoundException e) {
+      // ignore
+    }
+    completableFutureExists = available;
+  }
+
   private Jdk() {
     super();
   }
@@ -0,0 +1,214 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.scripting.defaults;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.mapping.ParameterMode;
+import org.apache.ibatis.reflection.ExceptionUtil;
+import org.apache.ibatis.reflection.MetaClass;
+import org.apache.ibatis.reflection.ReflectionException;
+import org.apache.ibatis.reflection.invoker.Invoker;
+import org.apache.ibatis.reflection.wrapper.DefaultObjectWrapperFactory;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.type.JdbcType;
+import org.apache.ibatis.type.ObjectTypeHandler;
+import org.apache.ibatis.type.TypeException;
+import org.apache.ibatis.type.TypeHandler;
+import org.apache.ibatis.type.TypeHandlerRegistry;
+import org.apache.ibatis.type.UnknownTypeHandler;
+
+/**
+ * Sets the parameters of one statement, or one shape of a dynamic statement, from parameter objects of one class.
+ *
+ * Whether a value is the parameter object itself, a map entry or a bean property is decided once, when the
+ * binder is compiled, and getters are resolved to invokers, so simple property names are read without
+ * evaluating them through a {@link org.apache.ibatis.reflection.MetaObject}. Nested and indexed properties
+ * are still evaluated that way. Type handlers and JDBC types are taken from the mappings up front, and the
+ * handler an {@link UnknownTypeHandler} would pick is remembered for the last class of value it was given.
+ * Binders are cached in the {@link CompiledParameterBinderCache} of the configuration.
+ *
+ * @see Configuration#isCompiledParameterBindersEnabled()
+ */
+public class CompiledParameterBinder {
+
+  private static final Object[] NO_ARGUMENTS = new Object[0];
+  private static final ObjectTypeHandler OBJECT_TYPE_HANDLER = new ObjectTypeHandler();
+
+  private static final int OUT = 0;
+  private static final int PARAMETER_OBJECT = 1;
+  private static final int MAP_KEY = 2;
+  private static final int GETTER = 3;
+  private static final int PROPERTY_PATH = 4;
+
+  private final List<ParameterMapping> parameterMappings;
+  private final int[] accessKinds;
+  private final String[] properties;
+  private final Invoker[] getters;
+  private final TypeHandler[] typeHandlers;
+  private final JdbcType[] jdbcTypes;
+  private final ResolvedTypeHandler[] resolvedTypeHandlers;
+  private final TypeHandlerRegistry typeHandlerRegistry;
+  private final Configuration configuration;
+
+  private CompiledParameterBinder(Configuration configuration, List<ParameterMapping> parameterMappings, int[] accessKinds,
+      String[] properties, Invoker[] getters) {
+    this.configuration = configuration;
+    this.typeHandlerRegistry = configuration.getTypeHandlerRegistry();
+    this.parameterMappings = parameterMappings;
+    this.accessKinds = accessKinds;
+    this.properties = properties;
+    this.getters = getters;
+    this.typeHandlers = new TypeHandler[accessKinds.length];
+    this.jdbcTypes = new JdbcType[accessKinds.length];
+    this.resolvedTypeHandlers = new ResolvedTypeHandler[accessKinds.length];
+    for (int i = 0; i < accessKinds.length; i++) {
+      typeHandlers[i] = parameterMappings.get(i).getTypeHandler();
+      jdbcTypes[i] = parameterMappings.get(i).getJdbcType();
+    }
+  }
+
+  /**
+   * @return the binder, or null when parameters of this type must be read through their object wrapper
+   */
+  public static CompiledParameterBinder compile(Configuration configuration, List<ParameterMapping> parameterMappings,
+      Class<?> parameterType) {
+    if (configuration.getObjectWrapperFactory().getClass() != DefaultObjectWrapperFactory.class
+        || Collection.class.isAssignableFrom(parameterType)) {
+      return null;
+    }
+    final boolean parameterObject = configuration.getTypeHandlerRegistry().hasTypeHandler(parameterType);
+    final boolean map = Map.class.isAssignableFrom(parameterType);
+    final MetaClass metaClass = parameterObject || map ? null : MetaClass.forClass(parameterType, configuration.getReflectorFactory());
+    final int[] accessKinds = new int[parameterMappings.size()];
+    final String[] properties = new String[accessKinds.length];
+    final Invoker[] getters = new Invoker[accessKinds.length];
+    for (int i = 0; i < accessKinds.length; i++) {
+      final ParameterMapping parameterMapping = parameterMappings.get(i);
+      final String property = parameterMapping.getProperty();
+      properties[i] = property;
+      if (parameterMapping.getMode() == ParameterMode.OUT) {
+        accessKinds[i] = OUT;
+      } else if (parameterObject) {
+        accessKinds[i] = PARAMETER_OBJECT;
+      } else if (property.indexOf('.') >= 0 || property.indexOf('[') >= 0) {
+        accessKinds[i] = PROPERTY_PATH;
+      } else if (map) {
+        accessKinds[i] = MAP_KEY;
+      } else if (metaClass.hasGetter(property)) {
+        accessKinds[i] = GETTER;
+        getters[i] = metaClass.getGetInvoker(property);
+      } else {
+        // let the object wrapper report the missing getter
+        accessKinds[i] = PROPERTY_PATH;
+      }
+    }
+    return new CompiledParameterBinder(configuration, parameterMappings, accessKinds, properties, getters);
+  }
+
+  public void setParameters(PreparedStatement ps, BoundSql boundSql, Object parameterObject) {
+    for (int i = 0; i < accessKinds.length; i++) {
+      if (accessKinds[i] == OUT) {
+        continue;
+      }
+      final String propertyName = properties[i];
+      final Object value;
+      if (boundSql.hasAdditionalParameter(propertyName)) { // issue #448 ask first for additional params
+        value = boundSql.getAdditionalParameter(propertyName);
+      } else {
+        value = getValue(i, parameterObject);
+      }
+      JdbcType jdbcType = jdbcTypes[i];
+      if (value == null && jdbcType == null) {
+        jdbcType = configuration.getJdbcTypeForNull();
+      }
+      try {
+        getTypeHandler(i, value).setParameter(ps, i + 1, value, jdbcType);
+      } catch (TypeException e) {
+        throw new TypeException("Could not set parameters for mapping: " + parameterMappings.get(i) + ". Cause: " + e, e);
+      } catch (SQLException e) {
+        throw new TypeException("Could not set parameters for mapping: " + parameterMappings.get(i) + ". Cause: " + e, e);
+      }
+    }
+  }
+
+  private Object getValue(int index, Object parameterObject) {
+    switch (accessKinds[index]) {
+      case PARAMETER_OBJECT:
+        return parameterObject;
+      case MAP_KEY:
+        return ((Map<?, ?>) parameterObject).get(properties[index]);
+      case GETTER:
+        return getBeanProperty(index, parameterObject);
+      default:
+        return configuration.newMetaObject(parameterObject).getValue(properties[index]);
+    }
+  }
+
+  /**
+   * Same choice as {@link UnknownTypeHandler} for non null values, without looking the handler up again while the
+   * values keep the same class.
+   */
+  private TypeHandler getTypeHandler(int index, Object value) {
+    final TypeHandler typeHandler = typeHandlers[index];
+    if (value == null || typeHandler.getClass() != UnknownTypeHandler.class) {
+      return typeHandler;
+    }
+    ResolvedTypeHandler resolved = resolvedTypeHandlers[index];
+    if (resolved == null || resolved.type != value.getClass()) {
+      TypeHandler handler = typeHandlerRegistry.getTypeHandler(value.getClass(), jdbcTypes[index]);
+      // check if handler is null (issue #270)
+      if (handler == null || handler instanceof UnknownTypeHandler) {
+        handler = OBJECT_TYPE_HANDLER;
+      }
+      resolved = new ResolvedTypeHandler(value.getClass(), handler);
+      resolvedTypeHandlers[index] = resolved;
+    }
+    return resolved.typeHandler;
+  }
+
+  private Object getBeanProperty(int index, Object parameterObject) {
+    try {
+      try {
+        return getters[index].invoke(parameterObject, NO_ARGUMENTS);
+      } catch (Throwable t) {
+        throw ExceptionUtil.unwrapThrowable(t);
+      }
+    } catch (RuntimeException e) {
+      throw e;
+    } catch (Throwable t) {
+      throw new ReflectionException("Could not get property '" + properties[index] + "' from " + parameterObject.getClass()
+          + ".  Cause: " + t.toString(), t);
+    }
+  }
+
+  private static final class ResolvedTypeHandler {
+    private final Class<?> type;
+    private final TypeHandler typeHandler;
+
+    private ResolvedTypeHandler(Class<?> type, TypeHandler typeHandler) {
+      this.type = type;
+      this.typeHandler = typeHandler;
+    }
+  }
+
+}
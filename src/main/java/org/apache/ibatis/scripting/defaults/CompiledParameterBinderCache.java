@@ -0,0 +1,114 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.scripting.defaults;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.ibatis.cache.BoundedCache;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ParameterMapping;
+
+/**
+ * The parameter binders compiled for the statements of a configuration, one per parameter mapping list and class of
+ * parameter object.
+ *
+ * Binders are looked up by identity of the mapping list, so only lists that the SqlSource of the statement hands out
+ * again should be cached. Mappings that cannot be bound by a compiled binder are remembered as well, so that they are
+ * not compiled again on every execution. Once a statement has as many binders as the cache holds, its other mappings
+ * are bound without compiling a binder.
+ *
+ * @see org.apache.ibatis.session.Configuration#isCompiledParameterBindersEnabled()
+ * @since 3.4.7
+ */
+public class CompiledParameterBinderCache {
+
+  private static final int MAX_BINDERS = 64;
+  private static final Object NOT_COMPILABLE = new Object();
+
+  private final ConcurrentMap<MappedStatement, BoundedCache<BinderKey, Object>> binders = new ConcurrentHashMap<MappedStatement, BoundedCache<BinderKey, Object>>();
+
+  /**
+   * @return whether a binder was compiled for the mappings and parameter type, or they were found not to be compilable
+   */
+  public boolean contains(MappedStatement mappedStatement, List<ParameterMapping> parameterMappings, Class<?> parameterType) {
+    BoundedCache<BinderKey, Object> statementBinders = binders.get(mappedStatement);
+    return statementBinders != null && statementBinders.containsKey(new BinderKey(parameterMappings, parameterType));
+  }
+
+  /**
+   * @return whether no more binders of the statement can be cached, mappings that are not
+   *         {@link #contains(MappedStatement, List, Class) contained} should then be bound without compiling a binder
+   */
+  public boolean isFull(MappedStatement mappedStatement) {
+    BoundedCache<BinderKey, Object> statementBinders = binders.get(mappedStatement);
+    return statementBinders != null && !statementBinders.hasRoom();
+  }
+
+  /**
+   * @return the binder compiled for the mappings and parameter type, or null if none was compiled
+   */
+  public CompiledParameterBinder get(MappedStatement mappedStatement, List<ParameterMapping> parameterMappings, Class<?> parameterType) {
+    BoundedCache<BinderKey, Object> statementBinders = binders.get(mappedStatement);
+    Object binder = statementBinders == null ? null : statementBinders.get(new BinderKey(parameterMappings, parameterType));
+    return binder == NOT_COMPILABLE ? null : (CompiledParameterBinder) binder;
+  }
+
+  /**
+   * @param binder the binder compiled for the mappings and parameter type, or null if they cannot be bound by one
+   * @return the cached binder, which another thread may have compiled first
+   */
+  public CompiledParameterBinder put(MappedStatement mappedStatement, List<ParameterMapping> parameterMappings,
+      Class<?> parameterType, CompiledParameterBinder binder) {
+    BoundedCache<BinderKey, Object> statementBinders = binders.get(mappedStatement);
+    if (statementBinders == null) {
+      statementBinders = new BoundedCache<BinderKey, Object>(MAX_BINDERS);
+      BoundedCache<BinderKey, Object> existing = binders.putIfAbsent(mappedStatement, statementBinders);
+      if (existing != null) {
+        statementBinders = existing;
+      }
+    }
+    Object cached = statementBinders.putIfAbsent(new BinderKey(parameterMappings, parameterType),
+        binder == null ? NOT_COMPILABLE : binder);
+    return cached == NOT_COMPILABLE ? null : (CompiledParameterBinder) cached;
+  }
+
+  private static final class BinderKey {
+    private final List<ParameterMapping> parameterMappings;
+    private final Class<?> parameterType;
+
+    private BinderKey(List<ParameterMapping> parameterMappings, Class<?> parameterType) {
+      this.parameterMappings = parameterMappings;
+      this.parameterType = parameterType;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof BinderKey)) {
+        return false;
+      }
+      BinderKey other = (BinderKey) o;
+      return parameterMappings == other.parameterMappings && parameterType == other.parameterType;
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * System.identityHashCode(parameterMappings) + parameterType.hashCode();
+    }
+  }
+
+}
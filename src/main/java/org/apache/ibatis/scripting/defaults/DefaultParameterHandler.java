@@ -15,13 +15,16 @@
  */
 package org.apache.ibatis.scripting.defaults;
 
+import org.apache.ibatis.builder.StaticSqlSource;
 import org.apache.ibatis.executor.ErrorContext;
 import org.apache.ibatis.executor.parameter.ParameterHandler;
 import org.apache.ibatis.mapping.BoundSql;
 import org.apache.ibatis.mapping.MappedStatement;
 import org.apache.ibatis.mapping.ParameterMapping;
 import org.apache.ibatis.mapping.ParameterMode;
+import org.apache.ibatis.mapping.SqlSource;
 import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.scripting.xmltags.DynamicSqlSource;
 import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.type.JdbcType;
 import org.apache.ibatis.type.TypeException;
@@ -64,6 +67,11 @@ public class DefaultParameterHandler implements ParameterHandler {
     ErrorContext.instance().activity("setting parameters").object(mappedStatement.getParameterMap().getId());
     List<ParameterMapping> parameterMappings = boundSql.getParameterMappings();
     if (parameterMappings != null) {
+      CompiledParameterBinder binder = getCompiledParameterBinder(parameterMappings);
+      if (binder != null) {
+        binder.setParameters(ps, boundSql, parameterObject);
+        return;
+      }
       for (int i = 0; i < parameterMappings.size(); i++) {
         ParameterMapping parameterMapping = parameterMappings.get(i);
         if (parameterMapping.getMode() != ParameterMode.OUT) {
@@ -97,4 +105,31 @@ public class DefaultParameterHandler implements ParameterHandler {
     }
   }
 
+  private CompiledParameterBinder getCompiledParameterBinder(List<ParameterMapping> parameterMappings) {
+    if (parameterObject == null || !configuration.isCompiledParameterBindersEnabled()
+        || !ownsParameterMappings(mappedStatement.getSqlSource(), parameterMappings)) {
+      return null;
+    }
+    final Class<?> parameterType = parameterObject.getClass();
+    final CompiledParameterBinderCache cache = configuration.getCompiledParameterBinderCache();
+    CompiledParameterBinder binder = cache.get(mappedStatement, parameterMappings, parameterType);
+    if (binder == null && !cache.contains(mappedStatement, parameterMappings, parameterType) && !cache.isFull(mappedStatement)) {
+      binder = cache.put(mappedStatement, parameterMappings, parameterType,
+          CompiledParameterBinder.compile(configuration, parameterMappings, parameterType));
+    }
+    return binder;
+  }
+
+  private static boolean ownsParameterMappings(SqlSource sqlSource, List<ParameterMapping> parameterMappings) {
+    // binders are cached by identity of the mappings, only mappings the source hands out again are worth a binder
+    if (sqlSource instanceof RawSqlSource) {
+      return ((RawSqlSource) sqlSource).ownsParameterMappings(parameterMappings);
+    } else if (sqlSource instanceof StaticSqlSource) {
+      return ((StaticSqlSource) sqlSource).ownsParameterMappings(parameterMappings);
+    } else if (sqlSource instanceof DynamicSqlSource) {
+      return ((DynamicSqlSource) sqlSource).ownsParameterMappings(parameterMappings);
+    }
+    return false;
+  }
+
 }
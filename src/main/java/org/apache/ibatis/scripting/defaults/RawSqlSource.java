@@ -16,9 +16,12 @@
 package org.apache.ibatis.scripting.defaults;
 
 import java.util.HashMap;
+import java.util.List;
 
 import org.apache.ibatis.builder.SqlSourceBuilder;
+import org.apache.ibatis.builder.StaticSqlSource;
 import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.ParameterMapping;
 import org.apache.ibatis.mapping.SqlSource;
 import org.apache.ibatis.scripting.xmltags.DynamicContext;
 import org.apache.ibatis.scripting.xmltags.DynamicSqlSource;
@@ -60,4 +63,12 @@ public class RawSqlSource implements SqlSource {
     return sqlSource.getBoundSql(parameterObject);
   }
 
+  /**
+   * @return true if the mappings are the ones this source binds every statement with
+   * @since 3.4.7
+   */
+  public boolean ownsParameterMappings(List<ParameterMapping> parameterMappings) {
+    return sqlSource instanceof StaticSqlSource && ((StaticSqlSource) sqlSource).ownsParameterMappings(parameterMappings);
+  }
+
 }
@@ -0,0 +1,665 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.scripting.xmltags;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Evaluator for the subset of OGNL that test attributes and property paths typically use: property paths,
+ * zero argument method calls, null/boolean/number/string literals, comparisons and boolean operators.
+ * <p>
+ * Expressions are compiled once into a tree of nodes that cache the getter or method they resolved for the
+ * last target class. Whenever a value is met for which the result could differ from OGNL (mixed type
+ * comparisons, collection properties, missing getters, exceptions...) evaluation is abandoned and the caller
+ * is expected to evaluate the expression with OGNL instead.
+ *
+ * @see OgnlCache
+ */
+final class CompiledExpression {
+
+  /**
+   * Thrown when the compiled expression can not guarantee the OGNL result. Shared and stackless, it is only
+   * used as a signal.
+   */
+  static final class FallbackException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+    private static final FallbackException INSTANCE = new FallbackException();
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+      return this;
+    }
+  }
+
+  private final String expression;
+  private final Node root;
+
+  private CompiledExpression(String expression, Node root) {
+    this.expression = expression;
+    this.root = root;
+  }
+
+  /**
+   * @return the compiled expression, or null if the expression uses syntax outside of the supported subset
+   */
+  static CompiledExpression compile(String expression) {
+    List<String> tokens = tokenize(expression);
+    if (tokens == null) {
+      return null;
+    }
+    Parser parser = new Parser(tokens);
+    Node node = parser.parseOr();
+    if (node == null || !parser.atEnd()) {
+      return null;
+    }
+    return new CompiledExpression(expression, node);
+  }
+
+  /**
+   * @throws FallbackException if the value must be computed by OGNL
+   */
+  Object getValue(Object rootObject) {
+    try {
+      return root.evaluate(rootObject);
+    } catch (FallbackException e) {
+      throw e;
+    } catch (RuntimeException e) {
+      // let OGNL report the error the way it always did
+      throw FallbackException.INSTANCE;
+    }
+  }
+
+  @Override
+  public String toString() {
+    return expression;
+  }
+
+  private static List<String> tokenize(String expression) {
+    List<String> tokens = new ArrayList<String>();
+    int length = expression.length();
+    int i = 0;
+    while (i < length) {
+      char c = expression.charAt(i);
+      if (Character.isWhitespace(c)) {
+        i++;
+      } else if (Character.isJavaIdentifierStart(c)) {
+        int start = i;
+        while (i < length && Character.isJavaIdentifierPart(expression.charAt(i))) {
+          i++;
+        }
+        tokens.add(expression.substring(start, i));
+      } else if (c >= '0' && c <= '9') {
+        int start = i;
+        while (i < length && (Character.isJavaIdentifierPart(expression.charAt(i)) || expression.charAt(i) == '.')) {
+          i++;
+        }
+        tokens.add(expression.substring(start, i));
+      } else if (c == '\'' || c == '"') {
+        int end = expression.indexOf(c, i + 1);
+        if (end < 0 || expression.indexOf('\\', i + 1) >= 0 && expression.indexOf('\\', i + 1) < end) {
+          return null;
+        }
+        tokens.add(expression.substring(i, end + 1));
+        i = end + 1;
+      } else if (i + 1 < length && isTwoCharOperator(c, expression.charAt(i + 1))) {
+        tokens.add(expression.substring(i, i + 2));
+        i += 2;
+      } else if (c == '<' || c == '>' || c == '!' || c == '(' || c == ')' || c == '.') {
+        tokens.add(String.valueOf(c));
+        i++;
+      } else {
+        return null;
+      }
+    }
+    return tokens;
+  }
+
+  private static boolean isTwoCharOperator(char first, char second) {
+    return (second == '=' && (first == '=' || first == '!' || first == '<' || first == '>'))
+        || (first == '&' && second == '&')
+        || (first == '|' && second == '|');
+  }
+
+  private static final class Parser {
+    private final List<String> tokens;
+    private int position;
+
+    private Parser(List<String> tokens) {
+      this.tokens = tokens;
+    }
+
+    private boolean atEnd() {
+      return position == tokens.size();
+    }
+
+    private String peek() {
+      return position < tokens.size() ? tokens.get(position) : null;
+    }
+
+    private boolean accept(String... candidates) {
+      String token = peek();
+      for (String candidate : candidates) {
+        if (candidate.equals(token)) {
+          position++;
+          return true;
+        }
+      }
+      return false;
+    }
+
+    private Node parseOr() {
+      Node node = parseAnd();
+      if (node == null || !"or".equals(peek()) && !"||".equals(peek())) {
+        return node;
+      }
+      List<Node> operands = new ArrayList<Node>();
+      operands.add(node);
+      while (accept("or", "||")) {
+        Node operand = parseAnd();
+        if (operand == null) {
+          return null;
+        }
+        operands.add(operand);
+      }
+      return new Junction(false, operands.toArray(new Node[operands.size()]));
+    }
+
+    private Node parseAnd() {
+      Node node = parseEquality();
+      if (node == null || !"and".equals(peek()) && !"&&".equals(peek())) {
+        return node;
+      }
+      List<Node> operands = new ArrayList<Node>();
+      operands.add(node);
+      while (accept("and", "&&")) {
+        Node operand = parseEquality();
+        if (operand == null) {
+          return null;
+        }
+        operands.add(operand);
+      }
+      return new Junction(true, operands.toArray(new Node[operands.size()]));
+    }
+
+    private Node parseEquality() {
+      Node node = parseRelational();
+      while (node != null) {
+        Operator operator;
+        if (accept("==", "eq")) {
+          operator = Operator.EQ;
+        } else if (accept("!=", "neq")) {
+          operator = Operator.NE;
+        } else {
+          break;
+        }
+        Node right = parseRelational();
+        node = right == null ? null : new Comparison(operator, node, right);
+      }
+      return node;
+    }
+
+    private Node parseRelational() {
+      Node node = parseUnary();
+      while (node != null) {
+        Operator operator;
+        if (accept("<", "lt")) {
+          operator = Operator.LT;
+        } else if (accept(">", "gt")) {
+          operator = Operator.GT;
+        } else if (accept("<=", "lte")) {
+          operator = Operator.LE;
+        } else if (accept(">=", "gte")) {
+          operator = Operator.GE;
+        } else {
+          break;
+        }
+        Node right = parseUnary();
+        node = right == null ? null : new Comparison(operator, node, right);
+      }
+      return node;
+    }
+
+    private Node parseUnary() {
+      if (accept("!", "not")) {
+        Node operand = parseUnary();
+        return operand == null ? null : new Not(operand);
+      }
+      return parsePrimary();
+    }
+
+    private Node parsePrimary() {
+      String token = peek();
+      if (token == null) {
+        return null;
+      }
+      position++;
+      if ("(".equals(token)) {
+        Node node = parseOr();
+        return node != null && accept(")") ? node : null;
+      }
+      char first = token.charAt(0);
+      if (first == '\'' || first == '"') {
+        String text = token.substring(1, token.length() - 1);
+        // OGNL reads a single quoted single character as a Character
+        return new Literal(first == '\'' && text.length() == 1 ? (Object) Character.valueOf(text.charAt(0)) : text);
+      }
+      if (first >= '0' && first <= '9') {
+        Object number = parseNumber(token);
+        return number == null ? null : new Literal(number);
+      }
+      if ("null".equals(token)) {
+        return new Literal(null);
+      }
+      if ("true".equals(token) || "false".equals(token)) {
+        return new Literal(Boolean.valueOf(token));
+      }
+      if (!isPropertyName(token) || "(".equals(peek())) {
+        return null;
+      }
+      Node node = new Property(RootObject.INSTANCE, token);
+      while (accept(".")) {
+        String name = peek();
+        if (name == null || !isPropertyName(name)) {
+          return null;
+        }
+        position++;
+        if (accept("(")) {
+          if (!accept(")")) {
+            return null;
+          }
+          node = new MethodCall(node, name);
+        } else {
+          node = new Property(node, name);
+        }
+      }
+      return node;
+    }
+
+    private static Object parseNumber(String token) {
+      if (token.length() > 1 && token.charAt(0) == '0' && token.charAt(1) != '.') {
+        // octal and hexadecimal literals
+        return null;
+      }
+      for (int i = 0; i < token.length(); i++) {
+        char c = token.charAt(i);
+        if ((c < '0' || c > '9') && c != '.') {
+          // type suffixes and exponents
+          return null;
+        }
+      }
+      try {
+        if (token.indexOf('.') >= 0) {
+          return Double.valueOf(token);
+        }
+        return Integer.valueOf(token);
+      } catch (NumberFormatException e) {
+        return null;
+      }
+    }
+
+    private static boolean isPropertyName(String token) {
+      if (!Character.isJavaIdentifierStart(token.charAt(0)) || token.charAt(0) == '$') {
+        return false;
+      }
+      return !KEYWORDS.contains(token);
+    }
+  }
+
+  private static final Collection<String> KEYWORDS = Arrays.asList("and", "or", "not", "eq", "neq", "lt",
+      "gt", "lte", "gte", "in", "instanceof", "shl", "shr", "ushr", "band", "bor", "xor", "null", "true", "false", "new");
+
+  private enum Operator {
+    EQ, NE, LT, GT, LE, GE
+  }
+
+  private abstract static class Node {
+    abstract Object evaluate(Object root);
+  }
+
+  private static final class RootObject extends Node {
+    private static final RootObject INSTANCE = new RootObject();
+
+    @Override
+    Object evaluate(Object root) {
+      return root;
+    }
+  }
+
+  private static final class Literal extends Node {
+    private final Object value;
+
+    private Literal(Object value) {
+      this.value = value;
+    }
+
+    @Override
+    Object evaluate(Object root) {
+      return value;
+    }
+  }
+
+  private static final class Not extends Node {
+    private final Node operand;
+
+    private Not(Node operand) {
+      this.operand = operand;
+    }
+
+    @Override
+    Object evaluate(Object root) {
+      return booleanValue(operand.evaluate(root)) ? Boolean.FALSE : Boolean.TRUE;
+    }
+  }
+
+  /**
+   * Like OGNL, and/or return the value of the last operand evaluated.
+   */
+  private static final class Junction extends Node {
+    private final boolean and;
+    private final Node[] operands;
+
+    private Junction(boolean and, Node[] operands) {
+      this.and = and;
+      this.operands = operands;
+    }
+
+    @Override
+    Object evaluate(Object root) {
+      Object result = null;
+      int last = operands.length - 1;
+      for (int i = 0; i <= last; i++) {
+        result = operands[i].evaluate(root);
+        if (i != last && booleanValue(result) != and) {
+          break;
+        }
+      }
+      return result;
+    }
+  }
+
+  private static final class Comparison extends Node {
+    private final Operator operator;
+    private final Node left;
+    private final Node right;
+
+    private Comparison(Operator operator, Node left, Node right) {
+      this.operator = operator;
+      this.left = left;
+      this.right = right;
+    }
+
+    @Override
+    Object evaluate(Object root) {
+      Object l = left.evaluate(root);
+      Object r = right.evaluate(root);
+      switch (operator) {
+        case EQ:
+          return Boolean.valueOf(isEqual(l, r));
+        case NE:
+          return Boolean.valueOf(!isEqual(l, r));
+        case LT:
+          return Boolean.valueOf(compare(l, r) < 0);
+        case GT:
+          return Boolean.valueOf(compare(l, r) > 0);
+        case LE:
+          return Boolean.valueOf(compare(l, r) <= 0);
+        default:
+          return Boolean.valueOf(compare(l, r) >= 0);
+      }
+    }
+
+    private static boolean isEqual(Object l, Object r) {
+      if (l == null || r == null) {
+        if (l != null && l.getClass().isArray() || r != null && r.getClass().isArray()) {
+          throw FallbackException.INSTANCE;
+        }
+        return l == r;
+      }
+      if (l.getClass() == r.getClass() && (l instanceof String || l instanceof Boolean)) {
+        return l.equals(r);
+      }
+      // numbers only from here on, OGNL also accepts longs that are equal once widened to double
+      return compare(l, r) == 0 || ((Number) l).doubleValue() == ((Number) r).doubleValue();
+    }
+
+    /**
+     * Same results as OgnlOps.compareWithConversion for strings and primitive wrapper numbers.
+     */
+    private static int compare(Object l, Object r) {
+      if (l instanceof String && r instanceof String) {
+        return ((String) l).compareTo((String) r);
+      }
+      if (isIntegral(l) && isIntegral(r)) {
+        long lv = ((Number) l).longValue();
+        long rv = ((Number) r).longValue();
+        return lv == rv ? 0 : (lv < rv ? -1 : 1);
+      }
+      if ((isIntegral(l) || isFloating(l)) && (isIntegral(r) || isFloating(r))) {
+        double lv = ((Number) l).doubleValue();
+        double rv = ((Number) r).doubleValue();
+        return lv == rv ? 0 : (lv < rv ? -1 : 1);
+      }
+      throw FallbackException.INSTANCE;
+    }
+
+    private static boolean isIntegral(Object value) {
+      return value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte;
+    }
+
+    private static boolean isFloating(Object value) {
+      return value instanceof Double || value instanceof Float;
+    }
+  }
+
+  /**
+   * Property read with the semantics of the OGNL accessors MyBatis uses: ContextAccessor for the bindings,
+   * MapPropertyAccessor for maps and getters for plain objects.
+   */
+  private static final class Property extends Node {
+    private final Node target;
+    private final String name;
+    private volatile CachedMethod getter;
+
+    private Property(Node target, String name) {
+      this.target = target;
+      this.name = name;
+    }
+
+    @Override
+    Object evaluate(Object root) {
+      Object object = target.evaluate(root);
+      if (object == null) {
+        throw FallbackException.INSTANCE;
+      }
+      if (object instanceof DynamicContext.ContextMap) {
+        return DynamicContext.ContextAccessor.getValue((Map<?, ?>) object, name);
+      }
+      if (object instanceof Map) {
+        return getMapValue((Map<?, ?>) object);
+      }
+      if (object instanceof Collection || object instanceof Iterator || object instanceof Enumeration
+          || object.getClass().isArray()) {
+        // OGNL has dedicated accessors for those
+        throw FallbackException.INSTANCE;
+      }
+      CachedMethod cached = getter;
+      if (cached == null || cached.type != object.getClass()) {
+        cached = new CachedMethod(object.getClass(), findGetter(object.getClass(), name));
+        getter = cached;
+      }
+      return cached.invoke(object);
+    }
+
+    private Object getMapValue(Map<?, ?> map) {
+      if ("size".equals(name)) {
+        return Integer.valueOf(map.size());
+      } else if ("keys".equals(name) || "keySet".equals(name)) {
+        return map.keySet();
+      } else if ("values".equals(name)) {
+        return map.values();
+      } else if ("isEmpty".equals(name)) {
+        return map.isEmpty() ? Boolean.TRUE : Boolean.FALSE;
+      }
+      return map.get(name);
+    }
+  }
+
+  private static final class MethodCall extends Node {
+    private final Node target;
+    private final String name;
+    private volatile CachedMethod method;
+
+    private MethodCall(Node target, String name) {
+      this.target = target;
+      this.name = name;
+    }
+
+    @Override
+    Object evaluate(Object root) {
+      Object object = target.evaluate(root);
+      if (object == null) {
+        throw FallbackException.INSTANCE;
+      }
+      CachedMethod cached = method;
+      if (cached == null || cached.type != object.getClass()) {
+        cached = new CachedMethod(object.getClass(), findPublicMethod(object.getClass(), name));
+        method = cached;
+      }
+      return cached.invoke(object);
+    }
+  }
+
+  private static final class CachedMethod {
+    private final Class<?> type;
+    private final Method method;
+
+    private CachedMethod(Class<?> type, Method method) {
+      this.type = type;
+      this.method = method;
+    }
+
+    private Object invoke(Object target) {
+      if (method == null) {
+        throw FallbackException.INSTANCE;
+      }
+      try {
+        return method.invoke(target);
+      } catch (Exception e) {
+        throw FallbackException.INSTANCE;
+      }
+    }
+  }
+
+  /**
+   * OGNL converts the operands of not/and/or this way.
+   */
+  private static boolean booleanValue(Object value) {
+    if (value == null) {
+      return false;
+    }
+    Class<?> type = value.getClass();
+    if (type == Boolean.class) {
+      return ((Boolean) value).booleanValue();
+    }
+    if (type == String.class) {
+      return Boolean.parseBoolean((String) value);
+    }
+    if (type == Character.class) {
+      return ((Character) value).charValue() != 0;
+    }
+    if (value instanceof Number) {
+      return ((Number) value).doubleValue() != 0;
+    }
+    return true;
+  }
+
+  private static Method findGetter(Class<?> type, String property) {
+    if (!Character.isLowerCase(property.charAt(0))) {
+      return null;
+    }
+    String suffix = Character.toUpperCase(property.charAt(0)) + property.substring(1);
+    Method get = findPublicMethod(type, "get" + suffix);
+    Method is = findPublicMethod(type, "is" + suffix);
+    if (is != null && is.getReturnType() != boolean.class) {
+      is = null;
+    }
+    if (get != null && is != null) {
+      // let OGNL decide which one wins
+      return null;
+    }
+    Method getter = get != null ? get : is;
+    return getter != null && getter.getReturnType() != void.class ? getter : null;
+  }
+
+  /**
+   * Finds a public, non static, no argument method that can be invoked without changing its accessibility,
+   * looking into public super types when the class itself is not public.
+   */
+  private static Method findPublicMethod(Class<?> type, String name) {
+    Method method;
+    try {
+      method = type.getMethod(name);
+    } catch (NoSuchMethodException e) {
+      return null;
+    }
+    if (Modifier.isStatic(method.getModifiers())) {
+      return null;
+    }
+    if (Modifier.isPublic(method.getDeclaringClass().getModifiers())) {
+      return method;
+    }
+    for (Class<?> current = type; current != null; current = current.getSuperclass()) {
+      if (current != type && Modifier.isPublic(current.getModifiers())) {
+        try {
+          return current.getMethod(name);
+        } catch (NoSuchMethodException e) {
+          // keep looking
+        }
+      }
+      Method found = findInterfaceMethod(current.getInterfaces(), name);
+      if (found != null) {
+        return found;
+      }
+    }
+    return null;
+  }
+
+  private static Method findInterfaceMethod(Class<?>[] interfaces, String name) {
+    for (Class<?> candidate : interfaces) {
+      if (Modifier.isPublic(candidate.getModifiers())) {
+        try {
+          return candidate.getMethod(name);
+        } catch (NoSuchMethodException e) {
+          // keep looking
+        }
+      }
+      Method found = findInterfaceMethod(candidate.getInterfaces(), name);
+      if (found != null) {
+        return found;
+      }
+    }
+    return null;
+  }
+
+}
@@ -15,7 +15,9 @@
  */
 package org.apache.ibatis.scripting.xmltags;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import ognl.OgnlContext;
@@ -41,11 +43,85 @@ public class DynamicContext {
     OgnlRuntime.setPropertyAccessor(ContextMap.class, new ContextAccessor());
   }
 
+  private static final ThreadLocal<DynamicContext> REUSABLE_CONTEXT = new ThreadLocal<DynamicContext>();
+  /**
+   * Buffers that grew beyond this many characters are left to the garbage collector instead of being reused.
+   */
+  private static final int MAX_REUSED_CAPACITY = 64 * 1024;
+
   private final ContextMap bindings;
-  private final StringBuilder sqlBuilder = new StringBuilder();
+  private final StringBuilder sqlBuilder;
+  private final DynamicContext root;
+  private final DynamicContext delegate;
+  private List<StringBuilder> spareBuffers;
   private int uniqueNumber = 0;
+  private boolean inUse;
+  private boolean textSubstituted;
 
   public DynamicContext(Configuration configuration, Object parameterObject) {
+    this(configuration, parameterObject, 16);
+  }
+
+  DynamicContext(Configuration configuration, Object parameterObject, int capacity) {
+    this.bindings = new ContextMap(null);
+    this.sqlBuilder = new StringBuilder(capacity);
+    this.root = this;
+    this.delegate = null;
+    bindParameterObject(configuration, parameterObject);
+  }
+
+  /**
+   * For contexts that wrap <code>delegate</code>: they have neither bindings nor SQL of their own, every method
+   * they do not override forwards to <code>delegate</code>.
+   */
+  DynamicContext(DynamicContext delegate) {
+    this.bindings = null;
+    this.sqlBuilder = null;
+    this.root = delegate.root;
+    this.delegate = delegate;
+  }
+
+  /**
+   * Returns the context to render a statement into, which must be {@link #release() released} once rendered.
+   * When {@link Configuration#isDynamicContextReuseEnabled()} the context of the current thread is reset
+   * and reused, unless it is already rendering another statement.
+   */
+  static DynamicContext acquire(Configuration configuration, Object parameterObject, int capacity) {
+    if (!configuration.isDynamicContextReuseEnabled()) {
+      return new DynamicContext(configuration, parameterObject, capacity);
+    }
+    DynamicContext context = REUSABLE_CONTEXT.get();
+    if (context == null) {
+      context = new DynamicContext(configuration, parameterObject, capacity);
+      REUSABLE_CONTEXT.set(context);
+    } else if (context.inUse) {
+      return new DynamicContext(configuration, parameterObject, capacity);
+    } else {
+      context.sqlBuilder.ensureCapacity(capacity);
+      context.bindParameterObject(configuration, parameterObject);
+    }
+    context.inUse = true;
+    return context;
+  }
+
+  void release() {
+    if (!inUse) {
+      return;
+    }
+    inUse = false;
+    // do not keep the parameters of the last statement reachable from the thread
+    bindings.clear();
+    bindings.parameterMetaObject = null;
+    uniqueNumber = 0;
+    textSubstituted = false;
+    if (sqlBuilder.capacity() > MAX_REUSED_CAPACITY) {
+      REUSABLE_CONTEXT.remove();
+    } else {
+      sqlBuilder.setLength(0);
+    }
+  }
+
+  private void bindParameterObject(Configuration configuration, Object parameterObject) {
     // 构造函数, 对传入的parameterObject对象进行“map”化处理;
     // 传入的pojo对象，会被当作一个键值对数据来源来进行处理，读取这个pojo对象的接口,依然是Map对象(依然是以Map接口方式来进行读取)。
     /*
@@ -61,11 +137,10 @@ public class DynamicContext {
      */
     if (parameterObject != null && !(parameterObject instanceof Map)) {
       // 当用户传入的参数是普通的POJO
-      MetaObject metaObject = configuration.newMetaObject(parameterObject);
-      bindings = new ContextMap(metaObject);
+      bindings.parameterMetaObject = configuration.newMetaObject(parameterObject);
     } else {
       // 当用户传入的参数null或Map类型时
-      bindings = new ContextMap(null);
+      bindings.parameterMetaObject = null;
     }
     // 设置_parameter和_databaseId
     bindings.put(PARAMETER_OBJECT_KEY, parameterObject);
@@ -73,26 +148,107 @@ public class DynamicContext {
   }
 
   public Map<String, Object> getBindings() {
+    if (delegate != null) {
+      return delegate.getBindings();
+    }
     return bindings;
   }
 
   public void bind(String name, Object value) {
+    if (delegate != null) {
+      delegate.bind(name, value);
+      return;
+    }
     bindings.put(name, value);
   }
 
   public void appendSql(String sql) {
+    if (delegate != null) {
+      delegate.appendSql(sql);
+      return;
+    }
     sqlBuilder.append(sql);
     sqlBuilder.append(" ");
   }
 
   public String getSql() {
-    return sqlBuilder.toString().trim();
+    if (delegate != null) {
+      return delegate.getSql();
+    }
+    int start = 0;
+    int end = sqlBuilder.length();
+    while (start < end && sqlBuilder.charAt(start) <= ' ') {
+      start++;
+    }
+    while (end > start && sqlBuilder.charAt(end - 1) <= ' ') {
+      end--;
+    }
+    return sqlBuilder.substring(start, end);
+  }
+
+  int getSqlLength() {
+    if (delegate != null) {
+      return delegate.getSqlLength();
+    }
+    return sqlBuilder.length();
   }
 
   public int getUniqueNumber() {
+    if (delegate != null) {
+      return delegate.getUniqueNumber();
+    }
     return uniqueNumber++;
   }
 
+  /**
+   * Records that <code>${}</code> text was rendered into the statement, which makes its SQL vary with the values
+   * of the parameters.
+   */
+  void markTextSubstituted() {
+    root.textSubstituted = true;
+  }
+
+  boolean isTextSubstituted() {
+    return root.textSubstituted;
+  }
+
+  /**
+   * @return a meta object of the bindings, created once per context
+   */
+  MetaObject getMetaBindings(Configuration configuration) {
+    if (delegate != null) {
+      return delegate.getMetaBindings(configuration);
+    }
+    if (bindings.metaBindings == null || bindings.metaBindingsConfiguration != configuration) {
+      bindings.metaBindings = configuration.newMetaObject(bindings);
+      bindings.metaBindingsConfiguration = configuration;
+    }
+    return bindings.metaBindings;
+  }
+
+  /**
+   * Lends a cleared buffer to a node that collects SQL before passing it on, it is shared by all the contexts
+   * rendering the same statement.
+   */
+  StringBuilder borrowBuffer() {
+    List<StringBuilder> spares = root.spareBuffers;
+    if (spares == null || spares.isEmpty()) {
+      return new StringBuilder();
+    }
+    return spares.remove(spares.size() - 1);
+  }
+
+  void returnBuffer(StringBuilder buffer) {
+    if (buffer.capacity() > MAX_REUSED_CAPACITY) {
+      return;
+    }
+    buffer.setLength(0);
+    if (root.spareBuffers == null) {
+      root.spareBuffers = new ArrayList<StringBuilder>(4);
+    }
+    root.spareBuffers.add(buffer);
+  }
+
   /**
    * ContextMap作为一个继承了HashMap的对象，作用就是用于统一参数的访问方式：用Map接口方法来访问数据。
    */
@@ -100,6 +256,9 @@ public class DynamicContext {
     private static final long serialVersionUID = 2977601501966151582L;
 
     private MetaObject parameterMetaObject;
+    // only wraps the map itself, it is kept when the context is reused
+    private transient MetaObject metaBindings;
+    private transient Configuration metaBindingsConfiguration;
     public ContextMap(MetaObject parameterMetaObject) {
       this.parameterMetaObject = parameterMetaObject;
     }
@@ -134,7 +293,10 @@ public class DynamicContext {
     public Object getProperty(Map context, Object target, Object name)
         throws OgnlException {
       Map map = (Map) target;// target为ContextMap,所以可以安全地转换为Map
+      return getValue(map, name);
+    }
 
+    static Object getValue(Map map, Object name) {
       Object result = map.get(name);
       if (map.containsKey(name) || result != null) {
         return result;
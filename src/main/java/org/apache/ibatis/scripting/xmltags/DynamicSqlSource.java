@@ -15,11 +15,17 @@
  */
 package org.apache.ibatis.scripting.xmltags;
 
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 
 import org.apache.ibatis.builder.SqlSourceBuilder;
+import org.apache.ibatis.builder.StaticSqlSource;
+import org.apache.ibatis.cache.BoundedCache;
 import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.ParameterMapping;
 import org.apache.ibatis.mapping.SqlSource;
+import org.apache.ibatis.reflection.MetaObject;
 import org.apache.ibatis.session.Configuration;
 
 /**
@@ -28,8 +34,14 @@ import org.apache.ibatis.session.Configuration;
  */
 public class DynamicSqlSource implements SqlSource {
 
+  private static final int MAX_CACHED_SHAPES = 64;
+  private static final int MAX_SQL_CAPACITY = 16 * 1024;
+
   private final Configuration configuration;
   private final SqlNode rootSqlNode;
+  private final BoundedCache<ShapeKey, Shape> shapes = new BoundedCache<ShapeKey, Shape>(MAX_CACHED_SHAPES);
+  // the longest SQL rendered so far, racy updates only cost a buffer resize
+  private int sqlCapacity = 16;
 
   public DynamicSqlSource(Configuration configuration, SqlNode rootSqlNode) {
     this.configuration = configuration;
@@ -38,16 +50,150 @@ public class DynamicSqlSource implements SqlSource {
 
   @Override
   public BoundSql getBoundSql(Object parameterObject) {
-    DynamicContext context = new DynamicContext(configuration, parameterObject);
-    rootSqlNode.apply(context);
+    DynamicContext context = DynamicContext.acquire(configuration, parameterObject, sqlCapacity);
+    try {
+      rootSqlNode.apply(context);
+      if (context.getSqlLength() > sqlCapacity) {
+        // a single huge rendering should not make every later call allocate for it
+        sqlCapacity = Math.min(context.getSqlLength(), MAX_SQL_CAPACITY);
+      }
+      Class<?> parameterType = parameterObject == null ? Object.class : parameterObject.getClass();
+      SqlSource sqlSource;
+      if (context.isTextSubstituted()) {
+        // ${} text may render a new shape on every call, these are parsed without taking room in the cache
+        sqlSource = new SqlSourceBuilder(configuration).parse(context.getSql(), parameterType, context.getBindings());
+      } else {
+        sqlSource = getShape(context, parameterType).sqlSource;
+      }
+      BoundSql boundSql = sqlSource.getBoundSql(parameterObject);
+      for (Map.Entry<String, Object> entry : context.getBindings().entrySet()) {
+        boundSql.setAdditionalParameter(entry.getKey(), entry.getValue());
+      }
+      return boundSql;
+    } finally {
+      context.release();
+    }
+  }
+
+  /**
+   * @return true if the mappings belong to a cached shape, mappings of shapes that were not cached are parsed anew
+   *         for every statement
+   * @since 3.4.7
+   */
+  public boolean ownsParameterMappings(List<ParameterMapping> parameterMappings) {
+    for (Shape shape : shapes.values()) {
+      if (shape.parameterMappings == parameterMappings) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * The rendered text identifies the shape of the statement: which branches fired and how often each foreach
+   * iterated. Statements of the same shape share their parsed SQL and parameter mappings as long as the
+   * additional parameters the mappings were typed from still have the same types. The shared mappings cannot be
+   * modified, a plugin must bind a statement with a copy of them instead.
+   */
+  private Shape getShape(DynamicContext context, Class<?> parameterType) {
+    ShapeKey key = new ShapeKey(context.getSql(), parameterType);
+    Shape shape = shapes.get(key);
+    if (shape != null && shape.matches(context, configuration)) {
+      return shape;
+    }
     SqlSourceBuilder sqlSourceParser = new SqlSourceBuilder(configuration);
-    Class<?> parameterType = parameterObject == null ? Object.class : parameterObject.getClass();
-    SqlSource sqlSource = sqlSourceParser.parse(context.getSql(), parameterType, context.getBindings());
-    BoundSql boundSql = sqlSource.getBoundSql(parameterObject);
-    for (Map.Entry<String, Object> entry : context.getBindings().entrySet()) {
-      boundSql.setAdditionalParameter(entry.getKey(), entry.getValue());
+    BoundSql parsed = sqlSourceParser.parse(key.sql, parameterType, context.getBindings()).getBoundSql(null);
+    List<ParameterMapping> parameterMappings = Collections.unmodifiableList(parsed.getParameterMappings());
+    shape = new Shape(new StaticSqlSource(configuration, parsed.getSql(), parameterMappings), parameterMappings,
+        context.getMetaBindings(configuration));
+    shapes.put(key, shape);
+    return shape;
+  }
+
+  private static final class ShapeKey {
+    private final String sql;
+    private final Class<?> parameterType;
+
+    private ShapeKey(String sql, Class<?> parameterType) {
+      this.sql = sql;
+      this.parameterType = parameterType;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof ShapeKey)) {
+        return false;
+      }
+      ShapeKey other = (ShapeKey) o;
+      return parameterType.equals(other.parameterType) && sql.equals(other.sql);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * sql.hashCode() + parameterType.hashCode();
+    }
+  }
+
+  private static final class Shape {
+    private final SqlSource sqlSource;
+    private final List<ParameterMapping> parameterMappings;
+    private final String[] properties;
+    // properties with a path, their type can only be told by navigating the bindings
+    private final boolean[] nested;
+    private final Class<?>[] bindingTypes;
+
+    private Shape(SqlSource sqlSource, List<ParameterMapping> parameterMappings, MetaObject metaBindings) {
+      this.sqlSource = sqlSource;
+      this.parameterMappings = parameterMappings;
+      this.properties = new String[parameterMappings.size()];
+      this.nested = new boolean[parameterMappings.size()];
+      this.bindingTypes = new Class<?>[parameterMappings.size()];
+      for (int i = 0; i < properties.length; i++) {
+        properties[i] = parameterMappings.get(i).getProperty();
+        nested[i] = properties[i] != null && (properties[i].indexOf('.') >= 0 || properties[i].indexOf('[') >= 0);
+        bindingTypes[i] = getBindingType(metaBindings, properties[i]);
+      }
+    }
+
+    private boolean matches(DynamicContext context, Configuration configuration) {
+      final Map<String, Object> bindings = context.getBindings();
+      for (int i = 0; i < properties.length; i++) {
+        final Class<?> bindingType;
+        if (nested[i]) {
+          bindingType = getBindingType(context.getMetaBindings(configuration), properties[i]);
+        } else {
+          bindingType = getBindingType(bindings, properties[i]);
+        }
+        if (bindingTypes[i] != bindingType) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    /**
+     * Mirrors SqlSourceBuilder: properties found in the additional parameters are typed by their current value.
+     */
+    private static Class<?> getBindingType(MetaObject metaBindings, String property) {
+      if (property != null && metaBindings.hasGetter(property)) {
+        return metaBindings.getGetterType(property);
+      }
+      return null;
+    }
+
+    /**
+     * Same as {@link #getBindingType(MetaObject, String)} for a property without a path.
+     */
+    private static Class<?> getBindingType(Map<String, Object> bindings, String property) {
+      if (property == null || !bindings.containsKey(property)) {
+        return null;
+      }
+      Object value = bindings.get(property);
+      return value == null ? Object.class : value.getClass();
     }
-    return boundSql;
   }
 
 }
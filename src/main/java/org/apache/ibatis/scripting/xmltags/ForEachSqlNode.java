@@ -15,8 +15,17 @@
  */
 package org.apache.ibatis.scripting.xmltags;
 
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.regex.Pattern;
 
+import org.apache.ibatis.builder.BuilderException;
 import org.apache.ibatis.parsing.GenericTokenParser;
 import org.apache.ibatis.parsing.TokenHandler;
 import org.apache.ibatis.session.Configuration;
@@ -27,6 +36,8 @@ import org.apache.ibatis.session.Configuration;
 public class ForEachSqlNode implements SqlNode {
   public static final String ITEM_PREFIX = "__frch_";
 
+  private static final int[] DEFAULT_PADDING_BUCKETS = { 1, 2, 4, 8, 16, 32, 64, 128, 256, 512, 1024 };
+
   private final ExpressionEvaluator evaluator;
   private final String collectionExpression;
   private final SqlNode contents;
@@ -35,9 +46,21 @@ public class ForEachSqlNode implements SqlNode {
   private final String separator;
   private final String item;
   private final String index;
+  private final Pattern itemPattern;
+  private final Pattern indexPattern;
+  private final int[] paddingBuckets;
   private final Configuration configuration;
 
   public ForEachSqlNode(Configuration configuration, SqlNode contents, String collectionExpression, String index, String item, String open, String close, String separator) {
+    this(configuration, contents, collectionExpression, index, item, open, close, separator, null);
+  }
+
+  /**
+   * @param padding <code>true</code> to pad the collection to the next power of two (up to 1024, then to the next
+   *     multiple of 1024), a comma separated list of ascending sizes to pad to, or <code>null</code> for no padding
+   * @since 3.4.7
+   */
+  public ForEachSqlNode(Configuration configuration, SqlNode contents, String collectionExpression, String index, String item, String open, String close, String separator, String padding) {
     this.evaluator = new ExpressionEvaluator();
     this.collectionExpression = collectionExpression;
     this.contents = contents;
@@ -46,6 +69,9 @@ public class ForEachSqlNode implements SqlNode {
     this.separator = separator;
     this.index = index;
     this.item = item;
+    this.itemPattern = Pattern.compile("^\\s*" + item + "(?![^.,:\\s])");
+    this.indexPattern = index == null ? null : Pattern.compile("^\\s*" + index + "(?![^.,:\\s])");
+    this.paddingBuckets = parsePadding(padding);
     this.configuration = configuration;
   }
 
@@ -56,52 +82,128 @@ public class ForEachSqlNode implements SqlNode {
     if (!iterable.iterator().hasNext()) {
       return true;
     }
+    BulkBinding itemBinding = null;
+    BulkBinding indexBinding = null;
+    if (configuration.isForEachBulkBindingEnabled()) {
+      int uniqueNumber = context.getUniqueNumber();
+      itemBinding = BulkBinding.bind(context, item, uniqueNumber, iterable, false);
+      indexBinding = BulkBinding.bind(context, index, uniqueNumber, iterable, true);
+    }
     boolean first = true;
     applyOpen(context);
     int i = 0;
+    Object lastItem = null;
+    Object lastIndex = null;
     for (Object o : iterable) {
-      DynamicContext oldContext = context;
-      if (first || separator == null) {
-        context = new PrefixedContext(context, "");
-      } else {
-        context = new PrefixedContext(context, separator);
-      }
-      int uniqueNumber = context.getUniqueNumber();
+      Object indexValue = i;
+      Object itemValue = o;
       // Issue #709 
       if (o instanceof Map.Entry) {
         @SuppressWarnings("unchecked") 
         Map.Entry<Object, Object> mapEntry = (Map.Entry<Object, Object>) o;
-        applyIndex(context, mapEntry.getKey(), uniqueNumber);
-        applyItem(context, mapEntry.getValue(), uniqueNumber);
-      } else {
-        applyIndex(context, i, uniqueNumber);
-        applyItem(context, o, uniqueNumber);
-      }
-      contents.apply(new FilteredDynamicContext(configuration, context, index, item, uniqueNumber));
-      if (first) {
-        first = !((PrefixedContext) context).isPrefixApplied();
+        indexValue = mapEntry.getKey();
+        itemValue = mapEntry.getValue();
       }
-      context = oldContext;
+      first = applyElement(context, itemValue, indexValue, i, first, itemBinding, indexBinding);
+      lastItem = itemValue;
+      lastIndex = indexValue;
       i++;
     }
+    if (paddingBuckets != null) {
+      // repeat the last element so that collections of similar sizes render the same statement
+      for (int paddedSize = getPaddedSize(i); i < paddedSize; i++) {
+        first = applyElement(context, lastItem, lastIndex, i, first, itemBinding, indexBinding);
+      }
+    }
     applyClose(context);
     context.getBindings().remove(item);
     context.getBindings().remove(index);
     return true;
   }
 
-  private void applyIndex(DynamicContext context, Object o, int i) {
+  private boolean applyElement(DynamicContext context, Object itemValue, Object indexValue, int i, boolean first,
+      BulkBinding itemBinding, BulkBinding indexBinding) {
+    PrefixedContext prefixedContext;
+    if (first || separator == null) {
+      prefixedContext = new PrefixedContext(context, "");
+    } else {
+      prefixedContext = new PrefixedContext(context, separator);
+    }
+    String itemName;
+    String indexName;
+    if (itemBinding != null || indexBinding != null) {
+      indexName = applyBulk(prefixedContext, index, indexBinding, indexValue, i);
+      itemName = applyBulk(prefixedContext, item, itemBinding, itemValue, i);
+    } else {
+      int uniqueNumber = prefixedContext.getUniqueNumber();
+      indexName = applyIndex(prefixedContext, indexValue, uniqueNumber);
+      itemName = applyItem(prefixedContext, itemValue, uniqueNumber);
+    }
+    contents.apply(new FilteredDynamicContext(prefixedContext, itemPattern, itemName, indexPattern, indexName));
+    return first && !prefixedContext.isPrefixApplied();
+  }
+
+  /**
+   * @return the smallest bucket that holds the given number of elements, or the next multiple of the largest one
+   */
+  private int getPaddedSize(int size) {
+    for (int bucket : paddingBuckets) {
+      if (bucket >= size) {
+        return bucket;
+      }
+    }
+    int largest = paddingBuckets[paddingBuckets.length - 1];
+    return (size + largest - 1) / largest * largest;
+  }
+
+  private static int[] parsePadding(String padding) {
+    if (padding == null || "false".equals(padding)) {
+      return null;
+    }
+    if ("true".equals(padding)) {
+      return DEFAULT_PADDING_BUCKETS;
+    }
+    String[] values = padding.split(",");
+    int[] buckets = new int[values.length];
+    for (int i = 0; i < values.length; i++) {
+      try {
+        buckets[i] = Integer.parseInt(values[i].trim());
+      } catch (NumberFormatException e) {
+        throw new BuilderException("Invalid foreach padding '" + padding + "'. Expected true, false or ascending sizes like 1,2,4,8.", e);
+      }
+      if (buckets[i] <= 0 || i > 0 && buckets[i] <= buckets[i - 1]) {
+        throw new BuilderException("Invalid foreach padding '" + padding + "'. Expected true, false or ascending sizes like 1,2,4,8.");
+      }
+    }
+    return buckets;
+  }
+
+  private String applyIndex(DynamicContext context, Object o, int i) {
     if (index != null) {
+      String itemizedIndex = itemizeItem(index, i);
       context.bind(index, o);
-      context.bind(itemizeItem(index, i), o);
+      context.bind(itemizedIndex, o);
+      return itemizedIndex;
     }
+    return null;
   }
 
-  private void applyItem(DynamicContext context, Object o, int i) {
+  private String applyItem(DynamicContext context, Object o, int i) {
     if (item != null) {
+      String itemizedItem = itemizeItem(item, i);
       context.bind(item, o);
-      context.bind(itemizeItem(item, i), o);
+      context.bind(itemizedItem, o);
+      return itemizedItem;
+    }
+    return null;
+  }
+
+  private String applyBulk(DynamicContext context, String name, BulkBinding binding, Object o, int i) {
+    if (binding != null) {
+      context.bind(name, o);
+      return binding.slot(i);
     }
+    return null;
   }
 
   private void applyOpen(DynamicContext context) {
@@ -122,16 +224,19 @@ public class ForEachSqlNode implements SqlNode {
 
   private static class FilteredDynamicContext extends DynamicContext {
     private final DynamicContext delegate;
-    private final int index;
-    private final String itemIndex;
-    private final String item;
+    private final Pattern itemPattern;
+    private final String itemName;
+    private final Pattern indexPattern;
+    private final String indexName;
 
-    public FilteredDynamicContext(Configuration configuration,DynamicContext delegate, String itemIndex, String item, int i) {
-      super(configuration, null);
+    public FilteredDynamicContext(DynamicContext delegate, Pattern itemPattern, String itemName, Pattern indexPattern,
+        String indexName) {
+      super(delegate);
       this.delegate = delegate;
-      this.index = i;
-      this.itemIndex = itemIndex;
-      this.item = item;
+      this.itemPattern = itemPattern;
+      this.itemName = itemName;
+      this.indexPattern = indexPattern;
+      this.indexName = indexName;
     }
 
     @Override
@@ -154,9 +259,9 @@ public class ForEachSqlNode implements SqlNode {
       GenericTokenParser parser = new GenericTokenParser("#{", "}", new TokenHandler() {
         @Override
         public String handleToken(String content) {
-          String newContent = content.replaceFirst("^\\s*" + item + "(?![^.,:\\s])", itemizeItem(item, index));
-          if (itemIndex != null && newContent.equals(content)) {
-            newContent = content.replaceFirst("^\\s*" + itemIndex + "(?![^.,:\\s])", itemizeItem(itemIndex, index));
+          String newContent = itemPattern.matcher(content).replaceFirst(String.valueOf(itemName));
+          if (indexPattern != null && newContent.equals(content)) {
+            newContent = indexPattern.matcher(content).replaceFirst(String.valueOf(indexName));
           }
           return new StringBuilder("#{").append(newContent).append("}").toString();
         }
@@ -173,13 +278,115 @@ public class ForEachSqlNode implements SqlNode {
   }
 
 
+  /**
+   * A loop variable bound once for all elements, see {@link Configuration#isForEachBulkBindingEnabled()}.
+   * It is a read-only map from the position of an element to its value, so #{__frch_item_0.3} resolves through the
+   * regular map properties. The elements are read from the iterated collection rather than copied, a position past
+   * its end (added by padding) reads the last element.
+   */
+  private static final class BulkBinding extends AbstractMap<String, Object> {
+    private final String name;
+    private final Iterable<?> source;
+    private final boolean index;
+    private List<?> elements;
+    private int slots;
+
+    private BulkBinding(String name, Iterable<?> source, boolean index) {
+      this.name = name;
+      this.source = source;
+      this.index = index;
+    }
+
+    private static BulkBinding bind(DynamicContext context, String variable, int uniqueNumber, Iterable<?> source,
+        boolean index) {
+      if (variable == null) {
+        return null;
+      }
+      BulkBinding binding = new BulkBinding(itemizeItem(variable, uniqueNumber), source, index);
+      context.bind(binding.name, binding);
+      return binding;
+    }
+
+    private String slot(int i) {
+      slots = Math.max(slots, i + 1);
+      return new StringBuilder(name).append('.').append(i).toString();
+    }
+
+    @Override
+    public Object get(Object key) {
+      int i = position(key);
+      return i < 0 ? null : value(i);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+      return position(key) >= 0;
+    }
+
+    @Override
+    public int size() {
+      return slots;
+    }
+
+    @Override
+    public Set<Map.Entry<String, Object>> entrySet() {
+      Map<String, Object> entries = new LinkedHashMap<String, Object>();
+      for (int i = 0; i < slots; i++) {
+        entries.put(String.valueOf(i), value(i));
+      }
+      return Collections.unmodifiableSet(entries.entrySet());
+    }
+
+    private int position(Object key) {
+      if (key instanceof String) {
+        try {
+          int i = Integer.parseInt((String) key);
+          if (i >= 0 && i < slots) {
+            return i;
+          }
+        } catch (NumberFormatException e) {
+          // not a position
+        }
+      }
+      return -1;
+    }
+
+    private Object value(int i) {
+      List<?> list = elements();
+      int last = list.size() - 1;
+      Object o = list.get(Math.min(i, last));
+      // Issue #709
+      if (o instanceof Map.Entry) {
+        Map.Entry<?, ?> mapEntry = (Map.Entry<?, ?>) o;
+        return index ? mapEntry.getKey() : mapEntry.getValue();
+      }
+      return index ? Integer.valueOf(Math.min(i, last)) : o;
+    }
+
+    private List<?> elements() {
+      if (elements == null) {
+        if (source instanceof List && source instanceof RandomAccess) {
+          elements = (List<?>) source;
+        } else {
+          // sets and the entries of a map have no positions, they are read into a list once
+          List<Object> list = new ArrayList<Object>();
+          for (Object o : source) {
+            list.add(o);
+          }
+          elements = list;
+        }
+      }
+      return elements;
+    }
+  }
+
   private class PrefixedContext extends DynamicContext {
     private final DynamicContext delegate;
     private final String prefix;
     private boolean prefixApplied;
 
     public PrefixedContext(DynamicContext delegate, String prefix) {
-      super(configuration, null);
+      super(delegate);
       this.delegate = delegate;
       this.prefix = prefix;
       this.prefixApplied = false;
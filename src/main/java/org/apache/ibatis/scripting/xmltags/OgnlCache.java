@@ -25,6 +25,8 @@ import org.apache.ibatis.builder.BuilderException;
 
 /**
  * Caches OGNL parsed expressions.
+ * <p>
+ * Expressions within the subset understood by {@link CompiledExpression} are evaluated without OGNL.
  *
  * @author Eduardo Macarron
  *
@@ -32,13 +34,24 @@ import org.apache.ibatis.builder.BuilderException;
  */
 public final class OgnlCache {
 
+  private static final Object NOT_COMPILABLE = new Object();
+
   private static final Map<String, Object> expressionCache = new ConcurrentHashMap<String, Object>();
+  private static final Map<String, Object> compiledExpressionCache = new ConcurrentHashMap<String, Object>();
 
   private OgnlCache() {
     // Prevent Instantiation of Static Class
   }
 
   public static Object getValue(String expression, Object root) {
+    CompiledExpression compiledExpression = compileExpression(expression);
+    if (compiledExpression != null) {
+      try {
+        return compiledExpression.getValue(root);
+      } catch (CompiledExpression.FallbackException e) {
+        // the result depends on OGNL specific conversions
+      }
+    }
     try {
       Map<Object, OgnlClassResolver> context = Ognl.createDefaultContext(root, new OgnlClassResolver());
       return Ognl.getValue(parseExpression(expression), context, root);
@@ -56,4 +69,16 @@ public final class OgnlCache {
     return node;
   }
 
+  private static CompiledExpression compileExpression(String expression) {
+    Object compiled = compiledExpressionCache.get(expression);
+    if (compiled == null) {
+      compiled = CompiledExpression.compile(expression);
+      if (compiled == null) {
+        compiled = NOT_COMPILABLE;
+      }
+      compiledExpressionCache.put(expression, compiled);
+    }
+    return compiled == NOT_COMPILABLE ? null : (CompiledExpression) compiled;
+  }
+
 }
@@ -32,8 +32,10 @@ public class TrimSqlNode implements SqlNode {
   private final SqlNode contents;
   private final String prefix;
   private final String suffix;
-  private final List<String> prefixesToOverride;
-  private final List<String> suffixesToOverride;
+  private final String[] prefixesToOverride;
+  private final int[] trimmedPrefixLengths;
+  private final String[] suffixesToOverride;
+  private final String[] trimmedSuffixesToOverride;
   private final Configuration configuration;
 
   public TrimSqlNode(Configuration configuration, SqlNode contents, String prefix, String prefixesToOverride, String suffix, String suffixesToOverride) {
@@ -43,9 +45,17 @@ public class TrimSqlNode implements SqlNode {
   protected TrimSqlNode(Configuration configuration, SqlNode contents, String prefix, List<String> prefixesToOverride, String suffix, List<String> suffixesToOverride) {
     this.contents = contents;
     this.prefix = prefix;
-    this.prefixesToOverride = prefixesToOverride;
+    this.prefixesToOverride = toArray(prefixesToOverride);
+    this.trimmedPrefixLengths = new int[this.prefixesToOverride.length];
+    for (int i = 0; i < trimmedPrefixLengths.length; i++) {
+      trimmedPrefixLengths[i] = this.prefixesToOverride[i].trim().length();
+    }
     this.suffix = suffix;
-    this.suffixesToOverride = suffixesToOverride;
+    this.suffixesToOverride = toArray(suffixesToOverride);
+    this.trimmedSuffixesToOverride = new String[this.suffixesToOverride.length];
+    for (int i = 0; i < trimmedSuffixesToOverride.length; i++) {
+      trimmedSuffixesToOverride[i] = this.suffixesToOverride[i].trim();
+    }
     this.configuration = configuration;
   }
 
@@ -69,28 +79,62 @@ public class TrimSqlNode implements SqlNode {
     return Collections.emptyList();
   }
 
+  private static String[] toArray(List<String> overrides) {
+    return overrides == null ? new String[0] : overrides.toArray(new String[overrides.size()]);
+  }
+
+  /**
+   * Same as <code>sql.substring(start, end).toUpperCase(Locale.ENGLISH).startsWith(uppercase)</code>, without copying the buffer.
+   */
+  private static boolean startsWithIgnoreCase(CharSequence sql, int start, int end, String uppercase) {
+    if (end - start < uppercase.length()) {
+      return false;
+    }
+    for (int i = 0; i < uppercase.length(); i++) {
+      if (Character.toUpperCase(sql.charAt(start + i)) != uppercase.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
   private class FilteredDynamicContext extends DynamicContext {
-    private DynamicContext delegate;
-    private boolean prefixApplied;
-    private boolean suffixApplied;
-    private StringBuilder sqlBuffer;
+    private final DynamicContext delegate;
+    private final StringBuilder sqlBuffer;
 
     public FilteredDynamicContext(DynamicContext delegate) {
-      super(configuration, null);
+      super(delegate);
       this.delegate = delegate;
-      this.prefixApplied = false;
-      this.suffixApplied = false;
-      this.sqlBuffer = new StringBuilder();
+      this.sqlBuffer = borrowBuffer();
     }
 
     public void applyAll() {
-      sqlBuffer = new StringBuilder(sqlBuffer.toString().trim());
-      String trimmedUppercaseSql = sqlBuffer.toString().toUpperCase(Locale.ENGLISH);
-      if (trimmedUppercaseSql.length() > 0) {
-        applyPrefix(sqlBuffer, trimmedUppercaseSql);
-        applySuffix(sqlBuffer, trimmedUppercaseSql);
+      int start = 0;
+      int end = sqlBuffer.length();
+      while (start < end && sqlBuffer.charAt(start) <= ' ') {
+        start++;
       }
-      delegate.appendSql(sqlBuffer.toString());
+      while (end > start && sqlBuffer.charAt(end - 1) <= ' ') {
+        end--;
+      }
+      delegate.appendSql(start == end ? "" : trim(start, end));
+      returnBuffer(sqlBuffer);
+    }
+
+    private String trim(int start, int end) {
+      // the overrides are matched against the trimmed text, then cut off by moving its bounds
+      int contentStart = start + getPrefixOverrideLength(start, end);
+      int contentEnd = Math.max(contentStart, end - getSuffixOverrideLength(start, end));
+      StringBuilder sql = new StringBuilder(contentEnd - contentStart
+          + (prefix == null ? 0 : prefix.length() + 1) + (suffix == null ? 0 : suffix.length() + 1));
+      if (prefix != null) {
+        sql.append(prefix).append(' ');
+      }
+      sql.append(sqlBuffer, contentStart, contentEnd);
+      if (suffix != null) {
+        sql.append(' ').append(suffix);
+      }
+      return sql.toString();
     }
 
     @Override
@@ -118,42 +162,28 @@ public class TrimSqlNode implements SqlNode {
       return delegate.getSql();
     }
 
-    private void applyPrefix(StringBuilder sql, String trimmedUppercaseSql) {
-      if (!prefixApplied) {
-        prefixApplied = true;
-        if (prefixesToOverride != null) {
-          for (String toRemove : prefixesToOverride) {
-            if (trimmedUppercaseSql.startsWith(toRemove)) {
-              sql.delete(0, toRemove.trim().length());
-              break;
-            }
-          }
-        }
-        if (prefix != null) {
-          sql.insert(0, " ");
-          sql.insert(0, prefix);
+    private int getPrefixOverrideLength(int start, int end) {
+      for (int i = 0; i < prefixesToOverride.length; i++) {
+        if (startsWithIgnoreCase(sqlBuffer, start, end, prefixesToOverride[i])) {
+          return trimmedPrefixLengths[i];
         }
       }
+      return 0;
     }
 
-    private void applySuffix(StringBuilder sql, String trimmedUppercaseSql) {
-      if (!suffixApplied) {
-        suffixApplied = true;
-        if (suffixesToOverride != null) {
-          for (String toRemove : suffixesToOverride) {
-            if (trimmedUppercaseSql.endsWith(toRemove) || trimmedUppercaseSql.endsWith(toRemove.trim())) {
-              int start = sql.length() - toRemove.trim().length();
-              int end = sql.length();
-              sql.delete(start, end);
-              break;
-            }
-          }
-        }
-        if (suffix != null) {
-          sql.append(" ");
-          sql.append(suffix);
+    private int getSuffixOverrideLength(int start, int end) {
+      for (int i = 0; i < suffixesToOverride.length; i++) {
+        String toRemove = suffixesToOverride[i];
+        String trimmed = trimmedSuffixesToOverride[i];
+        if (endsWithIgnoreCase(start, end, toRemove) || endsWithIgnoreCase(start, end, trimmed)) {
+          return trimmed.length();
         }
       }
+      return 0;
+    }
+
+    private boolean endsWithIgnoreCase(int start, int end, String uppercase) {
+      return end - start >= uppercase.length() && startsWithIgnoreCase(sqlBuffer, end - uppercase.length(), end, uppercase);
     }
 
   }
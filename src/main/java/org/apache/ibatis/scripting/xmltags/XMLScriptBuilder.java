@@ -36,6 +36,7 @@ public class XMLScriptBuilder extends BaseBuilder {
 
   private final XNode context;
   private boolean isDynamic;
+  private int trimDepth;
   private final Class<?> parameterType;
   private final Map<String, NodeHandler> nodeHandlerMap = new HashMap<String, NodeHandler>();
 
@@ -106,7 +107,7 @@ public class XMLScriptBuilder extends BaseBuilder {
           contents.add(textSqlNode);
           isDynamic = true;
         } else {
-          contents.add(new StaticTextSqlNode(data));
+          addStaticText(contents, data);
         }
       } else if (child.getNode().getNodeType() == Node.ELEMENT_NODE) { // issue #628
         String nodeName = child.getNode().getNodeName();
@@ -123,6 +124,36 @@ public class XMLScriptBuilder extends BaseBuilder {
     return new MixedSqlNode(contents);
   }
 
+  /**
+   * Parses the children of trim, where and set, which buffer the text of their contents as is.
+   */
+  private MixedSqlNode parseTrimmedTags(XNode node) {
+    trimDepth++;
+    try {
+      return parseDynamicTags(node);
+    } finally {
+      trimDepth--;
+    }
+  }
+
+  /**
+   * Folds text that directly follows static text (e.g. around CDATA sections or comments) into a single node.
+   * The folded text renders like the separate fragments did: a trim buffers fragments as they are, other contexts
+   * separate them with a space. Blank leading text is never folded, foreach only places its separator before
+   * the first fragment that is not blank.
+   */
+  private void addStaticText(List<SqlNode> contents, String text) {
+    int last = contents.size() - 1;
+    if (last >= 0 && contents.get(last) instanceof StaticTextSqlNode) {
+      String previous = ((StaticTextSqlNode) contents.get(last)).getText();
+      if (previous.trim().length() > 0) {
+        contents.set(last, new StaticTextSqlNode(trimDepth > 0 ? previous + text : previous + " " + text));
+        return;
+      }
+    }
+    contents.add(new StaticTextSqlNode(text));
+  }
+
   private interface NodeHandler {
     void handleNode(XNode nodeToHandle, List<SqlNode> targetContents);
   }
@@ -167,7 +198,7 @@ public class XMLScriptBuilder extends BaseBuilder {
      */
     @Override
     public void handleNode(XNode nodeToHandle, List<SqlNode> targetContents) {
-      MixedSqlNode mixedSqlNode = parseDynamicTags(nodeToHandle);
+      MixedSqlNode mixedSqlNode = parseTrimmedTags(nodeToHandle);
       String prefix = nodeToHandle.getStringAttribute("prefix");
       String prefixOverrides = nodeToHandle.getStringAttribute("prefixOverrides");
       String suffix = nodeToHandle.getStringAttribute("suffix");
@@ -189,7 +220,7 @@ public class XMLScriptBuilder extends BaseBuilder {
      */
     @Override
     public void handleNode(XNode nodeToHandle, List<SqlNode> targetContents) {
-      MixedSqlNode mixedSqlNode = parseDynamicTags(nodeToHandle);
+      MixedSqlNode mixedSqlNode = parseTrimmedTags(nodeToHandle);
       WhereSqlNode where = new WhereSqlNode(configuration, mixedSqlNode);
       targetContents.add(where);
     }
@@ -210,7 +241,7 @@ public class XMLScriptBuilder extends BaseBuilder {
      */
     @Override
     public void handleNode(XNode nodeToHandle, List<SqlNode> targetContents) {
-      MixedSqlNode mixedSqlNode = parseDynamicTags(nodeToHandle);
+      MixedSqlNode mixedSqlNode = parseTrimmedTags(nodeToHandle);
       SetSqlNode set = new SetSqlNode(configuration, mixedSqlNode);
       targetContents.add(set);
     }
@@ -237,7 +268,8 @@ public class XMLScriptBuilder extends BaseBuilder {
       String open = nodeToHandle.getStringAttribute("open");
       String close = nodeToHandle.getStringAttribute("close");
       String separator = nodeToHandle.getStringAttribute("separator");
-      ForEachSqlNode forEachSqlNode = new ForEachSqlNode(configuration, mixedSqlNode, collection, index, item, open, close, separator);
+      String padding = nodeToHandle.getStringAttribute("padding");
+      ForEachSqlNode forEachSqlNode = new ForEachSqlNode(configuration, mixedSqlNode, collection, index, item, open, close, separator, padding);
       targetContents.add(forEachSqlNode);
     }
   }
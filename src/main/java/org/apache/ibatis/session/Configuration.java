@@ -25,6 +25,7 @@ import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 
+import org.apache.ibatis.binding.AsyncMapperExecutor;
 import org.apache.ibatis.binding.MapperRegistry;
 import org.apache.ibatis.builder.CacheRefResolver;
 import org.apache.ibatis.builder.ResultMapResolver;
@@ -37,6 +38,7 @@ import org.apache.ibatis.cache.decorators.SoftCache;
 import org.apache.ibatis.cache.decorators.WeakCache;
 import org.apache.ibatis.cache.impl.PerpetualCache;
 import org.apache.ibatis.datasource.jndi.JndiDataSourceFactory;
+import org.apache.ibatis.datasource.pooled.ConcurrentPooledDataSourceFactory;
 import org.apache.ibatis.datasource.pooled.PooledDataSourceFactory;
 import org.apache.ibatis.datasource.unpooled.UnpooledDataSourceFactory;
 import org.apache.ibatis.executor.BatchExecutor;
@@ -49,6 +51,7 @@ import org.apache.ibatis.executor.loader.ProxyFactory;
 import org.apache.ibatis.executor.loader.cglib.CglibProxyFactory;
 import org.apache.ibatis.executor.loader.javassist.JavassistProxyFactory;
 import org.apache.ibatis.executor.parameter.ParameterHandler;
+import org.apache.ibatis.executor.resultset.CompiledRowMapperCache;
 import org.apache.ibatis.executor.resultset.DefaultResultSetHandler;
 import org.apache.ibatis.executor.resultset.ResultSetHandler;
 import org.apache.ibatis.executor.statement.RoutingStatementHandler;
@@ -81,6 +84,7 @@ import org.apache.ibatis.reflection.wrapper.DefaultObjectWrapperFactory;
 import org.apache.ibatis.reflection.wrapper.ObjectWrapperFactory;
 import org.apache.ibatis.scripting.LanguageDriver;
 import org.apache.ibatis.scripting.LanguageDriverRegistry;
+import org.apache.ibatis.scripting.defaults.CompiledParameterBinderCache;
 import org.apache.ibatis.scripting.defaults.RawLanguageDriver;
 import org.apache.ibatis.scripting.xmltags.XMLLanguageDriver;
 import org.apache.ibatis.transaction.Transaction;
@@ -111,6 +115,19 @@ public class Configuration {
   protected boolean callSettersOnNulls;
   protected boolean useActualParamName = true;
   protected boolean returnInstanceForEmptyRow;
+  protected boolean compiledRowMappersEnabled;
+  protected boolean forEachBulkBindingEnabled;
+  protected boolean dynamicContextReuseEnabled;
+  protected boolean compiledParameterBindersEnabled;
+  protected boolean parallelMapperParsingEnabled;
+  protected String mapperSnapshotFile;
+  protected boolean batchStatementGroupingEnabled;
+  protected int batchAutoFlushStatementRows;
+  protected int batchAutoFlushPendingRows;
+  protected long batchAutoFlushPendingBytes;
+  protected boolean batchAutoFlushDropParameters;
+  protected int batchInsertRewriteRows;
+  protected final AsyncMapperExecutor asyncMapperExecutor = new AsyncMapperExecutor();
 
   protected String logPrefix;
   protected Class <? extends Log> logImpl;
@@ -146,6 +163,8 @@ public class Configuration {
   protected final TypeHandlerRegistry typeHandlerRegistry = new TypeHandlerRegistry();
   protected final TypeAliasRegistry typeAliasRegistry = new TypeAliasRegistry();
   protected final LanguageDriverRegistry languageRegistry = new LanguageDriverRegistry();
+  protected final CompiledRowMapperCache compiledRowMapperCache = new CompiledRowMapperCache();
+  protected final CompiledParameterBinderCache compiledParameterBinderCache = new CompiledParameterBinderCache();
 
   protected final Map<String, MappedStatement> mappedStatements = new StrictMap<MappedStatement>("Mapped Statements collection");
   protected final Map<String, Cache> caches = new StrictMap<Cache>("Caches collection");
@@ -179,6 +198,7 @@ public class Configuration {
 
     typeAliasRegistry.registerAlias("JNDI", JndiDataSourceFactory.class);
     typeAliasRegistry.registerAlias("POOLED", PooledDataSourceFactory.class);
+    typeAliasRegistry.registerAlias("CONCURRENT_POOLED", ConcurrentPooledDataSourceFactory.class);
     typeAliasRegistry.registerAlias("UNPOOLED", UnpooledDataSourceFactory.class);
 
     typeAliasRegistry.registerAlias("PERPETUAL", PerpetualCache.class);
@@ -261,6 +281,221 @@ public class Configuration {
     this.returnInstanceForEmptyRow = returnEmptyInstance;
   }
 
+  /**
+   * @since 3.4.7
+   */
+  public boolean isCompiledRowMappersEnabled() {
+    return compiledRowMappersEnabled;
+  }
+
+  /**
+   * @since 3.4.7
+   */
+  public void setCompiledRowMappersEnabled(boolean compiledRowMappersEnabled) {
+    this.compiledRowMappersEnabled = compiledRowMappersEnabled;
+  }
+
+  /**
+   * @since 3.4.7
+   */
+  public CompiledRowMapperCache getCompiledRowMapperCache() {
+    return compiledRowMapperCache;
+  }
+
+  /**
+   * @since 3.4.7
+   */
+  public CompiledParameterBinderCache getCompiledParameterBinderCache() {
+    return compiledParameterBinderCache;
+  }
+
+  /**
+   * @since 3.4.7
+   */
+  public boolean isForEachBulkBindingEnabled() {
+    return forEachBulkBindingEnabled;
+  }
+
+  /**
+   * @since 3.4.7
+   */
+  public void setForEachBulkBindingEnabled(boolean forEachBulkBindingEnabled) {
+    this.forEachBulkBindingEnabled = forEachBulkBindingEnabled;
+  }
+
+  /**
+   * @since 3.4.7
+   */
+  public boolean isDynamicContextReuseEnabled() {
+    return dynamicContextReuseEnabled;
+  }
+
+  /**
+   * @since 3.4.7
+   */
+  public void setDynamicContextReuseEnabled(boolean dynamicContextReuseEnabled) {
+    this.dynamicContextReuseEnabled = dynamicContextReuseEnabled;
+  }
+
+  /**
+   * @since 3.4.7
+   */
+  public boolean isCompiledParameterBindersEnabled() {
+    return compiledParameterBindersEnabled;
+  }
+
+  /**
+   * @since 3.4.7
+   */
+  public void setCompiledParameterBindersEnabled(boolean compiledParameterBindersEnabled) {
+    this.compiledParameterBindersEnabled = compiledParameterBindersEnabled;
+  }
+
+  /**
+   * @since 3.4.7
+   */
+  public boolean isParallelMapperParsingEnabled() {
+    return parallelMapperParsingEnabled;
+  }
+
+  /**
+   * @since 3.4.7
+   */
+  public void setParallelMapperParsingEnabled(boolean parallelMapperParsingEnabled) {
+    this.parallelMapperParsingEnabled = parallelMapperParsingEnabled;
+  }
+
+  /**
+   * @return the file mapper XML documents are loaded from and saved to, or null to always parse the mapper files
+   * @see org.apache.ibatis.builder.xml.XMLMapperSnapshot
+   * @since 3.4.7
+   */
+  public String getMapperSnapshotFile() {
+    return mapperSnapshotFile;
+  }
+
+  /**
+   * @since 3.4.7
+   */
+  public void setMapperSnapshotFile(String mapperSnapshotFile) {
+    this.mapperSnapshotFile = mapperSnapshotFile;
+  }
+
+  /**
+   * @since 3.4.7
+   */
+  public boolean isBatchStatementGroupingEnabled() {
+    return batchStatementGroupingEnabled;
+  }
+
+  /**
+   * @since 3.4.7
+   */
+  public void setBatchStatementGroupingEnabled(boolean batchStatementGroupingEnabled) {
+    this.batchStatementGroupingEnabled = batchStatementGroupingEnabled;
+  }
+
+  /**
+   * @return the rows one statement of a batch may hold before the batch is flushed, 0 for no limit
+   * @since 3.4.7
+   */
+  public int getBatchAutoFlushStatementRows() {
+    return batchAutoFlushStatementRows;
+  }
+
+  /**
+   * @since 3.4.7
+   */
+  public void setBatchAutoFlushStatementRows(int batchAutoFlushStatementRows) {
+    this.batchAutoFlushStatementRows = batchAutoFlushStatementRows;
+  }
+
+  /**
+   * @return the rows all statements of a batch may hold before the batch is flushed, 0 for no limit
+   * @since 3.4.7
+   */
+  public int getBatchAutoFlushPendingRows() {
+    return batchAutoFlushPendingRows;
+  }
+
+  /**
+   * @since 3.4.7
+   */
+  public void setBatchAutoFlushPendingRows(int batchAutoFlushPendingRows) {
+    this.batchAutoFlushPendingRows = batchAutoFlushPendingRows;
+  }
+
+  /**
+   * @return the estimated size of the parameter values a batch may hold before it is flushed, 0 for no limit
+   * @since 3.4.7
+   */
+  public long getBatchAutoFlushPendingBytes() {
+    return batchAutoFlushPendingBytes;
+  }
+
+  /**
+   * @since 3.4.7
+   */
+  public void setBatchAutoFlushPendingBytes(long batchAutoFlushPendingBytes) {
+    this.batchAutoFlushPendingBytes = batchAutoFlushPendingBytes;
+  }
+
+  /**
+   * @since 3.4.7
+   */
+  public boolean isBatchAutoFlushDropParameters() {
+    return batchAutoFlushDropParameters;
+  }
+
+  /**
+   * @since 3.4.7
+   */
+  public void setBatchAutoFlushDropParameters(boolean batchAutoFlushDropParameters) {
+    this.batchAutoFlushDropParameters = batchAutoFlushDropParameters;
+  }
+
+  /**
+   * @return the rows a single row insert of a batch is rewritten to take, 0 to leave inserts as they are
+   * @since 3.4.7
+   */
+  public int getBatchInsertRewriteRows() {
+    return batchInsertRewriteRows;
+  }
+
+  /**
+   * @since 3.4.7
+   */
+  public void setBatchInsertRewriteRows(int batchInsertRewriteRows) {
+    this.batchInsertRewriteRows = batchInsertRewriteRows;
+  }
+
+  /**
+   * @return the number of threads of the default executor of mapper methods returning a CompletableFuture
+   * @since 3.4.7
+   */
+  public int getAsyncMapperThreads() {
+    return asyncMapperExecutor.getThreads();
+  }
+
+  /**
+   * Sets the number of threads of the default executor, resizing it if it was already created.
+   *
+   * @since 3.4.7
+   */
+  public void setAsyncMapperThreads(int asyncMapperThreads) {
+    asyncMapperExecutor.setThreads(asyncMapperThreads);
+  }
+
+  /**
+   * Returns the executor that mapper methods returning a CompletableFuture run on. Use
+   * {@link AsyncMapperExecutor#setExecutor} to run them on another executor than the default pool.
+   *
+   * @since 3.4.7
+   */
+  public AsyncMapperExecutor getAsyncMapperExecutor() {
+    return asyncMapperExecutor;
+  }
+
   public String getDatabaseId() {
     return databaseId;
   }
@@ -15,6 +15,8 @@
  */
 package org.apache.ibatis.builder;
 
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.InputStream;
 import java.io.StringReader;
 import java.math.RoundingMode;
@@ -30,6 +32,7 @@ import java.util.Set;
 import org.apache.ibatis.builder.mapper.CustomMapper;
 import org.apache.ibatis.builder.typehandler.CustomIntegerTypeHandler;
 import org.apache.ibatis.builder.xml.XMLConfigBuilder;
+import org.apache.ibatis.builder.xml.XMLMapperSnapshot;
 import org.apache.ibatis.datasource.unpooled.UnpooledDataSource;
 import org.apache.ibatis.domain.blog.Author;
 import org.apache.ibatis.domain.blog.Blog;
@@ -66,6 +69,7 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.fail;
 
 public class XmlConfigBuilderTest {
 
@@ -301,4 +305,101 @@ public class XmlConfigBuilderTest {
       .hasMessageContaining("The properties element cannot specify both a URL and a resource based property file reference.  Please specify one or the other.");
   }
 
+  @Test
+  public void shouldRegisterMappersInOrderWhenParsingInParallel() {
+    Configuration sequential = parseMappers("parallelMapperParsingEnabled", "false");
+    Configuration parallel = parseMappers("parallelMapperParsingEnabled", "true");
+
+    assertTrue(parallel.isParallelMapperParsingEnabled());
+    assertThat(parallel.getMappedStatementNames()).isEqualTo(sequential.getMappedStatementNames());
+    assertThat(parallel.getResultMapNames()).isEqualTo(sequential.getResultMapNames());
+    assertThat(parallel.getCacheNames()).isEqualTo(sequential.getCacheNames());
+    assertThat(parallel.getIncompleteStatements()).isEmpty();
+    assertTrue(parallel.isResourceLoaded("org/apache/ibatis/builder/BlogMapper.xml"));
+  }
+
+  @Test
+  public void shouldReportMissingMapperResourceWhenParsingInParallel() {
+    final String MAPPER_CONFIG = "<?xml version=\"1.0\" encoding=\"UTF-8\" ?>\n"
+            + "<!DOCTYPE configuration PUBLIC \"-//mybatis.org//DTD Config 3.0//EN\" \"http://mybatis.org/dtd/mybatis-3-config.dtd\">\n"
+            + "<configuration>\n"
+            + "  <settings>\n"
+            + "    <setting name=\"parallelMapperParsingEnabled\" value=\"true\"/>\n"
+            + "  </settings>\n"
+            + "  <mappers>\n"
+            + "    <mapper resource=\"org/apache/ibatis/builder/AuthorMapper.xml\"/>\n"
+            + "    <mapper resource=\"a/b/c/MissingMapper.xml\"/>\n"
+            + "  </mappers>\n"
+            + "</configuration>\n";
+
+    XMLConfigBuilder builder = new XMLConfigBuilder(new StringReader(MAPPER_CONFIG));
+    try {
+      builder.parse();
+      fail();
+    } catch (BuilderException e) {
+      assertThat(e.getMessage()).contains("Could not find resource a/b/c/MissingMapper.xml");
+    }
+  }
+
+  @Test
+  public void shouldBuildSameConfigurationFromMapperSnapshot() throws Exception {
+    File snapshotFile = File.createTempFile("mappers", ".snapshot");
+    try {
+      assertTrue(snapshotFile.delete());
+      Configuration parsed = parseMappers("mapperSnapshotFile", snapshotFile.getPath());
+      assertTrue(snapshotFile.isFile());
+      long saved = snapshotFile.lastModified();
+      Configuration loaded = parseMappers("mapperSnapshotFile", snapshotFile.getPath());
+
+      assertThat(loaded.getMappedStatementNames()).isEqualTo(parsed.getMappedStatementNames());
+      assertThat(loaded.getResultMapNames()).isEqualTo(parsed.getResultMapNames());
+      assertThat(loaded.getIncompleteStatements()).isEmpty();
+      String statement = "org.apache.ibatis.domain.blog.mappers.BlogMapper.selectBlogWithPostsUsingSubSelect";
+      assertThat(loaded.getMappedStatement(statement).getBoundSql(1).getSql())
+          .isEqualTo(parsed.getMappedStatement(statement).getBoundSql(1).getSql());
+      // nothing changed, so the snapshot is not written again
+      assertThat(snapshotFile.lastModified()).isEqualTo(saved);
+    } finally {
+      snapshotFile.delete();
+    }
+  }
+
+  @Test
+  public void shouldRebuildUnreadableMapperSnapshot() throws Exception {
+    File snapshotFile = File.createTempFile("mappers", ".snapshot");
+    try {
+      FileOutputStream out = new FileOutputStream(snapshotFile);
+      out.write("not a snapshot".getBytes("UTF-8"));
+      out.close();
+      Configuration configuration = parseMappers("mapperSnapshotFile", snapshotFile.getPath());
+
+      assertTrue(configuration.hasStatement("org.apache.ibatis.domain.blog.mappers.AuthorMapper.selectAllAuthors"));
+      assertThat(XMLMapperSnapshot.open(snapshotFile).contains("org/apache/ibatis/builder/AuthorMapper.xml", false)).isTrue();
+    } finally {
+      snapshotFile.delete();
+    }
+  }
+
+  private static Configuration parseMappers(String setting, String value) {
+    final String MAPPER_CONFIG = "<?xml version=\"1.0\" encoding=\"UTF-8\" ?>\n"
+            + "<!DOCTYPE configuration PUBLIC \"-//mybatis.org//DTD Config 3.0//EN\" \"http://mybatis.org/dtd/mybatis-3-config.dtd\">\n"
+            + "<configuration>\n"
+            + "  <settings>\n"
+            + "    <setting name=\"" + setting + "\" value=\"" + value + "\"/>\n"
+            + "  </settings>\n"
+            + "  <typeAliases>\n"
+            + "    <package name=\"org.apache.ibatis.domain.blog\"/>\n"
+            + "  </typeAliases>\n"
+            + "  <mappers>\n"
+            + "    <mapper resource=\"org/apache/ibatis/builder/BlogMapper.xml\"/>\n"
+            + "    <mapper resource=\"org/apache/ibatis/builder/AuthorMapper.xml\"/>\n"
+            + "    <mapper class=\"org.apache.ibatis.builder.CachedAuthorMapper\"/>\n"
+            + "    <mapper url=\"file:./src/test/java/org/apache/ibatis/builder/NestedBlogMapper.xml\"/>\n"
+            + "    <package name=\"org.apache.ibatis.builder.mapper\"/>\n"
+            + "  </mappers>\n"
+            + "</configuration>\n";
+
+    return new XMLConfigBuilder(new StringReader(MAPPER_CONFIG)).parse();
+  }
+
 }
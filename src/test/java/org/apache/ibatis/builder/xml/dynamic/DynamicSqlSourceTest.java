@@ -16,28 +16,40 @@
 package org.apache.ibatis.builder.xml.dynamic;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.io.IOException;
 import java.io.Reader;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
 import org.apache.ibatis.BaseDataTest;
+import org.apache.ibatis.builder.BuilderException;
 import org.apache.ibatis.io.Resources;
 import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.SqlSource;
 import org.apache.ibatis.scripting.xmltags.ChooseSqlNode;
+import org.apache.ibatis.scripting.xmltags.DynamicContext;
 import org.apache.ibatis.scripting.xmltags.DynamicSqlSource;
 import org.apache.ibatis.scripting.xmltags.ForEachSqlNode;
 import org.apache.ibatis.scripting.xmltags.IfSqlNode;
 import org.apache.ibatis.scripting.xmltags.MixedSqlNode;
 import org.apache.ibatis.scripting.xmltags.SetSqlNode;
+import org.apache.ibatis.scripting.xmltags.TrimSqlNode;
 import org.apache.ibatis.scripting.xmltags.SqlNode;
 import org.apache.ibatis.scripting.xmltags.TextSqlNode;
 import org.apache.ibatis.scripting.xmltags.WhereSqlNode;
+import org.apache.ibatis.scripting.xmltags.XMLLanguageDriver;
 import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.session.SqlSessionFactory;
 import org.apache.ibatis.session.SqlSessionFactoryBuilder;
@@ -364,6 +376,219 @@ public class DynamicSqlSourceTest extends BaseDataTest {
     assertEquals("__frch_u_0", boundSql.getParameterMappings().get(3).getProperty());
   }
 
+  @Test
+  public void shouldReuseParameterMappingsOfTheSameShape() throws Exception {
+    DynamicSqlSource source = createDynamicSqlSource(
+        new TextSqlNode("SELECT * FROM BLOG WHERE ID in"),
+        new ForEachSqlNode(new Configuration(), mixedContents(new TextSqlNode("#{item}")), "list", null, "item", "(", ")", ","));
+    BoundSql first = source.getBoundSql(Collections.singletonMap("list", Arrays.asList(1, 2)));
+    BoundSql second = source.getBoundSql(Collections.singletonMap("list", Arrays.asList(3, 4)));
+    BoundSql third = source.getBoundSql(Collections.singletonMap("list", Arrays.asList(5, 6, 7)));
+    assertEquals(first.getSql(), second.getSql());
+    assertSame(first.getParameterMappings(), second.getParameterMappings());
+    assertEquals(Integer.valueOf(4), second.getAdditionalParameter("__frch_item_1"));
+    assertEquals("SELECT * FROM BLOG WHERE ID in (  ? , ? , ? )", third.getSql());
+    assertEquals(3, third.getParameterMappings().size());
+  }
+
+  @Test
+  public void shouldReparseWhenAdditionalParameterTypesChange() throws Exception {
+    DynamicSqlSource source = createDynamicSqlSource(
+        new TextSqlNode("SELECT * FROM BLOG WHERE ID in"),
+        new ForEachSqlNode(new Configuration(), mixedContents(new TextSqlNode("#{item}")), "list", null, "item", "(", ")", ","));
+    BoundSql integers = source.getBoundSql(Collections.singletonMap("list", Arrays.asList(1, 2)));
+    BoundSql strings = source.getBoundSql(Collections.singletonMap("list", Arrays.asList("1", "2")));
+    assertNotSame(integers.getParameterMappings(), strings.getParameterMappings());
+    assertEquals(Integer.class, integers.getParameterMappings().get(0).getJavaType());
+    assertEquals(String.class, strings.getParameterMappings().get(0).getJavaType());
+  }
+
+  @Test
+  public void shouldBindForEachElementsAsOneList() throws Exception {
+    DynamicSqlSource source = createDynamicSqlSource(
+        new TextSqlNode("SELECT * FROM BLOG WHERE ID in"),
+        new ForEachSqlNode(bulkBindingConfiguration(), mixedContents(new TextSqlNode("#{item} + #{i}")), "list", "i", "item", "(", ")", ","));
+    BoundSql boundSql = source.getBoundSql(Collections.singletonMap("list", Arrays.asList(10, 20, 30)));
+    assertEquals("SELECT * FROM BLOG WHERE ID in (  ? + ? , ? + ? , ? + ? )", boundSql.getSql());
+    assertEquals(6, boundSql.getParameterMappings().size());
+    assertEquals("__frch_i_0.0", boundSql.getParameterMappings().get(1).getProperty());
+    assertEquals("__frch_item_0.2", boundSql.getParameterMappings().get(4).getProperty());
+    assertEquals(Integer.class, boundSql.getParameterMappings().get(4).getJavaType());
+    assertEquals(Integer.valueOf(30), boundSql.getAdditionalParameter("__frch_item_0.2"));
+    assertEquals(Integer.valueOf(2), boundSql.getAdditionalParameter("__frch_i_0.2"));
+    assertEquals(3, ((Map<?, ?>) boundSql.getAdditionalParameter("__frch_item_0")).size());
+    assertFalse(boundSql.hasAdditionalParameter("__frch_item_1"));
+  }
+
+  @Test
+  public void shouldReadBulkBoundElementsFromTheCollection() throws Exception {
+    DynamicSqlSource source = createDynamicSqlSource(
+        new TextSqlNode("SELECT * FROM BLOG WHERE ID in"),
+        new ForEachSqlNode(bulkBindingConfiguration(), mixedContents(new TextSqlNode("#{item}")), "list", null, "item", "(", ")", ",", "4"));
+    List<Integer> list = new ArrayList<Integer>(Arrays.asList(10, 20, 30));
+    BoundSql boundSql = source.getBoundSql(Collections.singletonMap("list", list));
+    assertEquals("SELECT * FROM BLOG WHERE ID in (  ? , ? , ? , ? )", boundSql.getSql());
+    // the padded slot repeats the last element
+    assertEquals(Integer.valueOf(30), boundSql.getAdditionalParameter("__frch_item_0.3"));
+    list.set(1, 21);
+    assertEquals(Integer.valueOf(21), boundSql.getAdditionalParameter("__frch_item_0.1"));
+  }
+
+  @Test
+  public void shouldBindTheEntriesOfAMapInBulk() throws Exception {
+    DynamicSqlSource source = createDynamicSqlSource(
+        new TextSqlNode("SELECT * FROM BLOG WHERE"),
+        new ForEachSqlNode(bulkBindingConfiguration(), mixedContents(new TextSqlNode("${key} = #{value}")), "map", "key", "value", "(", ")", " AND "));
+    Map<String, Integer> map = new LinkedHashMap<String, Integer>();
+    map.put("A", 1);
+    map.put("B", 2);
+    BoundSql boundSql = source.getBoundSql(Collections.singletonMap("map", map));
+    assertEquals("SELECT * FROM BLOG WHERE (  A = ?  AND  B = ? )", boundSql.getSql());
+    assertEquals(Integer.valueOf(2), boundSql.getAdditionalParameter("__frch_value_0.1"));
+    assertEquals("B", boundSql.getAdditionalParameter("__frch_key_0.1"));
+  }
+
+  @Test
+  public void shouldBindForEachElementPropertiesOfBeanParameter() throws Exception {
+    DynamicSqlSource source = createDynamicSqlSource(
+        new TextSqlNode("SELECT * FROM BLOG WHERE ID in"),
+        new ForEachSqlNode(bulkBindingConfiguration(), mixedContents(new TextSqlNode("#{b.id}")), "beans", null, "b", "(", ")", ","));
+    BeanList parameter = new BeanList();
+    parameter.beans = Arrays.asList(new Bean("a"), new Bean("b"));
+    BoundSql boundSql = source.getBoundSql(parameter);
+    assertEquals("SELECT * FROM BLOG WHERE ID in (  ? , ? )", boundSql.getSql());
+    assertEquals("__frch_b_0.1.id", boundSql.getParameterMappings().get(1).getProperty());
+    assertEquals(String.class, boundSql.getParameterMappings().get(1).getJavaType());
+    assertEquals("b", boundSql.getAdditionalParameter("__frch_b_0.1.id"));
+  }
+
+  @Test(expected = BuilderException.class)
+  public void shouldRejectDescendingPaddingBuckets() {
+    new ForEachSqlNode(new Configuration(), mixedContents(new TextSqlNode("#{item}")), "list", null, "item", "(", ")", ",", "4,2");
+  }
+
+  @Test
+  public void shouldTrimOverridesRegardlessOfCase() throws Exception {
+    DynamicSqlSource source = createDynamicSqlSource(
+        new TextSqlNode("UPDATE BLOG"),
+        new TrimSqlNode(new Configuration(), mixedContents(new TextSqlNode(" \n and Name = ?, Title = ? ,\t ")),
+            "SET", "AND |OR ", null, ","));
+    assertEquals("UPDATE BLOG SET  Name = ?, Title = ?", source.getBoundSql(null).getSql());
+  }
+
+  @Test
+  public void shouldNotOverlapPrefixAndSuffixOverrides() throws Exception {
+    DynamicSqlSource source = createDynamicSqlSource(
+        new TrimSqlNode(new Configuration(), mixedContents(new TextSqlNode(" , ")), "(", ",", ")", ","));
+    assertEquals("(  )", source.getBoundSql(null).getSql());
+  }
+
+  @Test
+  public void shouldFoldAdjacentStaticTextLikeSeparateFragments() throws Exception {
+    Configuration configuration = new Configuration();
+    String script = "<script>SELECT * FROM BLOG <!-- comment --> WHERE ID <![CDATA[<]]> 3"
+        + "<where><if test='true'>AND NAME <![CDATA[<>]]>'a'</if></where>"
+        + "<foreach collection='list' item='item' open='AND ID IN (' separator=',' close=')'>#{item}<![CDATA[+1]]></foreach>"
+        + "</script>";
+    SqlSource source = new XMLLanguageDriver().createSqlSource(configuration, script, null);
+    BoundSql boundSql = source.getBoundSql(Collections.singletonMap("list", Arrays.asList(1, 2)));
+    assertEquals("SELECT * FROM BLOG  WHERE ID  <  3 WHERE  NAME <>'a' AND ID IN (  ? +1 , ? +1 )", boundSql.getSql());
+  }
+
+  @Test
+  public void shouldRenderTheSameWhenReusingContexts() throws Exception {
+    String script = "<script>SELECT * FROM BLOG<where><if test='name != null'>AND NAME = #{name}</if>"
+        + "<foreach collection='ids' item='id' open='AND (' separator='OR' close=')'><trim prefixOverrides='AND'>AND ID = #{id}</trim></foreach>"
+        + "</where></script>";
+    Configuration reusing = new Configuration();
+    reusing.setDynamicContextReuseEnabled(true);
+    SqlSource reused = new XMLLanguageDriver().createSqlSource(reusing, script, null);
+    SqlSource created = new XMLLanguageDriver().createSqlSource(new Configuration(), script, null);
+    Map<String, Object> many = new HashMap<String, Object>();
+    many.put("name", "a");
+    many.put("ids", Arrays.asList(1, 2, 3));
+    Map<String, Object> one = Collections.<String, Object>singletonMap("ids", Collections.singletonList(4));
+    for (Map<String, Object> parameter : Arrays.asList(many, one, many)) {
+      BoundSql expected = created.getBoundSql(parameter);
+      BoundSql actual = reused.getBoundSql(parameter);
+      assertEquals(expected.getSql(), actual.getSql());
+      assertEquals(expected.getParameterMappings().size(), actual.getParameterMappings().size());
+      assertEquals(expected.hasAdditionalParameter("__frch_id_2"), actual.hasAdditionalParameter("__frch_id_2"));
+    }
+    assertFalse(reused.getBoundSql(one).hasAdditionalParameter("__frch_id_1"));
+  }
+
+  @Test
+  public void shouldRenderAnotherStatementWhileReusingContexts() throws Exception {
+    final Configuration configuration = new Configuration();
+    configuration.setDynamicContextReuseEnabled(true);
+    final SqlSource inner = new XMLLanguageDriver().createSqlSource(configuration,
+        "<script>SELECT ID FROM AUTHOR<where><if test='_parameter != null'>NAME = #{_parameter}</if></where></script>", String.class);
+    DynamicSqlSource outer = new DynamicSqlSource(configuration, mixedContents(new TextSqlNode("SELECT * FROM BLOG WHERE AUTHOR_ID IN ("),
+        new SqlNode() {
+          @Override
+          public boolean apply(DynamicContext context) {
+            context.appendSql(inner.getBoundSql("a").getSql());
+            return true;
+          }
+        }, new TextSqlNode(") AND TITLE = #{title}")));
+    BoundSql boundSql = outer.getBoundSql(Collections.singletonMap("title", "t"));
+    assertEquals("SELECT * FROM BLOG WHERE AUTHOR_ID IN ( SELECT ID FROM AUTHOR WHERE NAME = ? ) AND TITLE = ?", boundSql.getSql());
+    assertEquals(1, boundSql.getParameterMappings().size());
+    assertEquals("title", boundSql.getParameterMappings().get(0).getProperty());
+  }
+
+  private Configuration bulkBindingConfiguration() {
+    Configuration configuration = new Configuration();
+    configuration.setForEachBulkBindingEnabled(true);
+    return configuration;
+  }
+
+  @Test
+  public void shouldReparseWhenNestedParameterTypesChange() throws Exception {
+    DynamicSqlSource source = createDynamicSqlSource(
+        new TextSqlNode("SELECT * FROM BLOG WHERE ID in"),
+        new ForEachSqlNode(new Configuration(), mixedContents(new TextSqlNode("#{item.id}")), "list", null, "item", "(", ")", ","));
+    BoundSql integers = source.getBoundSql(Collections.singletonMap("list", Arrays.asList(Collections.singletonMap("id", 1))));
+    BoundSql strings = source.getBoundSql(Collections.singletonMap("list", Arrays.asList(Collections.singletonMap("id", "1"))));
+    assertEquals(Integer.class, integers.getParameterMappings().get(0).getJavaType());
+    assertEquals(String.class, strings.getParameterMappings().get(0).getJavaType());
+  }
+
+  @Test
+  public void shouldNotShareModifiableParameterMappings() throws Exception {
+    DynamicSqlSource source = createDynamicSqlSource(
+        new TextSqlNode("SELECT * FROM BLOG WHERE ID in"),
+        new ForEachSqlNode(new Configuration(), mixedContents(new TextSqlNode("#{item}")), "list", null, "item", "(", ")", ","));
+    BoundSql first = source.getBoundSql(Collections.singletonMap("list", Arrays.asList(1, 2)));
+    try {
+      first.getParameterMappings().remove(1);
+      fail("The mappings of a cached shape must not be modifiable");
+    } catch (UnsupportedOperationException e) {
+      // expected
+    }
+    assertEquals(2, source.getBoundSql(Collections.singletonMap("list", Arrays.asList(3, 4))).getParameterMappings().size());
+  }
+
+  @Test
+  public void shouldNotCacheShapesRenderedWithSubstitutedText() throws Exception {
+    DynamicSqlSource source = createDynamicSqlSource(
+        new TextSqlNode("SELECT * FROM BLOG WHERE ID = #{id}"),
+        new IfSqlNode(mixedContents(new TextSqlNode("ORDER BY ${column}")), "column != null"));
+    Map<String, Object> parameter = new HashMap<String, Object>();
+    parameter.put("id", 1);
+    for (int i = 0; i < 100; i++) {
+      parameter.put("column", "column" + i);
+      BoundSql boundSql = source.getBoundSql(parameter);
+      assertEquals("SELECT * FROM BLOG WHERE ID = ? ORDER BY column" + i, boundSql.getSql());
+      assertFalse(source.ownsParameterMappings(boundSql.getParameterMappings()));
+    }
+    parameter.put("column", null);
+    BoundSql first = source.getBoundSql(parameter);
+    assertSame(first.getParameterMappings(), source.getBoundSql(parameter).getParameterMappings());
+    assertTrue(source.ownsParameterMappings(first.getParameterMappings()));
+  }
+
   private DynamicSqlSource createDynamicSqlSource(SqlNode... contents) throws IOException, SQLException {
     createBlogDataSource();
     final String resource = "org/apache/ibatis/builder/MapperConfig.xml";
@@ -387,6 +612,13 @@ public class DynamicSqlSourceTest extends BaseDataTest {
     Assert.assertEquals("id=", sql);
   }
 
+  public static class BeanList {
+    private List<Bean> beans;
+    public List<Bean> getBeans() {
+      return beans;
+    }
+  }
+
   public static class Bean {
     public String id;
     public Bean(String property) {
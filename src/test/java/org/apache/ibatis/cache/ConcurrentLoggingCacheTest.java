@@ -0,0 +1,53 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import static org.junit.Assert.*;
+
+import org.apache.ibatis.cache.decorators.ConcurrentLoggingCache;
+import org.apache.ibatis.cache.impl.ConcurrentLruCache;
+import org.junit.Test;
+
+public class ConcurrentLoggingCacheTest {
+
+  @Test
+  public void shouldCountEveryRequestAndHitUnderConcurrentAccess() throws Exception {
+    final ConcurrentLoggingCache cache = new ConcurrentLoggingCache(new ConcurrentLruCache("default"));
+    for (int i = 0; i < 10; i++) {
+      cache.putObject(i, i);
+    }
+    Thread[] threads = new Thread[8];
+    for (int t = 0; t < threads.length; t++) {
+      threads[t] = new Thread() {
+        @Override
+        public void run() {
+          // keys 0 to 9 hit, keys 10 to 19 miss
+          for (int i = 0; i < 10000; i++) {
+            cache.getObject(i % 20);
+          }
+        }
+      };
+      threads[t].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertEquals(80000, cache.getRequests());
+    assertEquals(40000, cache.getHits());
+    assertEquals(0.5, cache.getHitRatio(), 0);
+  }
+
+}
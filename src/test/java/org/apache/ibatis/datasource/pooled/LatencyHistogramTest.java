@@ -0,0 +1,71 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.pooled;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+  @Test
+  public void shouldReturnZeroWhenEmpty() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    assertEquals(0, histogram.getCount());
+    assertEquals(0, histogram.getPercentile(0.99));
+  }
+
+  @Test
+  public void shouldEstimatePercentilesWithinBucketPrecision() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (int i = 1; i <= 1000; i++) {
+      histogram.record(TimeUnit.MICROSECONDS.toNanos(i));
+    }
+    assertEquals(1000, histogram.getCount());
+    assertEquals(TimeUnit.MICROSECONDS.toNanos(1000), histogram.getMax());
+    assertWithin(500, histogram.getPercentile(0.5));
+    assertWithin(990, histogram.getPercentile(0.99));
+    assertEquals(TimeUnit.MICROSECONDS.toNanos(1000), histogram.getPercentile(1.0));
+  }
+
+  @Test
+  public void shouldMapEveryValueIntoABucketCoveringIt() {
+    for (long micros = 0; micros < 1000000; micros = micros * 3 / 2 + 1) {
+      int index = LatencyHistogram.indexOf(micros);
+      assertTrue(LatencyHistogram.upperBoundOf(index) >= micros);
+      assertTrue(index == 0 || LatencyHistogram.upperBoundOf(index - 1) < micros);
+    }
+    LatencyHistogram.indexOf(Long.MAX_VALUE / 1000);
+  }
+
+  @Test
+  public void shouldForgetValuesOnReset() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    histogram.record(1000);
+    histogram.reset();
+    assertEquals(0, histogram.getCount());
+    assertEquals(0, histogram.getMax());
+  }
+
+  private static void assertWithin(long expectedMicros, long actualNanos) {
+    long actualMicros = TimeUnit.NANOSECONDS.toMicros(actualNanos);
+    assertTrue("expected about " + expectedMicros + " but was " + actualMicros,
+        actualMicros >= expectedMicros && actualMicros <= expectedMicros * 1.125);
+  }
+
+}
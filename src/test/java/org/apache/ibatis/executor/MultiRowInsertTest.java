@@ -0,0 +1,46 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class MultiRowInsertTest {
+
+  @Test
+  public void shouldRepeatValuesList() {
+    MultiRowInsert insert = MultiRowInsert.forStatement(null, "insert into t (a, b) values (?, lower(?))", 2);
+    assertEquals("insert into t (a, b) values (?, lower(?)), (?, lower(?)), (?, lower(?))", insert.getSql(3));
+    assertEquals("insert into t (a, b) values (?, lower(?))", insert.getSql(1));
+  }
+
+  @Test
+  public void shouldIgnoreKeywordsInQuotesAndColumnLists() {
+    MultiRowInsert insert = MultiRowInsert.forStatement(null, "INSERT INTO t (\"values\", b) VALUES(?, 'values (?)')", 1);
+    assertEquals("INSERT INTO t (\"values\", b) VALUES(?, 'values (?)'), (?, 'values (?)')", insert.getSql(2));
+  }
+
+  @Test
+  public void shouldNotRewriteOtherInserts() {
+    assertNull(MultiRowInsert.forStatement(null, "insert into t (a) select ? from dual", 1));
+    assertNull(MultiRowInsert.forStatement(null, "insert into t (a) values (?), (?)", 2));
+    assertNull(MultiRowInsert.forStatement(null, "insert into t (a) values (?) on duplicate key update a = ?", 2));
+    assertNull(MultiRowInsert.forStatement(null, "insert into t (a) values (?", 1));
+    assertNull(MultiRowInsert.forStatement(null, "insert into t (a) values (1)", 1));
+  }
+
+}
@@ -0,0 +1,116 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor.resultset;
+
+import static org.junit.Assert.*;
+
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import javax.sql.DataSource;
+
+import org.apache.ibatis.BaseDataTest;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.type.JdbcType;
+import org.apache.ibatis.type.StringTypeHandler;
+import org.apache.ibatis.type.TypeHandler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ResultSetWrapperTest {
+
+  private Connection conn;
+  private Statement stmt;
+  private ResultSetWrapper rsw;
+
+  @Before
+  public void setUp() throws Exception {
+    DataSource ds = BaseDataTest.createBlogDataSource();
+    conn = ds.getConnection();
+    stmt = conn.createStatement();
+    ResultSet rs = stmt.executeQuery("select id, username, email as \"mail\", username as \"USERNAME2\" from author where id = 101");
+    rsw = new ResultSetWrapper(rs, new Configuration());
+    assertTrue(rs.next());
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    rsw.getResultSet().close();
+    stmt.close();
+    conn.close();
+  }
+
+  @Test
+  public void shouldResolveColumnIndexesIgnoringCase() {
+    assertEquals(1, rsw.getColumnIndex("ID"));
+    assertEquals(1, rsw.getColumnIndex("id"));
+    assertEquals(2, rsw.getColumnIndex("Username"));
+    assertEquals(3, rsw.getColumnIndex("mail"));
+    assertEquals(3, rsw.getColumnIndex("MAIL"));
+    assertEquals(4, rsw.getColumnIndex("username2"));
+    assertEquals(0, rsw.getColumnIndex("password"));
+    assertEquals(0, rsw.getColumnIndex(null));
+  }
+
+  @Test
+  public void shouldReadBuiltInTypeHandlersByIndex() throws Exception {
+    assertEquals("jim", rsw.getResult(new StringTypeHandler(), "username"));
+    assertEquals("jim@ibatis.apache.org", rsw.getResult(new StringTypeHandler(), "mail"));
+  }
+
+  @Test
+  public void shouldReadCustomTypeHandlersByLabel() throws Exception {
+    assertEquals("jim", rsw.getResult(new LabelOnlyTypeHandler(), "username"));
+  }
+
+  @Test
+  public void shouldFallBackToLabelForUnknownColumns() throws Exception {
+    try {
+      rsw.getResult(new StringTypeHandler(), "password");
+      fail("Should have failed for a column that is not part of the result set");
+    } catch (Exception e) {
+      assertTrue(e.getMessage().contains("password"));
+    }
+  }
+
+  private static class LabelOnlyTypeHandler implements TypeHandler<String> {
+    @Override
+    public void setParameter(PreparedStatement ps, int i, String parameter, JdbcType jdbcType) throws SQLException {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public String getResult(ResultSet rs, String columnName) throws SQLException {
+      return rs.getString(columnName);
+    }
+
+    @Override
+    public String getResult(ResultSet rs, int columnIndex) throws SQLException {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public String getResult(CallableStatement cs, int columnIndex) throws SQLException {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+}
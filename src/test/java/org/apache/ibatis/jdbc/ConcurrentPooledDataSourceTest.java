@@ -0,0 +1,462 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.jdbc;
+
+import static org.junit.Assert.*;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.ibatis.BaseDataTest;
+import org.apache.ibatis.datasource.pooled.ConcurrentPooledDataSource;
+import org.apache.ibatis.datasource.pooled.PoolMetrics;
+import org.apache.ibatis.datasource.pooled.PoolMetricsListener;
+import org.apache.ibatis.datasource.pooled.PooledDataSource;
+import org.apache.ibatis.datasource.unpooled.UnpooledDataSource;
+import org.apache.ibatis.io.Resources;
+import org.hsqldb.jdbc.JDBCConnection;
+import org.junit.Test;
+
+public class ConcurrentPooledDataSourceTest extends BaseDataTest {
+
+  @Test
+  public void shouldProperlyMaintainPoolOf3ActiveAnd2IdleConnections() throws Exception {
+    ConcurrentPooledDataSource ds = createConcurrentPooledDataSource(JPETSTORE_PROPERTIES);
+    try {
+      runScript(ds, JPETSTORE_DDL);
+      ds.setDefaultAutoCommit(false);
+      ds.setDriverProperties(new Properties() {
+        {
+          setProperty("username", "sa");
+          setProperty("password", "");
+        }
+      });
+      ds.setPoolMaximumActiveConnections(3);
+      ds.setPoolMaximumIdleConnections(2);
+      ds.setPoolMaximumCheckoutTime(10000);
+      ds.setPoolPingConnectionsNotUsedFor(1);
+      ds.setPoolPingEnabled(true);
+      ds.setPoolPingQuery("SELECT * FROM PRODUCT");
+      ds.setPoolTimeToWait(10000);
+      ds.setLogWriter(null);
+      List<Connection> connections = new ArrayList<Connection>();
+      for (int i = 0; i < 3; i++) {
+        connections.add(ds.getConnection());
+      }
+      assertEquals(3, ds.getPoolState().getActiveConnectionCount());
+      for (Connection c : connections) {
+        c.close();
+      }
+      assertEquals(2, ds.getPoolState().getIdleConnectionCount());
+      assertEquals(0, ds.getPoolState().getActiveConnectionCount());
+      assertEquals(4, ds.getPoolState().getRequestCount());
+      assertEquals(0, ds.getPoolState().getBadConnectionCount());
+      assertEquals(0, ds.getPoolState().getHadToWaitCount());
+      assertEquals(0, ds.getPoolState().getClaimedOverdueConnectionCount());
+      assertNotNull(ds.getPoolState().toString());
+    } finally {
+      ds.forceCloseAll();
+    }
+  }
+
+  @Test
+  public void shouldReuseTheConnectionLastReturnedByTheSameThread() throws Exception {
+    ConcurrentPooledDataSource ds = createConcurrentPooledDataSource(JPETSTORE_PROPERTIES);
+    try {
+      Connection first = ds.getConnection();
+      Connection second = ds.getConnection();
+      Connection real = PooledDataSource.unwrapConnection(second);
+      first.close();
+      second.close();
+      Connection again = ds.getConnection();
+      assertSame(real, PooledDataSource.unwrapConnection(again));
+      again.close();
+    } finally {
+      ds.forceCloseAll();
+    }
+  }
+
+  @Test
+  public void shouldInvalidateHandleAfterClose() throws Exception {
+    ConcurrentPooledDataSource ds = createConcurrentPooledDataSource(JPETSTORE_PROPERTIES);
+    try {
+      Connection c = ds.getConnection();
+      c.close();
+      c.toString();
+      try {
+        c.getAutoCommit();
+        fail("Closed handle should not be usable");
+      } catch (SQLException e) {
+        assertTrue(e.getMessage().contains("Connection is invalid"));
+      }
+    } finally {
+      ds.forceCloseAll();
+    }
+  }
+
+  @Test
+  public void shouldHandOffReturnedConnectionToWaitingThread() throws Exception {
+    final ConcurrentPooledDataSource ds = createConcurrentPooledDataSource(JPETSTORE_PROPERTIES);
+    try {
+      ds.setPoolMaximumActiveConnections(1);
+      ds.setPoolTimeToWait(10000);
+      Connection held = ds.getConnection();
+      final CountDownLatch acquired = new CountDownLatch(1);
+      Thread waiter = new Thread() {
+        @Override
+        public void run() {
+          try {
+            Connection c = ds.getConnection();
+            acquired.countDown();
+            c.close();
+          } catch (SQLException e) {
+            // acquired stays at 1
+          }
+        }
+      };
+      waiter.start();
+      while (ds.getPoolState().getHadToWaitCount() == 0) {
+        Thread.sleep(10);
+      }
+      long start = System.currentTimeMillis();
+      held.close();
+      waiter.join();
+      assertEquals(0, acquired.getCount());
+      assertTrue(System.currentTimeMillis() - start < 5000);
+    } finally {
+      ds.forceCloseAll();
+    }
+  }
+
+  @Test
+  public void shouldServeManyThreadsWithoutExceedingMaximumActiveConnections() throws Exception {
+    final ConcurrentPooledDataSource ds = createConcurrentPooledDataSource(JPETSTORE_PROPERTIES);
+    try {
+      ds.setPoolMaximumActiveConnections(4);
+      ds.setPoolMaximumIdleConnections(4);
+      final AtomicInteger failures = new AtomicInteger();
+      Thread[] threads = new Thread[16];
+      for (int t = 0; t < threads.length; t++) {
+        threads[t] = new Thread() {
+          @Override
+          public void run() {
+            for (int i = 0; i < 50; i++) {
+              try {
+                Connection c = ds.getConnection();
+                try {
+                  executeQuery(c);
+                  if (ds.getPoolState().getActiveConnectionCount() > 4) {
+                    failures.incrementAndGet();
+                  }
+                } finally {
+                  c.close();
+                }
+              } catch (SQLException e) {
+                failures.incrementAndGet();
+              }
+            }
+          }
+        };
+        threads[t].start();
+      }
+      for (Thread thread : threads) {
+        thread.join();
+      }
+      assertEquals(0, failures.get());
+      assertEquals(800, ds.getPoolState().getRequestCount());
+      assertEquals(0, ds.getPoolState().getActiveConnectionCount());
+      assertTrue(ds.getPoolState().getIdleConnectionCount() <= 4);
+    } finally {
+      ds.forceCloseAll();
+    }
+  }
+
+  @Test
+  public void shouldKeepMinimumIdleConnectionsWarm() throws Exception {
+    ConcurrentPooledDataSource ds = createConcurrentPooledDataSource(JPETSTORE_PROPERTIES);
+    try {
+      ds.setPoolMinimumIdleConnections(2);
+      ds.setPoolHousekeepingInterval(20);
+      waitForIdleConnections(ds, 2);
+      assertEquals(0, ds.getPoolState().getActiveConnectionCount());
+    } finally {
+      ds.setPoolHousekeepingInterval(0);
+      ds.forceCloseAll();
+    }
+  }
+
+  @Test
+  public void shouldEvictConnectionsIdleForTooLong() throws Exception {
+    ConcurrentPooledDataSource ds = createConcurrentPooledDataSource(JPETSTORE_PROPERTIES);
+    try {
+      ds.setPoolMaximumIdleTime(50);
+      List<Connection> connections = new ArrayList<Connection>();
+      for (int i = 0; i < 3; i++) {
+        connections.add(ds.getConnection());
+      }
+      for (Connection c : connections) {
+        c.close();
+      }
+      assertEquals(3, ds.getPoolState().getIdleConnectionCount());
+      ds.setPoolHousekeepingInterval(20);
+      waitForIdleConnections(ds, 0);
+    } finally {
+      ds.setPoolHousekeepingInterval(0);
+      ds.forceCloseAll();
+    }
+  }
+
+  @Test
+  public void shouldRetireConnectionsPastMaximumLifetime() throws Exception {
+    ConcurrentPooledDataSource ds = createConcurrentPooledDataSource(JPETSTORE_PROPERTIES);
+    try {
+      ds.setPoolMaximumConnectionLifetime(50);
+      Connection c = ds.getConnection();
+      Connection real = PooledDataSource.unwrapConnection(c);
+      Thread.sleep(100);
+      c.close();
+      assertEquals(0, ds.getPoolState().getIdleConnectionCount());
+      assertTrue(real.isClosed());
+    } finally {
+      ds.forceCloseAll();
+    }
+  }
+
+  @Test
+  public void shouldValidateIdleConnectionsInTheBackground() throws Exception {
+    ConcurrentPooledDataSource ds = createConcurrentPooledDataSource(JPETSTORE_PROPERTIES);
+    try {
+      ds.setPoolPingEnabled(true);
+      ds.setPoolPingQuery("select 1 from INFORMATION_SCHEMA.SYSTEM_USERS");
+      Connection c = ds.getConnection();
+      Connection real = PooledDataSource.unwrapConnection(c);
+      c.close();
+      real.close();
+      ds.setPoolHousekeepingInterval(20);
+      waitForIdleConnections(ds, 0);
+      assertEquals(1, ds.getPoolState().getBadConnectionCount());
+    } finally {
+      ds.setPoolHousekeepingInterval(0);
+      ds.forceCloseAll();
+    }
+  }
+
+  private static void waitForIdleConnections(PooledDataSource ds, int expected) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 5000;
+    while (ds.getPoolState().getIdleConnectionCount() != expected && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertEquals(expected, ds.getPoolState().getIdleConnectionCount());
+  }
+
+  @Test
+  public void shouldRecordPoolMetrics() throws Exception {
+    ConcurrentPooledDataSource ds = createConcurrentPooledDataSource(JPETSTORE_PROPERTIES);
+    try {
+      assertNull(ds.getPoolMetrics());
+      ds.setPoolMetricsEnabled(true);
+      final AtomicInteger checkouts = new AtomicInteger();
+      ds.addPoolMetricsListener(new PoolMetricsListener() {
+        @Override
+        public void connectionCreated(long creationNanos) {
+        }
+
+        @Override
+        public void connectionCheckedOut(long waitNanos) {
+          checkouts.incrementAndGet();
+        }
+
+        @Override
+        public void connectionReturned(long usageNanos) {
+        }
+
+        @Override
+        public void connectionWaitTimedOut() {
+        }
+      });
+      Connection first = ds.getConnection();
+      Connection second = ds.getConnection();
+      PoolMetrics metrics = ds.getPoolMetrics();
+      assertEquals(2, metrics.getActiveConnectionCount());
+      assertEquals(0, metrics.getPendingRequestCount());
+      first.close();
+      second.close();
+      ds.getConnection().close();
+      assertEquals(3, checkouts.get());
+      assertEquals(3, metrics.getWaitTime().getCount());
+      assertEquals(3, metrics.getUsageTime().getCount());
+      assertEquals(2, metrics.getCreatedConnectionCount());
+      assertEquals(2, metrics.getCreationTime().getCount());
+      assertEquals(0, metrics.getTimedOutWaitCount());
+      assertTrue(metrics.getWaitTime().getPercentile(0.99) > 0);
+      assertNotNull(metrics.toString());
+    } finally {
+      ds.forceCloseAll();
+    }
+  }
+
+  @Test
+  public void shouldCountTimedOutWaits() throws Exception {
+    final ConcurrentPooledDataSource ds = createConcurrentPooledDataSource(JPETSTORE_PROPERTIES);
+    try {
+      ds.setPoolMaximumActiveConnections(1);
+      ds.setPoolTimeToWait(50);
+      ds.setPoolMaximumCheckoutTime(60000);
+      ds.setPoolMetricsEnabled(true);
+      Connection held = ds.getConnection();
+      Thread waiter = new Thread() {
+        @Override
+        public void run() {
+          try {
+            ds.getConnection().close();
+          } catch (SQLException e) {
+            // ignore
+          }
+        }
+      };
+      waiter.start();
+      long deadline = System.currentTimeMillis() + 5000;
+      while (ds.getPoolMetrics().getTimedOutWaitCount() == 0 && System.currentTimeMillis() < deadline) {
+        Thread.sleep(10);
+      }
+      assertTrue(ds.getPoolMetrics().getTimedOutWaitCount() > 0);
+      held.close();
+      waiter.join();
+    } finally {
+      ds.forceCloseAll();
+    }
+  }
+
+  @Test
+  public void shouldReusePreparedStatementsAcrossCheckouts() throws Exception {
+    ConcurrentPooledDataSource ds = createConcurrentPooledDataSource(JPETSTORE_PROPERTIES);
+    try {
+      ds.setPoolMaximumActiveConnections(1);
+      ds.setPoolPreparedStatementCacheSize(2);
+      Connection c = ds.getConnection();
+      PreparedStatement st = c.prepareStatement("select 1 from INFORMATION_SCHEMA.SYSTEM_USERS");
+      PreparedStatement real = st.unwrap(PreparedStatement.class);
+      st.close();
+      c.close();
+
+      c = ds.getConnection();
+      st = c.prepareStatement("select 1 from INFORMATION_SCHEMA.SYSTEM_USERS");
+      assertSame(real, st.unwrap(PreparedStatement.class));
+      st.close();
+      c.close();
+    } finally {
+      ds.forceCloseAll();
+    }
+  }
+
+  @Test(timeout = 10000)
+  public void shouldNotLoseSlotsToConnectionsThatFailToRollBack() throws Exception {
+    final AtomicBoolean failRollback = new AtomicBoolean();
+    Properties props = Resources.getResourceAsProperties(JPETSTORE_PROPERTIES);
+    UnpooledDataSource unpooled = new UnpooledDataSource(props.getProperty("driver"), props.getProperty("url"),
+        props.getProperty("username"), props.getProperty("password")) {
+      @Override
+      public Connection getConnection() throws SQLException {
+        final Connection real = super.getConnection();
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[] { Connection.class },
+            new InvocationHandler() {
+              @Override
+              public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                if ("rollback".equals(method.getName()) && failRollback.get()) {
+                  throw new SQLException("connection reset");
+                }
+                try {
+                  return method.invoke(real, args);
+                } catch (InvocationTargetException e) {
+                  throw e.getCause();
+                }
+              }
+            });
+      }
+    };
+    ConcurrentPooledDataSource ds = new ConcurrentPooledDataSource(unpooled);
+    ds.setPoolMaximumActiveConnections(1);
+    ds.setPoolMaximumCheckoutTime(60000);
+    try {
+      // on return
+      for (int i = 0; i < 3; i++) {
+        Connection c = ds.getConnection();
+        c.setAutoCommit(false);
+        failRollback.set(true);
+        c.close();
+        failRollback.set(false);
+      }
+      // on checkout, the idle connection is left without auto commit
+      Connection c = ds.getConnection();
+      c.setAutoCommit(false);
+      c.close();
+      failRollback.set(true);
+      try {
+        c = ds.getConnection();
+      } finally {
+        failRollback.set(false);
+      }
+      c.close();
+      c = ds.getConnection();
+      executeQuery(c);
+      c.close();
+      assertEquals(0, ds.getPoolState().getActiveConnectionCount());
+    } finally {
+      ds.forceCloseAll();
+    }
+  }
+
+  @Test
+  public void ShouldReturnRealConnection() throws Exception {
+    ConcurrentPooledDataSource ds = createConcurrentPooledDataSource(JPETSTORE_PROPERTIES);
+    Connection c = ds.getConnection();
+    JDBCConnection realConnection = (JDBCConnection) PooledDataSource.unwrapConnection(c);
+    c.close();
+    ds.forceCloseAll();
+  }
+
+  private static ConcurrentPooledDataSource createConcurrentPooledDataSource(String resource) throws Exception {
+    Properties props = Resources.getResourceAsProperties(resource);
+    ConcurrentPooledDataSource ds = new ConcurrentPooledDataSource();
+    ds.setDriver(props.getProperty("driver"));
+    ds.setUrl(props.getProperty("url"));
+    ds.setUsername(props.getProperty("username"));
+    ds.setPassword(props.getProperty("password"));
+    return ds;
+  }
+
+  private static void executeQuery(Connection con) throws SQLException {
+    PreparedStatement st = con.prepareStatement("select 1 from INFORMATION_SCHEMA.SYSTEM_USERS");
+    ResultSet rs = st.executeQuery();
+    while (rs.next()) {
+      assertEquals(1, rs.getInt(1));
+    }
+    rs.close();
+    st.close();
+  }
+}
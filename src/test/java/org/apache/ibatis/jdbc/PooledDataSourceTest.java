@@ -25,8 +25,11 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Properties;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.ibatis.BaseDataTest;
+import org.apache.ibatis.datasource.pooled.PoolMetrics;
+import org.apache.ibatis.datasource.pooled.PoolMetricsListener;
 import org.apache.ibatis.datasource.pooled.PooledDataSource;
 import org.hsqldb.jdbc.JDBCConnection;
 import org.junit.Ignore;
@@ -34,6 +37,8 @@ import org.junit.Test;
 
 public class PooledDataSourceTest extends BaseDataTest {
 
+  private static final String SELECT_USERS = "select 1 from INFORMATION_SCHEMA.SYSTEM_USERS";
+
   @Test
   public void shouldProperlyMaintainPoolOf3ActiveAnd2IdleConnections() throws Exception {
     PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
@@ -83,6 +88,255 @@ public class PooledDataSourceTest extends BaseDataTest {
     c.toString();
   }
   
+  @Test
+  public void shouldKeepMinimumIdleConnectionsWarm() throws Exception {
+    PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+    try {
+      ds.setPoolMinimumIdleConnections(2);
+      ds.setPoolHousekeepingInterval(20);
+      waitForIdleConnections(ds, 2);
+      assertEquals(0, ds.getPoolState().getActiveConnectionCount());
+    } finally {
+      ds.setPoolHousekeepingInterval(0);
+      ds.forceCloseAll();
+    }
+  }
+
+  @Test
+  public void shouldStopHousekeepingWhenClosed() throws Exception {
+    PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+    try {
+      ds.setPoolMinimumIdleConnections(2);
+      ds.setPoolHousekeepingInterval(20);
+      waitForIdleConnections(ds, 2);
+      ds.close();
+      assertEquals(0, ds.getPoolState().getIdleConnectionCount());
+      Thread.sleep(100);
+      assertEquals(0, ds.getPoolState().getIdleConnectionCount());
+    } finally {
+      ds.close();
+    }
+  }
+
+  @Test
+  public void shouldEvictConnectionsIdleForTooLong() throws Exception {
+    PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+    try {
+      ds.setPoolMaximumIdleTime(50);
+      List<Connection> connections = new ArrayList<Connection>();
+      for (int i = 0; i < 3; i++) {
+        connections.add(ds.getConnection());
+      }
+      for (Connection c : connections) {
+        c.close();
+      }
+      assertEquals(3, ds.getPoolState().getIdleConnectionCount());
+      ds.setPoolHousekeepingInterval(20);
+      waitForIdleConnections(ds, 0);
+    } finally {
+      ds.setPoolHousekeepingInterval(0);
+      ds.forceCloseAll();
+    }
+  }
+
+  @Test
+  public void shouldRetireConnectionsPastMaximumLifetime() throws Exception {
+    PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+    try {
+      ds.setPoolMaximumConnectionLifetime(50);
+      Connection c = ds.getConnection();
+      Connection real = PooledDataSource.unwrapConnection(c);
+      Thread.sleep(100);
+      c.close();
+      assertEquals(0, ds.getPoolState().getIdleConnectionCount());
+      assertTrue(real.isClosed());
+    } finally {
+      ds.forceCloseAll();
+    }
+  }
+
+  @Test
+  public void shouldValidateIdleConnectionsInTheBackground() throws Exception {
+    PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+    try {
+      ds.setPoolPingEnabled(true);
+      ds.setPoolPingQuery("select 1 from INFORMATION_SCHEMA.SYSTEM_USERS");
+      Connection c = ds.getConnection();
+      Connection real = PooledDataSource.unwrapConnection(c);
+      c.close();
+      real.close();
+      ds.setPoolHousekeepingInterval(20);
+      waitForIdleConnections(ds, 0);
+      assertEquals(1, ds.getPoolState().getBadConnectionCount());
+    } finally {
+      ds.setPoolHousekeepingInterval(0);
+      ds.forceCloseAll();
+    }
+  }
+
+  private static void waitForIdleConnections(PooledDataSource ds, int expected) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 5000;
+    while (ds.getPoolState().getIdleConnectionCount() != expected && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertEquals(expected, ds.getPoolState().getIdleConnectionCount());
+  }
+
+  @Test
+  public void shouldRecordPoolMetrics() throws Exception {
+    PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+    try {
+      assertNull(ds.getPoolMetrics());
+      ds.setPoolMetricsEnabled(true);
+      final AtomicInteger checkouts = new AtomicInteger();
+      ds.addPoolMetricsListener(new PoolMetricsListener() {
+        @Override
+        public void connectionCreated(long creationNanos) {
+        }
+
+        @Override
+        public void connectionCheckedOut(long waitNanos) {
+          checkouts.incrementAndGet();
+        }
+
+        @Override
+        public void connectionReturned(long usageNanos) {
+        }
+
+        @Override
+        public void connectionWaitTimedOut() {
+        }
+      });
+      Connection first = ds.getConnection();
+      Connection second = ds.getConnection();
+      PoolMetrics metrics = ds.getPoolMetrics();
+      assertEquals(2, metrics.getActiveConnectionCount());
+      assertEquals(0, metrics.getPendingRequestCount());
+      first.close();
+      second.close();
+      ds.getConnection().close();
+      assertEquals(3, checkouts.get());
+      assertEquals(3, metrics.getWaitTime().getCount());
+      assertEquals(3, metrics.getUsageTime().getCount());
+      assertEquals(2, metrics.getCreatedConnectionCount());
+      assertEquals(2, metrics.getCreationTime().getCount());
+      assertEquals(0, metrics.getTimedOutWaitCount());
+      assertTrue(metrics.getWaitTime().getPercentile(0.99) > 0);
+      assertNotNull(metrics.toString());
+    } finally {
+      ds.forceCloseAll();
+    }
+  }
+
+  @Test
+  public void shouldCountTimedOutWaits() throws Exception {
+    final PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+    try {
+      ds.setPoolMaximumActiveConnections(1);
+      ds.setPoolTimeToWait(50);
+      ds.setPoolMaximumCheckoutTime(60000);
+      ds.setPoolMetricsEnabled(true);
+      Connection held = ds.getConnection();
+      Thread waiter = new Thread() {
+        @Override
+        public void run() {
+          try {
+            ds.getConnection().close();
+          } catch (SQLException e) {
+            // ignore
+          }
+        }
+      };
+      waiter.start();
+      long deadline = System.currentTimeMillis() + 5000;
+      while (ds.getPoolMetrics().getTimedOutWaitCount() == 0 && System.currentTimeMillis() < deadline) {
+        Thread.sleep(10);
+      }
+      assertTrue(ds.getPoolMetrics().getTimedOutWaitCount() > 0);
+      held.close();
+      waiter.join();
+    } finally {
+      ds.forceCloseAll();
+    }
+  }
+
+  @Test
+  public void shouldReusePreparedStatementsAcrossCheckouts() throws Exception {
+    PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+    try {
+      ds.setPoolMaximumActiveConnections(1);
+      ds.setPoolPreparedStatementCacheSize(2);
+      Connection c = ds.getConnection();
+      PreparedStatement st = c.prepareStatement(SELECT_USERS);
+      PreparedStatement real = st.unwrap(PreparedStatement.class);
+      st.setFetchSize(5);
+      executeQuery(st);
+      st.close();
+      assertTrue(st.isClosed());
+      assertFalse(real.isClosed());
+      c.close();
+
+      c = ds.getConnection();
+      st = c.prepareStatement(SELECT_USERS);
+      assertSame(real, st.unwrap(PreparedStatement.class));
+      assertSame(c, st.getConnection());
+      assertEquals(0, st.getFetchSize());
+      executeQuery(st);
+      st.close();
+      c.close();
+    } finally {
+      ds.forceCloseAll();
+    }
+  }
+
+  @Test
+  public void shouldNotShareAPreparedStatementInUse() throws Exception {
+    PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+    try {
+      ds.setPoolPreparedStatementCacheSize(2);
+      Connection c = ds.getConnection();
+      PreparedStatement first = c.prepareStatement(SELECT_USERS);
+      PreparedStatement firstReal = first.unwrap(PreparedStatement.class);
+      PreparedStatement second = c.prepareStatement(SELECT_USERS);
+      PreparedStatement secondReal = second.unwrap(PreparedStatement.class);
+      assertNotSame(firstReal, secondReal);
+      PreparedStatement scrollable = c.prepareStatement(SELECT_USERS, ResultSet.TYPE_SCROLL_INSENSITIVE,
+          ResultSet.CONCUR_READ_ONLY);
+      PreparedStatement scrollableReal = scrollable.unwrap(PreparedStatement.class);
+      assertNotSame(firstReal, scrollableReal);
+      scrollable.close();
+      first.close();
+      second.close();
+      // only one of the two statements with the same key is kept
+      assertTrue(firstReal.isClosed());
+      assertFalse(secondReal.isClosed());
+      assertFalse(scrollableReal.isClosed());
+      c.close();
+    } finally {
+      ds.forceCloseAll();
+    }
+  }
+
+  @Test
+  public void shouldCloseLeastRecentlyUsedPreparedStatement() throws Exception {
+    PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+    try {
+      ds.setPoolPreparedStatementCacheSize(1);
+      Connection c = ds.getConnection();
+      PreparedStatement first = c.prepareStatement(SELECT_USERS);
+      PreparedStatement firstReal = first.unwrap(PreparedStatement.class);
+      first.close();
+      PreparedStatement second = c.prepareStatement(SELECT_USERS + " where 1 = 1");
+      PreparedStatement secondReal = second.unwrap(PreparedStatement.class);
+      second.close();
+      assertTrue(firstReal.isClosed());
+      assertFalse(secondReal.isClosed());
+      c.close();
+    } finally {
+      ds.forceCloseAll();
+    }
+  }
+
   @Test
   public void ShouldReturnRealConnection() throws Exception {
     PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
@@ -145,4 +399,12 @@ public class PooledDataSourceTest extends BaseDataTest {
     rs.close();
     st.close();
   }
+
+  private static void executeQuery(PreparedStatement st) throws SQLException {
+    ResultSet rs = st.executeQuery();
+    while (rs.next()) {
+      assertEquals(1, rs.getInt(1));
+    }
+    rs.close();
+  }
 }
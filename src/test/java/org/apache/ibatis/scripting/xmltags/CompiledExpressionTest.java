@@ -0,0 +1,147 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.scripting.xmltags;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import ognl.Ognl;
+
+import org.apache.ibatis.domain.blog.Author;
+import org.apache.ibatis.domain.blog.Section;
+import org.apache.ibatis.session.Configuration;
+import org.junit.Test;
+
+public class CompiledExpressionTest {
+
+  private static final String[] EXPRESSIONS = {
+      "username", "username != null", "username == null", "username == 'cbegin'", "username != \"norm\"",
+      "username != null and username != ''", "username == null or username.length() == 0",
+      "!(username == 'cbegin')", "not bio", "id", "id == 1", "id > 0", "id >= 1.0", "id lt 2", "id neq 1L",
+      "favouriteSection", "favouriteSection == 'NEWS'", "password", "password == null && id > 0",
+      "tags", "tags.size() > 1", "tags.isEmpty()", "!tags.isEmpty() and tags.size() lte 3", "tags.size",
+      "map.size", "map.isEmpty", "map.key", "map.key == 'value'", "map.missing == null", "map.key.length() > 3",
+      "_parameter != null", "_databaseId", "flag", "flag and id", "flag or username", "text", "text and flag",
+      "number", "number == 1", "big == 1", "name == 'a'", "name == 'ab'", "missing", "missing.name", "id + 1",
+      "tags[0]", "@java.lang.Math@max(1, 2)", "username.isEmpty() ? 1 : 2"
+  };
+
+  @Test
+  public void shouldEvaluateLikeOgnl() throws Exception {
+    for (Object root : roots()) {
+      for (String expression : EXPRESSIONS) {
+        assertEquals(expression, ognlValue(expression, root), compiledValue(expression, root));
+      }
+    }
+  }
+
+  @Test
+  public void shouldEvaluateCommonTestsWithoutOgnl() {
+    Author author = new Author(1, "cbegin", null, "cbegin@apache.org", "N/A", Section.NEWS);
+    Object bindings = new DynamicContext(new Configuration(), author).getBindings();
+    assertEquals(Boolean.TRUE, CompiledExpression.compile("username != null and username != ''").getValue(bindings));
+    assertEquals(Boolean.TRUE, CompiledExpression.compile("password == null or password.length() == 0").getValue(bindings));
+    assertEquals(Boolean.FALSE, CompiledExpression.compile("id > 1 and favouriteSection != null").getValue(bindings));
+    assertEquals(Boolean.TRUE, CompiledExpression.compile("!_parameter.email.isEmpty()").getValue(bindings));
+  }
+
+  @Test
+  public void shouldCompileSupportedSubset() {
+    assertNotNull(CompiledExpression.compile("a != null and a.b.size() > 0 or !(c eq 'x')"));
+    assertNotNull(CompiledExpression.compile("a.b == 1.5 || a.isEmpty()"));
+    assertNull(CompiledExpression.compile("a + 1"));
+    assertNull(CompiledExpression.compile("a[0]"));
+    assertNull(CompiledExpression.compile("a == -1"));
+    assertNull(CompiledExpression.compile("a.indexOf('x') > 0"));
+    assertNull(CompiledExpression.compile("a in {'x', 'y'}"));
+    assertNull(CompiledExpression.compile("#this.a"));
+    assertNull(CompiledExpression.compile("a == 'it\\'s'"));
+    assertNull(CompiledExpression.compile("a == 010"));
+    assertNull(CompiledExpression.compile("a =="));
+    assertNull(CompiledExpression.compile("(a"));
+  }
+
+  @Test
+  public void shouldFallBackOnValuesOutsideOfTheSubset() {
+    Map<String, Object> root = new HashMap<String, Object>();
+    root.put("name", "a");
+    try {
+      // OGNL reads 'a' as a Character and converts both sides to numbers
+      CompiledExpression.compile("name == 'a'").getValue(root);
+      fail();
+    } catch (CompiledExpression.FallbackException e) {
+      // expected
+    }
+  }
+
+  private Object[] roots() {
+    Author author = new Author(1, "cbegin", null, "cbegin@apache.org", "N/A", Section.NEWS);
+    Map<String, Object> map = new HashMap<String, Object>();
+    map.put("key", "value");
+    Map<String, Object> parameter = new HashMap<String, Object>();
+    parameter.put("username", "");
+    parameter.put("id", 0L);
+    parameter.put("tags", Arrays.asList("a", "b"));
+    parameter.put("map", map);
+    parameter.put("flag", Boolean.TRUE);
+    parameter.put("text", "true");
+    parameter.put("number", 1.0d);
+    parameter.put("big", new java.math.BigDecimal("1.0"));
+    parameter.put("name", "ab");
+    Configuration configuration = new Configuration();
+    return new Object[] {
+        author,
+        parameter,
+        new DynamicContext(configuration, author).getBindings(),
+        new DynamicContext(configuration, parameter).getBindings(),
+        new DynamicContext(configuration, Collections.singletonMap("tags", Collections.emptyList())).getBindings(),
+        new DynamicContext(configuration, null).getBindings()
+    };
+  }
+
+  private static Object ognlValue(String expression, Object root) {
+    try {
+      Map<Object, OgnlClassResolver> context = Ognl.createDefaultContext(root, new OgnlClassResolver());
+      return Ognl.getValue(Ognl.parseExpression(expression), context, root);
+    } catch (Exception e) {
+      return e.getClass();
+    }
+  }
+
+  private static Object compiledValue(String expression, Object root) {
+    CompiledExpression compiled = CompiledExpression.compile(expression);
+    try {
+      if (compiled != null) {
+        try {
+          return compiled.getValue(root);
+        } catch (CompiledExpression.FallbackException e) {
+          // evaluated by OGNL below
+        }
+      }
+      return ognlValue(expression, root);
+    } catch (Exception e) {
+      return e.getClass();
+    }
+  }
+
+}
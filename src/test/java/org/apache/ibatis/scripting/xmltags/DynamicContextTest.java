@@ -0,0 +1,40 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.scripting.xmltags;
+
+import static org.junit.Assert.assertEquals;
+
+import org.apache.ibatis.session.Configuration;
+import org.junit.Test;
+
+public class DynamicContextTest {
+
+  @Test
+  public void shouldForwardToTheDelegateUnlessOverridden() {
+    DynamicContext root = new DynamicContext(new Configuration(), null);
+    DynamicContext wrapper = new DynamicContext(root) {
+    };
+    wrapper.bind("name", "value");
+    wrapper.appendSql("SELECT * FROM BLOG");
+    assertEquals("value", root.getBindings().get("name"));
+    assertEquals("value", wrapper.getBindings().get("name"));
+    assertEquals("SELECT * FROM BLOG", wrapper.getSql());
+    assertEquals(root.getSqlLength(), wrapper.getSqlLength());
+    assertEquals(0, wrapper.getUniqueNumber());
+    assertEquals(1, root.getUniqueNumber());
+  }
+
+}
@@ -0,0 +1,133 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.submitted.batch_auto_flush;
+
+import static org.junit.Assert.*;
+
+import java.io.Reader;
+import java.sql.Connection;
+import java.util.List;
+
+import org.apache.ibatis.executor.BatchResult;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.jdbc.ScriptRunner;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BatchAutoFlushTest {
+
+  private SqlSessionFactory sqlSessionFactory;
+
+  @Before
+  public void setUp() throws Exception {
+    // create an SqlSessionFactory
+    Reader reader = Resources.getResourceAsReader("org/apache/ibatis/submitted/batch_auto_flush/mybatis-config.xml");
+    sqlSessionFactory = new SqlSessionFactoryBuilder().build(reader);
+    reader.close();
+
+    // populate in-memory database
+    SqlSession session = sqlSessionFactory.openSession();
+    Connection conn = session.getConnection();
+    reader = Resources.getResourceAsReader("org/apache/ibatis/submitted/batch_auto_flush/CreateDB.sql");
+    ScriptRunner runner = new ScriptRunner(conn);
+    runner.setLogWriter(null);
+    runner.runScript(reader);
+    conn.close();
+    reader.close();
+    session.close();
+  }
+
+  @Test
+  public void shouldFlushWhenStatementIsFull() {
+    SqlSession sqlSession = sqlSessionFactory.openSession(ExecutorType.BATCH);
+    try {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      for (int id = 1; id <= 7; id++) {
+        mapper.insertItem(id, "Item" + id);
+      }
+      List<BatchResult> results = sqlSession.flushStatements();
+      assertEquals(3, results.size());
+      assertEquals(3, results.get(0).getUpdateCounts().length);
+      assertEquals(3, results.get(1).getUpdateCounts().length);
+      assertEquals(1, results.get(2).getUpdateCounts().length);
+      // only the parameters of automatically flushed statements are dropped
+      assertTrue(results.get(0).getParameterObjects().isEmpty());
+      assertEquals(1, results.get(2).getParameterObjects().size());
+      sqlSession.commit();
+      assertEquals(7, mapper.countItems());
+    } finally {
+      sqlSession.close();
+    }
+  }
+
+  @Test
+  public void shouldFlushWhenPendingRowsOrBytesAreReached() {
+    Configuration configuration = sqlSessionFactory.getConfiguration();
+    configuration.setBatchAutoFlushStatementRows(0);
+    configuration.setBatchAutoFlushDropParameters(false);
+    configuration.setBatchAutoFlushPendingRows(4);
+    SqlSession sqlSession = sqlSessionFactory.openSession(ExecutorType.BATCH);
+    try {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      for (int id = 1; id <= 5; id++) {
+        mapper.insertItem(id, "Item" + id);
+      }
+      List<BatchResult> results = sqlSession.flushStatements();
+      assertEquals(2, results.size());
+      assertEquals(4, results.get(0).getParameterObjects().size());
+
+      configuration.setBatchAutoFlushPendingRows(0);
+      configuration.setBatchAutoFlushPendingBytes(1000);
+      StringBuilder name = new StringBuilder();
+      for (int i = 0; i < 100; i++) {
+        name.append('x');
+      }
+      for (int id = 11; id <= 15; id++) {
+        mapper.insertItem(id, name.toString());
+      }
+      results = sqlSession.flushStatements();
+      // each row is estimated at well over 200 bytes
+      assertEquals(2, results.size());
+      assertEquals(4, results.get(0).getUpdateCounts().length);
+      sqlSession.commit();
+      assertEquals(10, mapper.countItems());
+    } finally {
+      sqlSession.close();
+    }
+  }
+
+  @Test
+  public void shouldDiscardAutomaticallyFlushedResultsOnRollback() {
+    SqlSession sqlSession = sqlSessionFactory.openSession(ExecutorType.BATCH);
+    try {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      for (int id = 1; id <= 4; id++) {
+        mapper.insertItem(id, "Item" + id);
+      }
+      sqlSession.rollback();
+      assertTrue(sqlSession.flushStatements().isEmpty());
+      assertEquals(0, mapper.countItems());
+    } finally {
+      sqlSession.close();
+    }
+  }
+
+}
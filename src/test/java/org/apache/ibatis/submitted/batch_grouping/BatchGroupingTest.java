@@ -0,0 +1,123 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.submitted.batch_grouping;
+
+import static org.junit.Assert.*;
+
+import java.io.Reader;
+import java.sql.Connection;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.ibatis.executor.BatchResult;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.jdbc.ScriptRunner;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BatchGroupingTest {
+
+  private SqlSessionFactory sqlSessionFactory;
+
+  @Before
+  public void setUp() throws Exception {
+    // create an SqlSessionFactory
+    Reader reader = Resources.getResourceAsReader("org/apache/ibatis/submitted/batch_grouping/mybatis-config.xml");
+    sqlSessionFactory = new SqlSessionFactoryBuilder().build(reader);
+    reader.close();
+
+    // populate in-memory database
+    SqlSession session = sqlSessionFactory.openSession();
+    Connection conn = session.getConnection();
+    reader = Resources.getResourceAsReader("org/apache/ibatis/submitted/batch_grouping/CreateDB.sql");
+    ScriptRunner runner = new ScriptRunner(conn);
+    runner.setLogWriter(null);
+    runner.runScript(reader);
+    conn.close();
+    reader.close();
+    session.close();
+  }
+
+  @Test
+  public void shouldGroupInterleavedStatements() {
+    SqlSession sqlSession = sqlSessionFactory.openSession(ExecutorType.BATCH);
+    try {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      for (int order = 1; order <= 3; order++) {
+        mapper.insertOrder(order);
+        mapper.insertLine(order, 1);
+        mapper.insertLine(order, 2);
+      }
+      List<BatchResult> results = sqlSession.flushStatements();
+      assertEquals(2, results.size());
+      assertTrue(results.get(0).getMappedStatement().getId().endsWith(".insertOrder"));
+      assertEquals(3, results.get(0).getParameterObjects().size());
+      assertTrue(results.get(1).getMappedStatement().getId().endsWith(".insertLine"));
+      assertEquals(6, results.get(1).getUpdateCounts().length);
+      sqlSession.commit();
+      assertEquals(6, mapper.countLines());
+    } finally {
+      sqlSession.close();
+    }
+  }
+
+  @Test
+  public void shouldStartNewGroupsAfterFlush() {
+    SqlSession sqlSession = sqlSessionFactory.openSession(ExecutorType.BATCH);
+    try {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      mapper.insertOrder(1);
+      mapper.insertLine(1, 1);
+      assertEquals(2, sqlSession.flushStatements().size());
+      mapper.insertLine(1, 2);
+      mapper.insertOrder(2);
+      mapper.insertLine(1, 3);
+      List<BatchResult> results = sqlSession.flushStatements();
+      assertEquals(2, results.size());
+      assertTrue(results.get(0).getMappedStatement().getId().endsWith(".insertLine"));
+      assertEquals(2, results.get(0).getParameterObjects().size());
+      sqlSession.rollback();
+    } finally {
+      sqlSession.close();
+    }
+  }
+
+  @Test
+  public void shouldKeepCallOrderWithoutGrouping() {
+    sqlSessionFactory.getConfiguration().setBatchStatementGroupingEnabled(false);
+    SqlSession sqlSession = sqlSessionFactory.openSession(ExecutorType.BATCH);
+    try {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      for (int order = 1; order <= 2; order++) {
+        mapper.insertOrder(order);
+        mapper.insertLine(order, 1);
+      }
+      List<BatchResult> results = sqlSession.flushStatements();
+      assertEquals(4, results.size());
+      for (BatchResult result : results) {
+        assertEquals(Arrays.asList(1), Arrays.asList(result.getUpdateCounts().length));
+      }
+      sqlSession.rollback();
+    } finally {
+      sqlSession.close();
+    }
+  }
+
+}
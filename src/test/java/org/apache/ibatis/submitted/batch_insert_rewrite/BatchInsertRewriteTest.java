@@ -0,0 +1,133 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.submitted.batch_insert_rewrite;
+
+import static org.junit.Assert.*;
+
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.ibatis.executor.BatchResult;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.jdbc.ScriptRunner;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BatchInsertRewriteTest {
+
+  private SqlSessionFactory sqlSessionFactory;
+
+  @Before
+  public void setUp() throws Exception {
+    // create an SqlSessionFactory
+    Reader reader = Resources.getResourceAsReader("org/apache/ibatis/submitted/batch_insert_rewrite/mybatis-config.xml");
+    sqlSessionFactory = new SqlSessionFactoryBuilder().build(reader);
+    reader.close();
+
+    // populate in-memory database
+    SqlSession session = sqlSessionFactory.openSession();
+    Connection conn = session.getConnection();
+    reader = Resources.getResourceAsReader("org/apache/ibatis/submitted/batch_insert_rewrite/CreateDB.sql");
+    ScriptRunner runner = new ScriptRunner(conn);
+    runner.setLogWriter(null);
+    runner.runScript(reader);
+    conn.close();
+    reader.close();
+    session.close();
+  }
+
+  @Test
+  public void shouldInsertRowsWithMultiRowStatements() {
+    SqlSession sqlSession = sqlSessionFactory.openSession(ExecutorType.BATCH);
+    try {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      List<Item> items = new ArrayList<Item>();
+      for (int i = 1; i <= 7; i++) {
+        Item item = new Item("Item" + i, new BigDecimal(i + ".25"));
+        items.add(item);
+        mapper.insertItem(item);
+      }
+      List<BatchResult> results = sqlSession.flushStatements();
+      assertEquals(1, results.size());
+      assertArrayEquals(new int[] { 1, 1, 1, 1, 1, 1, 1 }, results.get(0).getUpdateCounts());
+      assertEquals(7, results.get(0).getParameterObjects().size());
+      sqlSession.commit();
+
+      List<Item> inserted = mapper.selectItems();
+      assertEquals(7, inserted.size());
+      for (int i = 0; i < 7; i++) {
+        assertEquals("Item" + (i + 1), inserted.get(i).getName());
+        assertEquals(new BigDecimal((i + 1) + ".25"), inserted.get(i).getPrice());
+        assertEquals(inserted.get(i).getId(), items.get(i).getId());
+      }
+    } finally {
+      sqlSession.close();
+    }
+  }
+
+  @Test
+  public void shouldInsertTheValuesEachRowWasAddedWith() {
+    SqlSession sqlSession = sqlSessionFactory.openSession(ExecutorType.BATCH);
+    try {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      // the same parameter object is changed for every row before the rows are executed
+      Item item = new Item();
+      for (int i = 1; i <= 5; i++) {
+        item.setName("Item" + i);
+        item.setPrice(new BigDecimal(i + ".50"));
+        mapper.insertItem(item);
+      }
+      List<BatchResult> results = sqlSession.flushStatements();
+      assertEquals(1, results.size());
+      assertArrayEquals(new int[] { 1, 1, 1, 1, 1 }, results.get(0).getUpdateCounts());
+      sqlSession.commit();
+
+      List<Item> inserted = mapper.selectItems();
+      assertEquals(5, inserted.size());
+      for (int i = 0; i < 5; i++) {
+        assertEquals("Item" + (i + 1), inserted.get(i).getName());
+        assertEquals(new BigDecimal((i + 1) + ".50"), inserted.get(i).getPrice());
+      }
+    } finally {
+      sqlSession.close();
+    }
+  }
+
+  @Test
+  public void shouldBatchInsertsThatCannotBeRewritten() {
+    SqlSession sqlSession = sqlSessionFactory.openSession(ExecutorType.BATCH);
+    try {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      mapper.insertItemFromSelect(new Item("Item1", BigDecimal.ONE));
+      mapper.insertItemFromSelect(new Item("Item2", BigDecimal.TEN));
+      List<BatchResult> results = sqlSession.flushStatements();
+      assertEquals(1, results.size());
+      assertArrayEquals(new int[] { 1, 1 }, results.get(0).getUpdateCounts());
+      sqlSession.commit();
+      assertEquals(2, mapper.selectItems().size());
+    } finally {
+      sqlSession.close();
+    }
+  }
+
+}
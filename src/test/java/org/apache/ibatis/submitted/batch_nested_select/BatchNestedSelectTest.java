@@ -0,0 +1,205 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.submitted.batch_nested_select;
+
+import static org.junit.Assert.*;
+
+import java.io.Reader;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.executor.resultset.ResultSetHandler;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.jdbc.ScriptRunner;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ResultContext;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.apache.ibatis.transaction.jdbc.JdbcTransaction;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class BatchNestedSelectTest {
+
+  private static SqlSessionFactory sqlSessionFactory;
+
+  @BeforeClass
+  public static void setUp() throws Exception {
+    // create an SqlSessionFactory
+    Reader reader = Resources.getResourceAsReader("org/apache/ibatis/submitted/batch_nested_select/mybatis-config.xml");
+    sqlSessionFactory = new SqlSessionFactoryBuilder().build(reader);
+    reader.close();
+
+    // populate in-memory database
+    SqlSession session = sqlSessionFactory.openSession();
+    Connection conn = session.getConnection();
+    reader = Resources.getResourceAsReader("org/apache/ibatis/submitted/batch_nested_select/CreateDB.sql");
+    ScriptRunner runner = new ScriptRunner(conn);
+    runner.setLogWriter(null);
+    runner.runScript(reader);
+    conn.close();
+    reader.close();
+    session.close();
+  }
+
+  @Before
+  public void resetCounter() {
+    QueryCounter.reset();
+  }
+
+  @Test
+  public void shouldLoadCollectionsInBatches() {
+    SqlSession sqlSession = sqlSessionFactory.openSession();
+    try {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      List<Parent> parents = mapper.getParents();
+      assertEquals(5, parents.size());
+      assertEquals(2, parents.get(0).getChildren().size());
+      assertEquals("c1", parents.get(0).getChildren().get(0).getName());
+      assertEquals(1, parents.get(1).getChildren().size());
+      assertTrue(parents.get(2).getChildren().isEmpty());
+      assertEquals(1, parents.get(3).getChildren().size());
+      assertEquals(3, parents.get(4).getChildren().size());
+      assertEquals("c7", parents.get(4).getChildren().get(2).getName());
+      // 1 for the parents, 3 for 5 parents in batches of 2
+      assertEquals(4, QueryCounter.getCount());
+    } finally {
+      sqlSession.close();
+    }
+  }
+
+  @Test
+  public void shouldLoadAssociationsInOneBatch() {
+    SqlSession sqlSession = sqlSessionFactory.openSession();
+    try {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      List<Child> children = mapper.getChildren();
+      assertEquals(7, children.size());
+      assertEquals("p1", children.get(0).getParent().getName());
+      assertSame(children.get(0).getParent(), children.get(1).getParent());
+      assertEquals("p2", children.get(2).getParent().getName());
+      assertEquals("p5", children.get(6).getParent().getName());
+      assertEquals(2, QueryCounter.getCount());
+    } finally {
+      sqlSession.close();
+    }
+  }
+
+  @Test
+  public void shouldMatchChildrenByKeyValueRegardlessOfKeyType() {
+    SqlSession sqlSession = sqlSessionFactory.openSession();
+    try {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      // the DECIMAL parent key 1.00 must match the INTEGER foreign key 1
+      List<Parent> parents = mapper.getDecimalParents();
+      assertEquals(3, parents.size());
+      assertEquals(2, parents.get(0).getChildren().size());
+      assertEquals("c1", parents.get(0).getChildren().get(0).getName());
+      assertEquals(1, parents.get(1).getChildren().size());
+      assertTrue(parents.get(2).getChildren().isEmpty());
+      assertEquals(2, QueryCounter.getCount());
+    } finally {
+      sqlSession.close();
+    }
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void shouldLoadCollectionsOfRefCursorRows() throws Exception {
+    // HSQLDB has no ref cursors, the callable statement hands out a plain result set instead
+    SqlSession sqlSession = sqlSessionFactory.openSession();
+    try {
+      Configuration configuration = sqlSessionFactory.getConfiguration();
+      MappedStatement ms = configuration.getMappedStatement("org.apache.ibatis.submitted.batch_nested_select.Mapper.getParentsByCursor");
+      Map<String, Object> parameter = new HashMap<String, Object>();
+      BoundSql boundSql = ms.getBoundSql(parameter);
+      Connection conn = sqlSession.getConnection();
+      Statement query = conn.createStatement();
+      CallableStatement cs = refCursorStatement(query.executeQuery("select * from parent order by id"));
+      Executor executor = configuration.newExecutor(new JdbcTransaction(conn));
+      ResultSetHandler handler = configuration.newResultSetHandler(executor, ms, RowBounds.DEFAULT,
+          configuration.newParameterHandler(ms, parameter, boundSql), null, boundSql);
+      handler.handleResultSets(cs);
+      handler.handleOutputParameters(cs);
+      query.close();
+
+      List<Parent> parents = (List<Parent>) parameter.get("parents");
+      assertEquals(5, parents.size());
+      assertEquals(2, parents.get(0).getChildren().size());
+      assertTrue(parents.get(2).getChildren().isEmpty());
+      assertEquals(3, parents.get(4).getChildren().size());
+      // 3 for 5 parents in batches of 2
+      assertEquals(3, QueryCounter.getCount());
+    } finally {
+      sqlSession.close();
+    }
+  }
+
+  private static CallableStatement refCursorStatement(final ResultSet cursor) {
+    return (CallableStatement) Proxy.newProxyInstance(CallableStatement.class.getClassLoader(),
+        new Class<?>[] { CallableStatement.class }, new InvocationHandler() {
+          @Override
+          public Object invoke(Object proxy, Method method, Object[] args) {
+            if ("getObject".equals(method.getName())) {
+              return cursor;
+            } else if ("getUpdateCount".equals(method.getName())) {
+              return -1;
+            } else if ("getMoreResults".equals(method.getName())) {
+              return false;
+            }
+            return null;
+          }
+        });
+  }
+
+  @Test
+  public void shouldNotBatchWithCustomResultHandler() {
+    SqlSession sqlSession = sqlSessionFactory.openSession();
+    try {
+      final List<Object> parents = new ArrayList<Object>();
+      sqlSession.select("org.apache.ibatis.submitted.batch_nested_select.Mapper.getParents", new ResultHandler<Parent>() {
+        @Override
+        public void handleResult(ResultContext<? extends Parent> context) {
+          // children must be complete when the parent is handed out
+          Parent parent = context.getResultObject();
+          parents.add(parent.getName() + ":" + parent.getChildren().size());
+        }
+      });
+      assertEquals(Arrays.asList("p1:2", "p2:1", "p3:0", "p4:1", "p5:3"), parents);
+      assertEquals(6, QueryCounter.getCount());
+    } finally {
+      sqlSession.close();
+    }
+  }
+
+}
@@ -0,0 +1,44 @@
+--
+--    Copyright 2009-2018 the original author or authors.
+--
+--    Licensed under the Apache License, Version 2.0 (the "License");
+--    you may not use this file except in compliance with the License.
+--    You may obtain a copy of the License at
+--
+--       http://www.apache.org/licenses/LICENSE-2.0
+--
+--    Unless required by applicable law or agreed to in writing, software
+--    distributed under the License is distributed on an "AS IS" BASIS,
+--    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+--    See the License for the specific language governing permissions and
+--    limitations under the License.
+--
+
+drop table child if exists;
+drop table parent if exists;
+drop table decimal_parent if exists;
+
+create table parent (
+  id int,
+  name varchar(20)
+);
+
+create table decimal_parent (
+  id decimal(10, 2),
+  name varchar(20)
+);
+
+create table child (
+  id int,
+  parent_id int,
+  name varchar(20)
+);
+
+insert into parent (id, name) values
+(1, 'p1'), (2, 'p2'), (3, 'p3'), (4, 'p4'), (5, 'p5');
+
+insert into decimal_parent (id, name) values
+(1.00, 'p1'), (2.00, 'p2'), (3.00, 'p3');
+
+insert into child (id, parent_id, name) values
+(1, 1, 'c1'), (2, 1, 'c2'), (3, 2, 'c3'), (4, 4, 'c4'), (5, 5, 'c5'), (6, 5, 'c6'), (7, 5, 'c7');
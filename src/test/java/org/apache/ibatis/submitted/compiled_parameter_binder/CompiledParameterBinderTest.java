@@ -0,0 +1,209 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.submitted.compiled_parameter_binder;
+
+import static org.junit.Assert.*;
+
+import java.io.Reader;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.ibatis.binding.BindingException;
+import org.apache.ibatis.binding.MapperMethod.ParamMap;
+import org.apache.ibatis.exceptions.PersistenceException;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.jdbc.ScriptRunner;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.scripting.defaults.CompiledParameterBinder;
+import org.apache.ibatis.scripting.defaults.CompiledParameterBinderCache;
+import org.apache.ibatis.scripting.xmltags.DynamicSqlSource;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class CompiledParameterBinderTest {
+
+  private static SqlSessionFactory sqlSessionFactory;
+
+  @BeforeClass
+  public static void setUp() throws Exception {
+    // create an SqlSessionFactory
+    Reader reader = Resources.getResourceAsReader("org/apache/ibatis/submitted/compiled_parameter_binder/mybatis-config.xml");
+    sqlSessionFactory = new SqlSessionFactoryBuilder().build(reader);
+    reader.close();
+
+    // populate in-memory database
+    SqlSession session = sqlSessionFactory.openSession();
+    Connection conn = session.getConnection();
+    reader = Resources.getResourceAsReader("org/apache/ibatis/submitted/compiled_parameter_binder/CreateDB.sql");
+    ScriptRunner runner = new ScriptRunner(conn);
+    runner.setLogWriter(null);
+    runner.runScript(reader);
+    conn.close();
+    reader.close();
+    session.close();
+  }
+
+  @Test
+  public void shouldBindBeanPropertiesAndPaths() {
+    SqlSession sqlSession = sqlSessionFactory.openSession();
+    try {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      User user = new User();
+      user.setId(10);
+      user.setName("User10");
+      user.setAddress(new User.Address());
+      user.getAddress().setCity("Lima");
+      assertEquals(1, mapper.insertUser(user));
+      user.setId(11);
+      user.setAddress(null);
+      assertEquals(1, mapper.insertUser(user));
+      assertEquals("User10", mapper.getName(10));
+      assertEquals(1, mapper.countInCity(cityOf("Lima")));
+      assertNotNull(binder("insertUser", null, User.class));
+    } finally {
+      sqlSession.rollback();
+      sqlSession.close();
+    }
+  }
+
+  @Test
+  public void shouldBindParameterObjectAndParamMapEntries() {
+    SqlSession sqlSession = sqlSessionFactory.openSession();
+    try {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      assertEquals("User2", mapper.getName(2));
+      assertNull(mapper.getName(3));
+      assertEquals(Arrays.asList(1, 2), mapper.findIds("User%", 1));
+      assertEquals(Arrays.asList(2), mapper.findIds("User%", 2));
+      assertNotNull(binder("getName", null, Integer.class));
+      assertNotNull(binder("findIds", null, ParamMap.class));
+    } finally {
+      sqlSession.close();
+    }
+  }
+
+  @Test
+  public void shouldBindEachShapeOfDynamicStatement() {
+    SqlSession sqlSession = sqlSessionFactory.openSession();
+    try {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      for (int i = 0; i < 2; i++) {
+        assertEquals(Arrays.asList(1, 2), mapper.findByIdsAndName(Arrays.asList(1, 2, 3), null));
+        assertEquals(Arrays.asList(2), mapper.findByIdsAndName(Arrays.asList(1, 2), "User2"));
+        assertEquals(Arrays.asList(1), mapper.findByIdsAndName(Arrays.asList(1), null));
+      }
+      ParamMap<Object> parameter = new ParamMap<Object>();
+      parameter.put("list", Arrays.asList(1, 2));
+      parameter.put("name", "User2");
+      assertNotNull(binder("findByIdsAndName", parameter, ParamMap.class));
+      parameter.put("list", Arrays.asList(1));
+      parameter.put("name", null);
+      assertNotNull(binder("findByIdsAndName", parameter, ParamMap.class));
+    } finally {
+      sqlSession.close();
+    }
+  }
+
+  @Test
+  public void shouldNotCacheBindersForShapesThatAreNotCached() {
+    SqlSession sqlSession = sqlSessionFactory.openSession();
+    try {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      // every list size renders another shape, more than the statement caches
+      List<Integer> ids = new ArrayList<Integer>();
+      for (int i = 1; i <= 80; i++) {
+        ids.add(i);
+        assertEquals(i == 1 ? Arrays.asList(1) : Arrays.asList(1, 2), mapper.findByIds(ids));
+      }
+      MappedStatement statement = statement("findByIds");
+      DynamicSqlSource sqlSource = (DynamicSqlSource) statement.getSqlSource();
+      ParamMap<Object> parameter = new ParamMap<Object>();
+      parameter.put("list", Arrays.asList(1));
+      BoundSql cached = statement.getBoundSql(parameter);
+      assertTrue(sqlSource.ownsParameterMappings(cached.getParameterMappings()));
+      assertNotNull(binders().get(statement, cached.getParameterMappings(), ParamMap.class));
+      parameter.put("list", ids);
+      assertFalse(sqlSource.ownsParameterMappings(statement.getBoundSql(parameter).getParameterMappings()));
+    } finally {
+      sqlSession.close();
+    }
+  }
+
+  @Test
+  public void shouldStopCompilingOnceTheBindersOfAStatementAreFull() {
+    MappedStatement statement = statement("getName");
+    CompiledParameterBinderCache cache = new CompiledParameterBinderCache();
+    List<List<ParameterMapping>> mappingLists = new ArrayList<List<ParameterMapping>>();
+    for (int i = 0; i < 65; i++) {
+      mappingLists.add(new ArrayList<ParameterMapping>());
+    }
+    for (int i = 0; i < 64; i++) {
+      assertFalse(cache.isFull(statement));
+      cache.put(statement, mappingLists.get(i), Integer.class, null);
+    }
+    assertTrue(cache.isFull(statement));
+    cache.put(statement, mappingLists.get(64), Integer.class, null);
+    assertFalse(cache.contains(statement, mappingLists.get(64), Integer.class));
+    assertTrue(cache.contains(statement, mappingLists.get(0), Integer.class));
+    assertNull(cache.get(statement, mappingLists.get(0), Integer.class));
+  }
+
+  @Test
+  public void shouldReportMissingParamMapEntry() {
+    SqlSession sqlSession = sqlSessionFactory.openSession();
+    try {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      for (int i = 0; i < 2; i++) {
+        try {
+          mapper.findByMissingParam("User1");
+          fail();
+        } catch (PersistenceException e) {
+          assertTrue(e.getCause() instanceof BindingException);
+          assertTrue(e.getCause().getMessage().contains("Parameter 'missing' not found"));
+        }
+      }
+    } finally {
+      sqlSession.close();
+    }
+  }
+
+  private static User.Address cityOf(String city) {
+    User.Address address = new User.Address();
+    address.setCity(city);
+    return address;
+  }
+
+  private static CompiledParameterBinder binder(String name, Object parameter, Class<?> parameterType) {
+    MappedStatement statement = statement(name);
+    return binders().get(statement, statement.getBoundSql(parameter).getParameterMappings(), parameterType);
+  }
+
+  private static CompiledParameterBinderCache binders() {
+    return sqlSessionFactory.getConfiguration().getCompiledParameterBinderCache();
+  }
+
+  private static MappedStatement statement(String name) {
+    return sqlSessionFactory.getConfiguration().getMappedStatement(Mapper.class.getName() + "." + name);
+  }
+
+}
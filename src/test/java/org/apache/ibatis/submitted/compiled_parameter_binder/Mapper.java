@@ -0,0 +1,49 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.submitted.compiled_parameter_binder;
+
+import java.util.List;
+
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+
+public interface Mapper {
+
+  @Insert("insert into users (id, name, city) values (#{id}, #{name}, #{address.city})")
+  int insertUser(User user);
+
+  @Select("select name from users where id = #{id}")
+  String getName(Integer id);
+
+  @Select("select count(*) from users where city = #{city}")
+  int countInCity(User.Address address);
+
+  @Select("select id from users where name like #{name} and id >= #{minId} order by id")
+  List<Integer> findIds(@Param("name") String name, @Param("minId") int minId);
+
+  @Select("<script>select id from users where id in <foreach item='id' collection='list' open='(' separator=',' close=')'>#{id}</foreach>"
+      + "<if test='name != null'> and name = #{name}</if> order by id</script>")
+  List<Integer> findByIdsAndName(@Param("list") List<Integer> ids, @Param("name") String name);
+
+  @Select("<script>select id from users where id in <foreach item='id' collection='list' open='(' separator=',' close=')'>#{id}</foreach>"
+      + " order by id</script>")
+  List<Integer> findByIds(@Param("list") List<Integer> ids);
+
+  @Select("select id from users where name = #{missing}")
+  List<Integer> findByMissingParam(@Param("name") String name);
+
+}
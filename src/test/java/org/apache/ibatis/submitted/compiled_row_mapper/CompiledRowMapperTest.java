@@ -0,0 +1,199 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.submitted.compiled_row_mapper;
+
+import static org.junit.Assert.*;
+
+import java.io.Reader;
+import java.sql.Connection;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.ibatis.executor.resultset.CompiledRowMapper;
+import org.apache.ibatis.executor.resultset.CompiledRowMapperCache;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.jdbc.ScriptRunner;
+import org.apache.ibatis.mapping.ResultMap;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class CompiledRowMapperTest {
+
+  private static SqlSessionFactory sqlSessionFactory;
+
+  @BeforeClass
+  public static void setUp() throws Exception {
+    // create an SqlSessionFactory
+    Reader reader = Resources.getResourceAsReader("org/apache/ibatis/submitted/compiled_row_mapper/mybatis-config.xml");
+    sqlSessionFactory = new SqlSessionFactoryBuilder().build(reader);
+    reader.close();
+
+    // populate in-memory database
+    SqlSession session = sqlSessionFactory.openSession();
+    Connection conn = session.getConnection();
+    reader = Resources.getResourceAsReader("org/apache/ibatis/submitted/compiled_row_mapper/CreateDB.sql");
+    ScriptRunner runner = new ScriptRunner(conn);
+    runner.setLogWriter(null);
+    runner.runScript(reader);
+    conn.close();
+    reader.close();
+    session.close();
+  }
+
+  @Before
+  public void resetSettings() {
+    sqlSessionFactory.getConfiguration().setCallSettersOnNulls(false);
+    sqlSessionFactory.getConfiguration().setReturnInstanceForEmptyRow(false);
+  }
+
+  @Test
+  public void shouldMapAutomaticallyMappedColumns() throws Exception {
+    SqlSession sqlSession = sqlSessionFactory.openSession();
+    try {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      List<User> users = mapper.getUsers();
+      assertEquals(3, users.size());
+      assertEquals(1, users.get(0).getId());
+      assertEquals("User1", users.get(0).getName());
+      assertEquals("user1@example.com", users.get(0).getEmailAddress());
+      assertEquals(Integer.valueOf(10), users.get(0).getScore());
+      assertEquals("User2", users.get(1).getName());
+      assertNull(users.get(1).getEmailAddress());
+      assertNull(users.get(1).getScore());
+      assertEquals(1, compiledRowMappersOf(resultMapOf("getUsers")).size());
+    } finally {
+      sqlSession.close();
+    }
+  }
+
+  @Test
+  public void shouldApplyPropertyAndAutomaticMappings() throws Exception {
+    SqlSession sqlSession = sqlSessionFactory.openSession();
+    try {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      List<User> users = mapper.getUsersWithResultMap();
+      assertEquals(3, users.size());
+      assertEquals(1, users.get(0).getId());
+      assertEquals("User1", users.get(0).getName());
+      assertEquals("user1@example.com", users.get(0).getEmailAddress());
+      assertEquals(Integer.valueOf(10), users.get(0).getScore());
+      assertEquals(3, users.get(2).getId());
+      assertNull(users.get(2).getName());
+    } finally {
+      sqlSession.close();
+    }
+  }
+
+  @Test
+  public void shouldReuseCompiledRowMapperAcrossQueries() throws Exception {
+    SqlSession sqlSession = sqlSessionFactory.openSession();
+    try {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      mapper.getUsersWithResultMap();
+      sqlSession.clearCache();
+      ResultMap resultMap = sqlSessionFactory.getConfiguration().getResultMap("userResult");
+      Collection<CompiledRowMapper> rowMappers = compiledRowMappersOf(resultMap);
+      assertEquals(1, rowMappers.size());
+      CompiledRowMapper rowMapper = rowMappers.iterator().next();
+      assertEquals(4, rowMapper.getColumnCount());
+      assertEquals(2, mapper.getUsersWithResultMap().get(1).getId());
+      rowMappers = compiledRowMappersOf(resultMap);
+      assertEquals(1, rowMappers.size());
+      assertSame(rowMapper, rowMappers.iterator().next());
+    } finally {
+      sqlSession.close();
+    }
+  }
+
+  @Test
+  public void shouldReturnNullForEmptyRow() throws Exception {
+    SqlSession sqlSession = sqlSessionFactory.openSession();
+    try {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      assertNull(mapper.getNameAndScore(3));
+    } finally {
+      sqlSession.close();
+    }
+  }
+
+  @Test
+  public void shouldReturnInstanceForEmptyRow() {
+    sqlSessionFactory.getConfiguration().setReturnInstanceForEmptyRow(true);
+    SqlSession sqlSession = sqlSessionFactory.openSession();
+    try {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      User user = mapper.getNameAndScore(3);
+      assertNotNull(user);
+      assertNull(user.getName());
+    } finally {
+      sqlSession.close();
+    }
+  }
+
+  @Test
+  public void shouldFallBackToMetaObjectForMaps() throws Exception {
+    SqlSession sqlSession = sqlSessionFactory.openSession();
+    try {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      List<Map<String, Object>> users = mapper.getUsersAsMaps();
+      assertEquals(3, users.size());
+      assertEquals("User1", users.get(0).get("NAME"));
+      assertTrue(compiledRowMappersOf(resultMapOf("getUsersAsMaps")).isEmpty());
+    } finally {
+      sqlSession.close();
+    }
+  }
+
+  @Test
+  public void shouldRememberColumnsThatCannotBeCompiled() {
+    CompiledRowMapperCache cache = new CompiledRowMapperCache();
+    ResultMap resultMap = resultMapOf("getUsers");
+    assertFalse(cache.contains(resultMap, "columns"));
+    assertNull(cache.put(resultMap, "columns", null));
+    assertTrue(cache.contains(resultMap, "columns"));
+    assertNull(cache.get(resultMap, "columns"));
+    assertTrue(cache.getRowMappers(resultMap).isEmpty());
+  }
+
+  @Test
+  public void shouldStopCompilingOnceTheColumnSetsOfAResultMapAreFull() {
+    CompiledRowMapperCache cache = new CompiledRowMapperCache();
+    ResultMap resultMap = resultMapOf("getUsers");
+    for (int i = 0; i < 64; i++) {
+      assertFalse(cache.isFull(resultMap));
+      cache.put(resultMap, "columns" + i, null);
+    }
+    assertTrue(cache.isFull(resultMap));
+    cache.put(resultMap, "columns64", null);
+    assertFalse(cache.contains(resultMap, "columns64"));
+    assertTrue(cache.contains(resultMap, "columns0"));
+  }
+
+  private Collection<CompiledRowMapper> compiledRowMappersOf(ResultMap resultMap) {
+    return sqlSessionFactory.getConfiguration().getCompiledRowMapperCache().getRowMappers(resultMap);
+  }
+
+  private ResultMap resultMapOf(String statement) {
+    return sqlSessionFactory.getConfiguration()
+        .getMappedStatement("org.apache.ibatis.submitted.compiled_row_mapper.Mapper." + statement).getResultMaps().get(0);
+  }
+
+}
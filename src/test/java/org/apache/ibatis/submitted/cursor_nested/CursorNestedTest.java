@@ -18,6 +18,8 @@ package org.apache.ibatis.submitted.cursor_nested;
 import org.apache.ibatis.cursor.Cursor;
 import org.apache.ibatis.io.Resources;
 import org.apache.ibatis.jdbc.ScriptRunner;
+import org.apache.ibatis.session.ResultContext;
+import org.apache.ibatis.session.ResultHandler;
 import org.apache.ibatis.session.RowBounds;
 import org.apache.ibatis.session.SqlSession;
 import org.apache.ibatis.session.SqlSessionFactory;
@@ -28,7 +30,10 @@ import org.junit.Test;
 
 import java.io.Reader;
 import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.List;
 
 public class CursorNestedTest {
 
@@ -116,4 +121,54 @@ public class CursorNestedTest {
             sqlSession.close();
         }
     }
+
+    @Test
+    public void shouldGetAllUserWithAnnotatedOrderedStatement() {
+        SqlSession sqlSession = sqlSessionFactory.openSession();
+        try {
+            Mapper mapper = sqlSession.getMapper(Mapper.class);
+            Cursor<User> usersCursor = mapper.getAllUsersWithAnnotation();
+            Iterator<User> iterator = usersCursor.iterator();
+
+            User user = iterator.next();
+            Assert.assertEquals(2, user.getGroups().size());
+            Assert.assertEquals(3, user.getRoles().size());
+
+            user = iterator.next();
+            Assert.assertEquals(1, user.getGroups().size());
+            Assert.assertEquals(3, user.getRoles().size());
+
+            user = iterator.next();
+            Assert.assertEquals(3, user.getGroups().size());
+            Assert.assertEquals(1, user.getRoles().size());
+
+            user = iterator.next();
+            Assert.assertEquals(2, user.getGroups().size());
+            Assert.assertEquals(2, user.getRoles().size());
+
+            Assert.assertFalse(iterator.hasNext());
+            Assert.assertTrue(usersCursor.isConsumed());
+        } finally {
+            sqlSession.close();
+        }
+    }
+
+    @Test
+    public void shouldStreamCompleteUsersToResultHandler() {
+        SqlSession sqlSession = sqlSessionFactory.openSession();
+        try {
+            Mapper mapper = sqlSession.getMapper(Mapper.class);
+            final List<String> users = new ArrayList<String>();
+            mapper.streamAllUsers(new ResultHandler<User>() {
+                @Override
+                public void handleResult(ResultContext<? extends User> context) {
+                    User user = context.getResultObject();
+                    users.add(user.getName() + ":" + user.getGroups().size() + ":" + user.getRoles().size());
+                }
+            });
+            Assert.assertEquals(Arrays.asList("User1:2:3", "User2:1:3", "User3:3:1", "User4:2:2"), users);
+        } finally {
+            sqlSession.close();
+        }
+    }
 }
@@ -19,11 +19,15 @@ import java.io.Reader;
 import java.sql.Connection;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.ibatis.exceptions.PersistenceException;
 import org.apache.ibatis.io.Resources;
 import org.apache.ibatis.jdbc.ScriptRunner;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.session.SqlSession;
 import org.apache.ibatis.session.SqlSessionFactory;
 import org.apache.ibatis.session.SqlSessionFactoryBuilder;
@@ -167,4 +171,34 @@ public class ForEachTest {
     }
   }
 
+  @Test
+  public void shouldPadCollectionToTheNextBucket() {
+    SqlSession sqlSession = sqlSessionFactory.openSession();
+    try {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      Assert.assertEquals(3, mapper.countByIdsPadded(Arrays.asList(1, 2, 3)));
+      Assert.assertEquals(1, mapper.countByIdsPaddedWithAnnotation(Arrays.asList(4)));
+      Assert.assertEquals(3, mapper.countByIdsPaddedWithAnnotation(Arrays.asList(4, 5, 6)));
+      Assert.assertEquals(6, mapper.countByIdsPaddedWithAnnotation(Arrays.asList(1, 2, 3, 4, 5, 6)));
+
+      Configuration configuration = sqlSessionFactory.getConfiguration();
+      String prefix = Mapper.class.getName() + ".";
+      assertParameterCount(4, configuration, prefix + "countByIdsPadded", Arrays.asList(1, 2, 3));
+      assertParameterCount(8, configuration, prefix + "countByIdsPadded", Arrays.asList(1, 2, 3, 4, 5));
+      assertParameterCount(2, configuration, prefix + "countByIdsPaddedWithAnnotation", Arrays.asList(4));
+      assertParameterCount(5, configuration, prefix + "countByIdsPaddedWithAnnotation", Arrays.asList(4, 5, 6));
+      assertParameterCount(10, configuration, prefix + "countByIdsPaddedWithAnnotation", Arrays.asList(1, 2, 3, 4, 5, 6));
+    } finally {
+      sqlSession.close();
+    }
+  }
+
+  private void assertParameterCount(int expected, Configuration configuration, String statement, List<Integer> ids) {
+    Map<String, Object> parameter = new HashMap<String, Object>();
+    parameter.put("list", ids);
+    BoundSql boundSql = configuration.getMappedStatement(statement).getBoundSql(parameter);
+    Assert.assertEquals(expected, boundSql.getParameterMappings().size());
+    Assert.assertEquals(ids.get(ids.size() - 1), boundSql.getAdditionalParameter(boundSql.getParameterMappings().get(expected - 1).getProperty()));
+  }
+
 }
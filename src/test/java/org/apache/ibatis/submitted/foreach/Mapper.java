@@ -18,6 +18,7 @@ package org.apache.ibatis.submitted.foreach;
 import java.util.List;
 
 import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
 
 public interface Mapper {
 
@@ -34,4 +35,10 @@ public interface Mapper {
   int itemVariableConflict(@Param("id") Integer id, @Param("ids") List<Integer> ids, @Param("ids2") List<Integer> ids2);
 
   int indexVariableConflict(@Param("idx") Integer id, @Param("idxs") List<Integer> ids, @Param("idxs2") List<Integer> ids2);
+
+  int countByIdsPadded(List<Integer> ids);
+
+  @Select("<script>select count(*) from users where id in "
+      + "<foreach collection='list' item='id' open='(' close=')' separator=',' padding='2,5'>#{id}</foreach></script>")
+  int countByIdsPaddedWithAnnotation(List<Integer> ids);
 }
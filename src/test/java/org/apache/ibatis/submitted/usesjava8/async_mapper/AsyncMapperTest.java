@@ -0,0 +1,198 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.submitted.usesjava8.async_mapper;
+
+import static org.junit.Assert.*;
+
+import java.io.Reader;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.apache.ibatis.binding.BindingException;
+import org.apache.ibatis.exceptions.PersistenceException;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.jdbc.ScriptRunner;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AsyncMapperTest {
+
+  private SqlSessionFactory sqlSessionFactory;
+
+  @Before
+  public void setUp() throws Exception {
+    // create an SqlSessionFactory
+    Reader reader = Resources.getResourceAsReader(
+        "org/apache/ibatis/submitted/usesjava8/async_mapper/mybatis-config.xml");
+    sqlSessionFactory = new SqlSessionFactoryBuilder().build(reader);
+    reader.close();
+
+    // populate in-memory database
+    SqlSession session = sqlSessionFactory.openSession();
+    Connection conn = session.getConnection();
+    reader = Resources.getResourceAsReader(
+        "org/apache/ibatis/submitted/usesjava8/async_mapper/CreateDB.sql");
+    ScriptRunner runner = new ScriptRunner(conn);
+    runner.setLogWriter(null);
+    runner.runScript(reader);
+    conn.close();
+    reader.close();
+    session.close();
+  }
+
+  @Test
+  public void shouldRunIndependentQueriesConcurrently() throws Exception {
+    assertEquals(2, sqlSessionFactory.getConfiguration().getAsyncMapperThreads());
+    SqlSession sqlSession = sqlSessionFactory.openSession();
+    try {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      CompletableFuture<User> user = mapper.getUser(2);
+      CompletableFuture<List<User>> users = mapper.getUsers();
+      CompletableFuture<Map<Integer, User>> usersById = mapper.getUsersById();
+      CompletableFuture<Integer> count = mapper.countUsers();
+      assertEquals("User2", user.get().getName());
+      assertEquals(2, users.get().size());
+      assertEquals("User1", users.get().get(0).getName());
+      assertEquals("User2", usersById.get().get(2).getName());
+      assertEquals(Integer.valueOf(2), count.get());
+    } finally {
+      sqlSession.close();
+    }
+  }
+
+  @Test
+  public void shouldCommitChangesOfTheirOwnSession() throws Exception {
+    SqlSession sqlSession = sqlSessionFactory.openSession();
+    try {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      assertEquals(Integer.valueOf(1), mapper.insertUser(new User(3, "User3")).get());
+      assertNull(mapper.insertUserWithoutCount(new User(4, "User4")).get());
+    } finally {
+      sqlSession.close();
+    }
+    sqlSession = sqlSessionFactory.openSession();
+    try {
+      List<User> users = sqlSession.selectList("org.apache.ibatis.submitted.usesjava8.async_mapper.Mapper.getUsers");
+      assertEquals(4, users.size());
+    } finally {
+      sqlSession.close();
+    }
+  }
+
+  @Test
+  public void shouldCompleteExceptionallyWhenTheStatementFails() throws Exception {
+    SqlSession sqlSession = sqlSessionFactory.openSession();
+    try {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      CompletableFuture<List<User>> users = mapper.getFromMissingTable();
+      try {
+        users.get();
+        fail("Should have failed");
+      } catch (ExecutionException e) {
+        assertTrue(e.getCause() instanceof PersistenceException);
+      }
+    } finally {
+      sqlSession.close();
+    }
+  }
+
+  @Test
+  public void shouldRunOnTheConfiguredExecutor() throws Exception {
+    final AtomicInteger executions = new AtomicInteger();
+    sqlSessionFactory.getConfiguration().getAsyncMapperExecutor().setExecutor(new Executor() {
+      @Override
+      public void execute(Runnable command) {
+        executions.incrementAndGet();
+        command.run();
+      }
+    });
+    SqlSession sqlSession = sqlSessionFactory.openSession();
+    try {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      CompletableFuture<User> user = mapper.getUser(1);
+      // the executor runs the statement in the calling thread
+      assertTrue(user.isDone());
+      assertEquals("User1", user.get().getName());
+      assertEquals(1, executions.get());
+    } finally {
+      sqlSession.close();
+    }
+  }
+
+  @Test(timeout = 10000)
+  public void shouldResizeTheRunningThreads() throws Exception {
+    SqlSession sqlSession = sqlSessionFactory.openSession();
+    try {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      // starts the default threads
+      assertEquals("User1", mapper.getUser(1).get().getName());
+      sqlSessionFactory.getConfiguration().setAsyncMapperThreads(3);
+      // each task waits for the other two, so they only complete on three threads
+      final CountDownLatch running = new CountDownLatch(3);
+      List<CompletableFuture<String>> calls = new ArrayList<CompletableFuture<String>>();
+      for (int i = 0; i < 3; i++) {
+        calls.add(CompletableFuture.supplyAsync(new Supplier<String>() {
+          @Override
+          public String get() {
+            running.countDown();
+            try {
+              running.await();
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+            }
+            return Thread.currentThread().getName();
+          }
+        }, sqlSessionFactory.getConfiguration().getAsyncMapperExecutor()));
+      }
+      for (CompletableFuture<String> call : calls) {
+        assertTrue(call.get().startsWith("mybatis-async-mapper-"));
+      }
+      sqlSessionFactory.getConfiguration().setAsyncMapperThreads(1);
+      assertEquals(1, sqlSessionFactory.getConfiguration().getAsyncMapperThreads());
+      assertEquals("User1", mapper.getUser(1).get().getName());
+    } finally {
+      sqlSession.close();
+    }
+  }
+
+  @Test
+  public void shouldNotReturnCursorsAsynchronously() {
+    SqlSession sqlSession = sqlSessionFactory.openSession();
+    try {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      try {
+        mapper.getUserCursor();
+        fail("Should have failed");
+      } catch (BindingException e) {
+        assertTrue(e.getMessage().contains("cannot return a Cursor"));
+      }
+    } finally {
+      sqlSession.close();
+    }
+  }
+
+}